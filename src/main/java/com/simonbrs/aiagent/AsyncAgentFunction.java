@@ -0,0 +1,32 @@
+package com.simonbrs.aiagent;
+
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Interface defining a function that completes asynchronously.
+ * The agent composes the returned stage into its tool loop instead of
+ * blocking a thread while the function runs.
+ */
+@FunctionalInterface
+public interface AsyncAgentFunction extends AgentFunction {
+    /**
+     * Starts executing the function with the given parameters.
+     *
+     * @param parameters The parameters passed to the function
+     * @return A CompletionStage completing with the result of the function execution
+     */
+    CompletionStage<Object> executeAsync(Map<String, Object> parameters);
+
+    /**
+     * Executes the function and waits for its result.
+     *
+     * @param parameters The parameters passed to the function
+     * @return The result of the function execution
+     * @throws Exception If an error occurs during execution
+     */
+    @Override
+    default Object execute(Map<String, Object> parameters) throws Exception {
+        return executeAsync(parameters).toCompletableFuture().get();
+    }
+}
@@ -0,0 +1,79 @@
+package com.simonbrs.aiagent;
+
+import java.time.Duration;
+
+/**
+ * Limits on the work a single {@code sendMessage} call may perform.
+ * A limit of zero (or a null timeout) means the limit is not enforced.
+ */
+public final class ExecutionBudget {
+    /**
+     * The budget used when no other budget is configured: at most 10 iterations of the tool loop.
+     */
+    public static final ExecutionBudget DEFAULT = new ExecutionBudget(10, null, 0, 0);
+
+    private final int maxIterations;
+    private final Duration timeout;
+    private final long maxTotalTokens;
+    private final int maxToolCalls;
+
+    /**
+     * Creates a new execution budget.
+     *
+     * @param maxIterations The maximum number of model responses handled by the tool loop
+     * @param timeout The wall-clock deadline for the whole request, or null for none
+     * @param maxTotalTokens The maximum number of tokens reported as used by the API
+     * @param maxToolCalls The maximum number of tool calls executed
+     * @throws IllegalArgumentException if a limit is negative
+     */
+    public ExecutionBudget(int maxIterations, Duration timeout, long maxTotalTokens, int maxToolCalls) {
+        if (maxIterations < 0 || maxTotalTokens < 0 || maxToolCalls < 0) {
+            throw new IllegalArgumentException("Budget limits cannot be negative");
+        }
+        if (timeout != null && (timeout.isNegative() || timeout.isZero())) {
+            throw new IllegalArgumentException("Timeout must be positive");
+        }
+        this.maxIterations = maxIterations;
+        this.timeout = timeout;
+        this.maxTotalTokens = maxTotalTokens;
+        this.maxToolCalls = maxToolCalls;
+    }
+
+    public int getMaxIterations() {
+        return maxIterations;
+    }
+
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    public long getMaxTotalTokens() {
+        return maxTotalTokens;
+    }
+
+    public int getMaxToolCalls() {
+        return maxToolCalls;
+    }
+
+    public ExecutionBudget withMaxIterations(int maxIterations) {
+        return new ExecutionBudget(maxIterations, timeout, maxTotalTokens, maxToolCalls);
+    }
+
+    public ExecutionBudget withTimeout(Duration timeout) {
+        return new ExecutionBudget(maxIterations, timeout, maxTotalTokens, maxToolCalls);
+    }
+
+    public ExecutionBudget withMaxTotalTokens(long maxTotalTokens) {
+        return new ExecutionBudget(maxIterations, timeout, maxTotalTokens, maxToolCalls);
+    }
+
+    public ExecutionBudget withMaxToolCalls(int maxToolCalls) {
+        return new ExecutionBudget(maxIterations, timeout, maxTotalTokens, maxToolCalls);
+    }
+
+    public static class BudgetExceededException extends RuntimeException {
+        public BudgetExceededException(String message) {
+            super(message);
+        }
+    }
+}
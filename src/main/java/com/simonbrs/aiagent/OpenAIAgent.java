@@ -2,14 +2,25 @@ package com.simonbrs.aiagent;
 
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.net.http.*;
 import java.net.URI;
+import java.time.Duration;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Parameter;
 
@@ -17,9 +28,38 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.simonbrs.aiagent.schema.FunctionSchemaGenerator;
+import com.simonbrs.aiagent.schema.SchemaValidator;
+import com.simonbrs.aiagent.ExecutionBudget.BudgetExceededException;
+import com.simonbrs.aiagent.ToolRegistry.RegisteredTool;
+import com.simonbrs.aiagent.ToolDescriptors.MethodTool;
+import com.simonbrs.aiagent.ToolRegistry.ToolPayload;
+import com.simonbrs.aiagent.diagnostics.PayloadRecorder;
 import com.simonbrs.aiagent.conversion.TypeConverter;
 import com.simonbrs.aiagent.prompt.SystemPromptGenerator;
 import com.simonbrs.aiagent.conversation.ConversationHistory;
+import com.simonbrs.aiagent.tools.ToolSelector;
+import com.simonbrs.aiagent.transport.ChatTransport;
+import com.simonbrs.aiagent.transport.HttpChatTransport;
+import com.simonbrs.aiagent.transport.RecordingTransport;
+import com.simonbrs.aiagent.transport.ReplayTransport;
+import com.simonbrs.aiagent.transport.TransportResponse;
+import com.simonbrs.aiagent.cache.SemanticCache;
+import com.simonbrs.aiagent.json.JsonBufferPool;
+import com.simonbrs.aiagent.json.JsonBufferPool.PooledBuffer;
+import com.simonbrs.aiagent.resilience.ToolGuard;
+import com.simonbrs.aiagent.results.ResultLimiter;
+import com.simonbrs.aiagent.results.ResultPolicy;
+import com.simonbrs.aiagent.results.ResultStore;
+import com.simonbrs.aiagent.resilience.ToolPolicy;
+import com.simonbrs.aiagent.routing.ModelRouter;
+import com.simonbrs.aiagent.routing.RouteContext;
+import com.simonbrs.aiagent.streaming.ChatCompletionStreamAssembler;
+import com.simonbrs.aiagent.streaming.StreamListener;
+import com.simonbrs.aiagent.structured.PartialResultListener;
+import com.simonbrs.aiagent.structured.StructuredOutputDecoder;
+import com.simonbrs.aiagent.annotation.Tool;
+import com.simonbrs.aiagent.annotation.ToolDefinition;
+import com.simonbrs.aiagent.annotation.ToolProvider;
 
 /**
  * Implementation of the Agent interface using OpenAI's API directly.
@@ -27,16 +67,37 @@ import com.simonbrs.aiagent.conversation.ConversationHistory;
 public class OpenAIAgent implements Agent {
     private static final Logger logger = LoggerFactory.getLogger(OpenAIAgent.class);
     private static final String OPENAI_API_URL = "https://api.openai.com/v1/chat/completions";
+    private static final String OPENAI_MODELS_URL = "https://api.openai.com/v1/models";
     
     private final String apiKey;
     private final String model;
-    private final Map<String, AgentFunction> functions;
-    private final Map<String, ObjectNode> functionSchemas;
+    private final AtomicReference<ToolRegistry> registry = new AtomicReference<>(ToolRegistry.EMPTY);
     private final ObjectMapper objectMapper;
-    private final HttpClient httpClient;
+    private final ObjectWriter requestWriter;
+    private final ObjectReader argumentsReader;
+    private final JsonBufferPool bufferPool;
+    private volatile ChatTransport transport;
     private final ConversationHistory conversationHistory;
     private final FunctionSchemaGenerator schemaGenerator;
     private final SystemPromptGenerator promptGenerator;
+    private volatile ExecutionBudget defaultBudget = ExecutionBudget.DEFAULT;
+    private volatile Set<String> activeToolGroups;
+    private volatile ToolSelector toolSelector;
+    private volatile ToolPolicy defaultToolPolicy = ToolPolicy.DEFAULT;
+    private final Map<String, ToolPolicy> toolPolicies = new ConcurrentHashMap<>();
+    private final Map<String, ToolGuard> toolGuards = new ConcurrentHashMap<>();
+    private final Set<String> idempotentTools = ConcurrentHashMap.newKeySet();
+    private volatile boolean speculativeToolExecution;
+    private volatile Executor toolExecutor = ToolGuard.defaultExecutor();
+    private volatile PayloadRecorder payloadRecorder;
+    private volatile ModelRouter modelRouter;
+    private volatile ResultPolicy defaultResultPolicy = ResultPolicy.DEFAULT;
+    private final Map<String, ResultPolicy> resultPolicies = new ConcurrentHashMap<>();
+    private final ResultStore resultStore = new ResultStore(64, 4000);
+    private final ResultLimiter resultLimiter = new ResultLimiter(resultStore);
+    private volatile SemanticCache semanticCache;
+    private volatile RequestCoalescer requestCoalescer;
+    private final Map<Class<?>, ObjectNode> responseFormats = new ConcurrentHashMap<>();
 
     /**
      * Creates a new OpenAIAgent with the specified API key and model.
@@ -55,10 +116,12 @@ public class OpenAIAgent implements Agent {
         
         this.apiKey = apiKey;
         this.model = model;
-        this.functions = new ConcurrentHashMap<>();
-        this.functionSchemas = new ConcurrentHashMap<>();
         this.objectMapper = new ObjectMapper();
-        this.httpClient = HttpClient.newHttpClient();
+        this.requestWriter = objectMapper.writer();
+        this.argumentsReader = objectMapper.readerFor(new TypeReference<Map<String, Object>>() { });
+        this.bufferPool = new JsonBufferPool(16, 1024 * 1024);
+        this.transport = new HttpChatTransport(HttpClient.newHttpClient(), URI.create(OPENAI_API_URL),
+            URI.create(OPENAI_MODELS_URL), apiKey);
         this.conversationHistory = new ConversationHistory();
         this.schemaGenerator = new FunctionSchemaGenerator(objectMapper);
         this.promptGenerator = new SystemPromptGenerator();
@@ -69,43 +132,509 @@ public class OpenAIAgent implements Agent {
         return sendMessage(message, Map.of());
     }
 
+    /**
+     * Sends a message with additional context to the agent. The context is rendered into the
+     * system prompt, see {@link #setContextTemplate(String)}.
+     */
     @Override
     public CompletableFuture<String> sendMessage(String userMessage, Map<String, Object> context) {
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                conversationHistory.addUserMessage(userMessage);
+        return sendMessage(userMessage, context, defaultBudget);
+    }
 
-                ObjectNode requestBody = createRequestBody();
-                String requestBodyStr = objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(requestBody);
-                logger.debug("Request body: {}", requestBodyStr);
+    /**
+     * Sends a message with additional context to the agent, limited by the given execution budget.
+     * Cancelling the returned future, or exceeding the budget's timeout, cancels the in-flight
+     * HTTP request and any running asynchronous tool executions.
+     *
+     * @param userMessage The message to send to the agent
+     * @param context Additional context as key-value pairs, rendered into the system prompt
+     * @param budget The limits for this request
+     * @return A CompletableFuture containing the agent's response
+     */
+    public CompletableFuture<String> sendMessage(String userMessage, Map<String, Object> context, ExecutionBudget budget) {
+        return sendMessage(userMessage, context, budget, activeToolGroups);
+    }
 
-                HttpResponse<String> response = sendRequest(requestBodyStr);
-                logger.debug("Response status: {}", response.statusCode());
-                logger.debug("Response body: {}", response.body());
+    /**
+     * Sends a message with additional context to the agent, exposing only the tools of the given groups.
+     * If a {@link ToolSelector} is configured, it further narrows the tools of these groups.
+     *
+     * @param userMessage The message to send to the agent
+     * @param context Additional context as key-value pairs, rendered into the system prompt
+     * @param budget The limits for this request
+     * @param toolGroups The tool groups to expose, or null to expose all groups
+     * @return A CompletableFuture containing the agent's response
+     */
+    public CompletableFuture<String> sendMessage(String userMessage, Map<String, Object> context,
+                                                 ExecutionBudget budget, Collection<String> toolGroups) {
+        // Speculative tool execution needs the tool calls as they are streamed
+        StreamListener streamListener = speculativeToolExecution ? new StreamListener() { } : null;
+        return execute(userMessage, new RequestExecution(budget, selectTools(userMessage, toolGroups), null,
+            streamListener, context));
+    }
 
-                if (response.statusCode() != 200) {
-                    handleErrorResponse(response);
-                    throw new RuntimeException("API request failed with status code: " + response.statusCode());
-                }
+    /**
+     * Sends a message with additional context to the agent, streaming the responses of the model.
+     * Content is passed to the listener as it arrives, including content the model sends
+     * alongside tool calls before the final answer.
+     *
+     * @param userMessage The message to send to the agent
+     * @param context Additional context as key-value pairs, rendered into the system prompt
+     * @param listener The listener receiving the streamed responses
+     * @return A CompletableFuture containing the agent's final response
+     */
+    public CompletableFuture<String> sendMessage(String userMessage, Map<String, Object> context,
+                                                 StreamListener listener) {
+        return execute(userMessage, new RequestExecution(defaultBudget, selectTools(userMessage, activeToolGroups),
+            null, listener, context));
+    }
 
-                return processResponse(response.body());
+    /**
+     * Asks the agent a question and decodes the answer into the given type. The JSON schema of the
+     * type is sent as the required response format, and the answer is bound to the type directly.
+     *
+     * @param prompt The message to send to the agent
+     * @param type The record or class to decode the answer into
+     * @return A CompletableFuture containing the decoded answer
+     */
+    public <T> CompletableFuture<T> ask(String prompt, Class<T> type) {
+        return ask(prompt, type, null);
+    }
+
+    /**
+     * Asks the agent a question and decodes the answer into the given type, streaming the response.
+     * Top-level fields of the answer are passed to the listener as soon as they are complete.
+     *
+     * @param prompt The message to send to the agent
+     * @param type The record or class to decode the answer into
+     * @param listener The listener for partially decoded fields, or null to not stream the response
+     * @return A CompletableFuture containing the decoded answer
+     */
+    public <T> CompletableFuture<T> ask(String prompt, Class<T> type, PartialResultListener listener) {
+        ObjectNode responseFormat = responseFormats.computeIfAbsent(type, this::createResponseFormat);
+        StructuredOutputDecoder decoder = listener == null ? null : new StructuredOutputDecoder(objectMapper, listener);
+        RequestExecution execution = new RequestExecution(defaultBudget, selectTools(prompt, activeToolGroups),
+            responseFormat, decoder);
+
+        CompletableFuture<T> result = new CompletableFuture<>();
+        CompletableFuture<String> response = execute(prompt, execution);
+        response.whenComplete((ignored, error) -> {
+            if (error != null) {
+                result.completeExceptionally(error);
+                return;
+            }
+            try {
+                if (decoder != null && decoder.isComplete()) {
+                    result.complete(decoder.decode(type));
+                } else {
+                    result.complete(objectMapper.readerFor(type).readValue(execution.getLastContent()));
+                }
             } catch (Exception e) {
-                logger.error("Error while processing message", e);
-                throw new RuntimeException("Failed to process message", e);
+                result.completeExceptionally(new RuntimeException("Failed to decode response as " + type.getSimpleName(), e));
+            }
+        });
+        result.whenComplete((ignored, error) -> {
+            if (result.isCancelled()) {
+                response.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    private ObjectNode createResponseFormat(Class<?> type) {
+        ObjectNode responseFormat = objectMapper.createObjectNode();
+        responseFormat.put("type", "json_schema");
+        ObjectNode jsonSchema = responseFormat.putObject("json_schema");
+        jsonSchema.put("name", type.getSimpleName());
+        jsonSchema.put("strict", true);
+        jsonSchema.set("schema", schemaGenerator.generateSchema(type));
+        return responseFormat;
+    }
+
+    private CompletableFuture<String> execute(String userMessage, RequestExecution execution) {
+        ExecutionBudget budget = execution.getBudget();
+        CompletableFuture<String> result = new CompletableFuture<>();
+
+        // Structured and personalised requests are not cached, their answers depend on more than the message
+        Map<String, Object> context = execution.getContext();
+        SemanticCache cache = execution.getResponseFormat() == null && (context == null || context.isEmpty())
+            ? semanticCache : null;
+
+        execution.track(CompletableFuture.supplyAsync(() -> cache == null ? null : cache.embed(userMessage)))
+                .thenCompose(embedding -> {
+                    String cachedAnswer = embedding == null ? null : cache.get(embedding);
+                    conversationHistory.addUserMessage(userMessage);
+                    if (cachedAnswer != null) {
+                        logger.debug("Semantic cache hit for message: {}", userMessage);
+                        conversationHistory.addAssistantMessage(cachedAnswer, null);
+                        return CompletableFuture.completedFuture(cachedAnswer);
+                    }
+                    return sendRoutedRequest(execution)
+                        .thenCompose(responseJson -> processResponse(responseJson, new StringBuilder(), execution))
+                        .thenApply(response -> {
+                            if (embedding != null && !response.isEmpty()) {
+                                cache.put(embedding, userMessage, response);
+                            }
+                            return response;
+                        });
+                })
+                .whenComplete((response, error) -> {
+                    if (error == null) {
+                        result.complete(response);
+                    } else if (!result.isDone()) {
+                        Throwable cause = unwrap(error);
+                        logger.error("Error while processing message", cause);
+                        PayloadRecorder recorder = payloadRecorder;
+                        if (recorder != null && recorder.isDumpOnError()) {
+                            logger.error("Recent API exchanges:\n{}", recorder.dump());
+                        }
+                        result.completeExceptionally(new RuntimeException("Failed to process message", cause));
+                    }
+                });
+
+        if (budget.getTimeout() != null) {
+            result.orTimeout(budget.getTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        }
+        result.whenComplete((response, error) -> {
+            if (error != null) {
+                execution.cancel();
             }
         });
+        return result;
+    }
+
+    /**
+     * Sets a semantic cache consulted before sending a message. If a semantically similar message
+     * was answered before, its answer is returned without calling the API. The cache only looks at
+     * the message itself, so it suits stateless question answering rather than multi-turn conversations.
+     *
+     * @param semanticCache The cache to use, or null to disable caching
+     */
+    public void setSemanticCache(SemanticCache semanticCache) {
+        this.semanticCache = semanticCache;
+    }
+
+    /**
+     * Sets a coalescer that lets identical requests in flight at the same time share one API call.
+     * Each agent still appends the shared response to its own conversation history. Streamed
+     * requests are never coalesced.
+     *
+     * @param requestCoalescer The coalescer, shared between agents using the same API key, or null
+     */
+    public void setRequestCoalescer(RequestCoalescer requestCoalescer) {
+        this.requestCoalescer = requestCoalescer;
+    }
+
+    /**
+     * Sets a recorder keeping the payloads of recent API exchanges for diagnosing failures.
+     * Payloads are copied only for exchanges the recorder keeps, and formatted only when dumped.
+     *
+     * @param payloadRecorder The recorder, or null to disable recording
+     */
+    public void setPayloadRecorder(PayloadRecorder payloadRecorder) {
+        this.payloadRecorder = payloadRecorder;
+    }
+
+    /**
+     * Sets a router choosing the model per request of the tool loop, for example an
+     * {@link com.simonbrs.aiagent.routing.AdaptiveModelRouter}. Without a router, every request
+     * uses the model the agent was created with.
+     *
+     * @param modelRouter The router, or null to always use the agent's model
+     */
+    public void setModelRouter(ModelRouter modelRouter) {
+        this.modelRouter = modelRouter;
+    }
+
+    /**
+     * Sets the transport requests are sent with, for example a {@link RecordingTransport} to
+     * capture a run or a {@link ReplayTransport} to reproduce one offline.
+     *
+     * @param transport The transport to use
+     */
+    public void setTransport(ChatTransport transport) {
+        this.transport = Objects.requireNonNull(transport, "transport");
+    }
+
+    /**
+     * Sets the execution budget used by {@link #sendMessage(String, Map)}.
+     *
+     * @param budget The default limits for requests
+     */
+    public void setDefaultBudget(ExecutionBudget budget) {
+        this.defaultBudget = Objects.requireNonNull(budget, "budget");
+    }
+
+    /**
+     * Sets the tool groups exposed to the model for this agent's requests.
+     *
+     * @param toolGroups The tool groups to expose, or null to expose all tools
+     */
+    public void setActiveToolGroups(Collection<String> toolGroups) {
+        this.activeToolGroups = toolGroups == null ? null : Set.copyOf(toolGroups);
+    }
+
+    /**
+     * Sets the template the context of {@link #sendMessage(String, Map)} is rendered into. The
+     * rendered context is appended to the system prompt, so the generated part stays identical
+     * between requests. Without a template, the context is listed as key-value pairs.
+     *
+     * @param template The template with {@code {{name}}} placeholders, or null for the default listing
+     * @throws IllegalArgumentException if the template is malformed
+     */
+    public void setContextTemplate(String template) {
+        promptGenerator.setContextTemplate(template);
+    }
+
+    /**
+     * Sets a selector that chooses which tools are sent to the model per request,
+     * for example a {@link com.simonbrs.aiagent.tools.RelevanceToolSelector}.
+     *
+     * @param toolSelector The selector to use, or null to send all tools
+     */
+    public void setToolSelector(ToolSelector toolSelector) {
+        this.toolSelector = toolSelector;
     }
 
-    private ObjectNode createRequestBody() {
+    /**
+     * Sets the isolation policy for one tool. Calls rejected by the policy, timed out or
+     * short-circuited by an open circuit breaker are answered with an error message, so the model
+     * can continue without the tool.
+     *
+     * @param name The name of the tool
+     * @param policy The policy to apply, or null to use the default policy
+     */
+    public void setToolPolicy(String name, ToolPolicy policy) {
+        if (policy == null) {
+            toolPolicies.remove(name);
+        } else {
+            toolPolicies.put(name, policy);
+        }
+    }
+
+    /**
+     * Sets the isolation policy for tools without a policy of their own. Each tool still gets
+     * its own bulkhead and circuit breaker.
+     *
+     * @param policy The default policy
+     */
+    public void setDefaultToolPolicy(ToolPolicy policy) {
+        this.defaultToolPolicy = Objects.requireNonNull(policy, "policy");
+    }
+
+    /**
+     * Sets the size policy for the results of one tool. Results exceeding it are compacted,
+     * truncated or offloaded before they are added to the conversation history, so they do not
+     * inflate every later request. Offloading registers the {@code read_tool_result} tool the
+     * model uses to page through stored results.
+     *
+     * @param name The name of the tool
+     * @param policy The policy to apply, or null to use the default policy
+     */
+    public void setToolResultPolicy(String name, ResultPolicy policy) {
+        if (policy == null) {
+            resultPolicies.remove(name);
+        } else {
+            resultPolicies.put(name, policy);
+            registerResultReader(policy);
+        }
+    }
+
+    /**
+     * Sets the size policy for the results of tools without a policy of their own.
+     *
+     * @param policy The default policy
+     * @see #setToolResultPolicy(String, ResultPolicy)
+     */
+    public void setDefaultToolResultPolicy(ResultPolicy policy) {
+        this.defaultResultPolicy = Objects.requireNonNull(policy, "policy");
+        registerResultReader(policy);
+    }
+
+    private void registerResultReader(ResultPolicy policy) {
+        if (!policy.isOffload() || registry.get().get(ResultLimiter.READ_TOOL) != null) {
+            return;
+        }
+        ObjectNode schema = objectMapper.createObjectNode();
+        schema.put("type", "object");
+        ObjectNode properties = schema.putObject("properties");
+        properties.putObject("handle").put("type", "string")
+            .put("description", "The handle of a stored result");
+        properties.putObject("offset").put("type", "integer")
+            .put("description", "The character offset to read from");
+        schema.putArray("required").add("handle").add("offset");
+        schema.put("additionalProperties", false);
+        registerFunction(ResultLimiter.READ_TOOL,
+            parameters -> resultStore.read(String.valueOf(parameters.get("handle")),
+                (Integer) TypeConverter.convert(parameters.get("offset"), int.class)),
+            schema, null, "Reads part of a tool result that was too long to return at once");
+    }
+
+    /**
+     * Converts a tool result to the text added to the history, applying the tool's result policy.
+     */
+    private String limitResult(String functionName, Object value) {
+        ResultPolicy policy = resultPolicies.getOrDefault(functionName, defaultResultPolicy);
+        if (functionName.equals(ResultLimiter.READ_TOOL)
+                || (policy.getMaxChars() == 0 && policy.getMaxItems() == 0)) {
+            return String.valueOf(value);
+        }
+        return resultLimiter.apply(value, policy);
+    }
+
+    /**
+     * Marks a tool as free of side effects, so that it may be started speculatively.
+     * Methods annotated with {@code @Tool(idempotent = true)} are marked on registration.
+     *
+     * @param name The name of the tool
+     */
+    public void markIdempotent(String name) {
+        idempotentTools.add(name);
+    }
+
+    /**
+     * Enables speculative tool execution. Responses are then streamed, and idempotent tools start
+     * as soon as their call is complete in the stream instead of after the whole response arrived,
+     * overlapping tool latency with generation. Other tools still run once the response is complete.
+     *
+     * @param enabled Whether idempotent tools may be started speculatively
+     * @see #markIdempotent(String)
+     */
+    public void setSpeculativeToolExecution(boolean enabled) {
+        this.speculativeToolExecution = enabled;
+    }
+
+    /**
+     * Sets the executor running speculatively started tools and the blocking calls of tools with a
+     * timeout. Defaults to a shared pool of daemon threads.
+     *
+     * @param executor The executor for tool work
+     */
+    public void setToolExecutor(Executor executor) {
+        this.toolExecutor = Objects.requireNonNull(executor, "executor");
+    }
+
+    /**
+     * Returns the guard enforcing the policy of a tool, or null if the tool is unrestricted.
+     */
+    private ToolGuard getToolGuard(String name) {
+        ToolPolicy policy = toolPolicies.getOrDefault(name, defaultToolPolicy);
+        if (policy.isUnrestricted()) {
+            return null;
+        }
+        ToolGuard guard = toolGuards.get(name);
+        if (guard != null && guard.getPolicy() == policy) {
+            return guard;
+        }
+        return toolGuards.compute(name, (key, existing) ->
+            existing != null && existing.getPolicy() == policy ? existing : new ToolGuard(key, policy, toolExecutor));
+    }
+
+    /**
+     * Determines the tools to expose for a request, or null if all tools should be exposed.
+     * While results are offloaded, the tool reading them is always exposed.
+     */
+    private Set<String> selectTools(String userMessage, Collection<String> toolGroups) {
+        ToolSelector selector = toolSelector;
+        if (toolGroups == null && selector == null) {
+            return null;
+        }
+
+        ToolRegistry tools = registry.get();
+        Map<String, String> candidates = tools.getDescriptions();
+        if (toolGroups != null) {
+            Map<String, String> inGroups = new HashMap<>();
+            for (RegisteredTool tool : tools.getTools().values()) {
+                if (tool.group != null && toolGroups.contains(tool.group)) {
+                    inGroups.put(tool.name, tool.description);
+                }
+            }
+            candidates = inGroups;
+        }
+        Set<String> selected = selector == null ? candidates.keySet() : selector.select(userMessage, candidates);
+        // Offloaded results point the model to the reader, which no message or group mentions
+        if (tools.get(ResultLimiter.READ_TOOL) != null && isOffloading()) {
+            selected = new LinkedHashSet<>(selected);
+            selected.add(ResultLimiter.READ_TOOL);
+        }
+        return selected;
+    }
+
+    private boolean isOffloading() {
+        if (defaultResultPolicy.isOffload()) {
+            return true;
+        }
+        for (ResultPolicy policy : resultPolicies.values()) {
+            if (policy.isOffload()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Prepares the agent for its first request: builds the system prompt and tool definitions,
+     * initializes JSON serialization and opens a connection to the API so that the TLS handshake
+     * is not part of the first request's latency. Running this during a training run also loads
+     * the classes needed for an AppCDS archive.
+     *
+     * @return A CompletableFuture that completes when the connection has been opened
+     */
+    public CompletableFuture<Void> warmUp() {
+        try {
+            requestWriter.writeValueAsBytes(createRequestBody(null));
+            argumentsReader.readValue("{\"arg0\":1}");
+            createResponseFormat(WarmUpProbe.class);
+            objectMapper.readTree("{\"choices\":[{\"message\":{\"role\":\"assistant\",\"content\":\"\"}}],"
+                + "\"usage\":{\"total_tokens\":0}}");
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return transport.connect();
+    }
+
+    // Record used to exercise structured output schema generation during warm-up
+    private record WarmUpProbe(String text, double number, List<String> items) {
+    }
+
+    /**
+     * Builds the request body for the current conversation.
+     *
+     * @param execution The request being executed, or null for a request exposing all tools
+     */
+    private ObjectNode createRequestBody(RequestExecution execution) {
         ObjectNode requestBody = objectMapper.createObjectNode();
         requestBody.put("model", model);
+        Set<String> exposedTools = execution == null ? null : execution.getExposedTools();
+
+        ToolRegistry tools = registry.get();
+        ToolPayload payload;
+        if (exposedTools == null) {
+            payload = tools.getAllToolsPayload();
+            if (payload == null) {
+                payload = createToolPayload(tools, tools.getFunctions());
+                tools.setAllToolsPayload(payload);
+            }
+        } else {
+            Map<String, AgentFunction> exposedFunctions = new LinkedHashMap<>();
+            for (String name : exposedTools) {
+                RegisteredTool tool = tools.get(name);
+                if (tool != null) {
+                    exposedFunctions.put(name, tool.function);
+                }
+            }
+            payload = createToolPayload(tools, exposedFunctions);
+        }
         
         ArrayNode messages = requestBody.putArray("messages");
         
         // Add system message
         ObjectNode systemMessage = messages.addObject();
         systemMessage.put("role", "system");
-        systemMessage.put("content", promptGenerator.generatePrompt(functions, functionSchemas));
+        Map<String, Object> context = execution == null ? null : execution.getContext();
+        systemMessage.put("content", context == null || context.isEmpty()
+            ? payload.systemPrompt
+            : payload.systemPrompt + promptGenerator.renderContext(context));
         
         // Add conversation history
         for (Map<String, Object> msg : conversationHistory.getMessages()) {
@@ -124,44 +653,247 @@ public class OpenAIAgent implements Agent {
         }
 
         // Add tools (functions)
-        if (!functions.isEmpty()) {
-            ArrayNode tools = requestBody.putArray("tools");
-            for (Map.Entry<String, AgentFunction> entry : functions.entrySet()) {
-                ObjectNode tool = tools.addObject();
-                tool.put("type", "function");
-                
-                ObjectNode function = tool.putObject("function");
-                function.put("name", entry.getKey());
-                function.put("description", getFunctionDescription(entry.getKey(), entry.getValue()));
-                
-                ObjectNode schema = functionSchemas.getOrDefault(entry.getKey(), 
-                    schemaGenerator.generateDefaultSchema(entry.getKey()));
-                function.setAll(schema);
-            }
+        if (payload.tools != null) {
+            requestBody.set("tools", payload.tools);
+        }
+
+        if (execution != null && execution.getResponseFormat() != null) {
+            requestBody.set("response_format", execution.getResponseFormat());
+        }
+        if (execution != null && execution.getStreamListener() != null) {
+            requestBody.put("stream", true);
+            requestBody.putObject("stream_options").put("include_usage", true);
         }
 
         return requestBody;
     }
 
-    private HttpResponse<String> sendRequest(String requestBodyStr) throws Exception {
-        HttpRequest request = HttpRequest.newBuilder()
-            .uri(URI.create(OPENAI_API_URL))
-            .header("Content-Type", "application/json")
-            .header("Authorization", "Bearer " + apiKey)
-            .POST(HttpRequest.BodyPublishers.ofString(requestBodyStr))
-            .build();
+    /**
+     * Builds the system prompt and tool definitions for the given functions.
+     */
+    private ToolPayload createToolPayload(ToolRegistry registry, Map<String, AgentFunction> exposedFunctions) {
+        String systemPrompt = promptGenerator.generatePrompt(exposedFunctions, registry.getSchemas());
+        ArrayNode tools = null;
+        if (!exposedFunctions.isEmpty()) {
+            tools = objectMapper.createArrayNode();
+            for (String name : exposedFunctions.keySet()) {
+                tools.add(registry.get(name).definition);
+            }
+        }
+        return new ToolPayload(systemPrompt, tools);
+    }
+
+    /**
+     * Builds the definition of a tool as sent to the model.
+     */
+    private ObjectNode createToolDefinition(String name, String description, ObjectNode schema) {
+        ObjectNode tool = objectMapper.createObjectNode();
+        tool.put("type", "function");
 
-        return httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        ObjectNode function = tool.putObject("function");
+        function.put("name", name);
+        function.put("description", description);
+        function.setAll(schema != null ? schema : schemaGenerator.generateDefaultSchema(name));
+        return tool;
     }
 
-    private void handleErrorResponse(HttpResponse<String> response) {
-        JsonNode lastToolCalls = findLastToolCalls();
+    /**
+     * Sends the next request of the tool loop to the model chosen by the model router, retrying
+     * with its fallback model if the request fails.
+     */
+    private CompletableFuture<JsonNode> sendRoutedRequest(RequestExecution execution) {
+        ObjectNode requestBody = createRequestBody(execution);
+        ModelRouter router = modelRouter;
+        if (router == null) {
+            return sendRequest(requestBody, execution, true);
+        }
+        RouteContext context = createRouteContext(execution);
+        return sendToModel(requestBody, execution, router, context, router.route(context));
+    }
+
+    private CompletableFuture<JsonNode> sendToModel(ObjectNode requestBody, RequestExecution execution,
+                                                    ModelRouter router, RouteContext context, String routedModel) {
+        requestBody.put("model", routedModel);
+        String fallback = router.fallback(routedModel, context);
+        long started = System.nanoTime();
+        return sendRequest(requestBody, execution, fallback == null)
+            .handle((response, error) -> {
+                router.onResult(routedModel, Duration.ofNanos(System.nanoTime() - started), error == null);
+                if (error == null) {
+                    return CompletableFuture.completedFuture(response);
+                }
+                Throwable cause = unwrap(error);
+                if (fallback == null || cause instanceof CancellationException
+                        || cause instanceof BudgetExceededException) {
+                    return CompletableFuture.<JsonNode>failedFuture(cause);
+                }
+                logger.warn("Request to model {} failed, retrying with {}: {}", routedModel, fallback, cause.getMessage());
+                try {
+                    execution.checkActive();
+                } catch (RuntimeException e) {
+                    return CompletableFuture.<JsonNode>failedFuture(e);
+                }
+                return sendToModel(requestBody, execution, router, context, fallback);
+            })
+            .thenCompose(result -> result);
+    }
+
+    private RouteContext createRouteContext(RequestExecution execution) {
+        List<Map<String, Object>> messages = conversationHistory.getMessages();
+        long characters = 0;
+        for (Map<String, Object> message : messages) {
+            Object content = message.get("content");
+            if (content != null) {
+                characters += content.toString().length();
+            }
+        }
+        boolean toolFollowUp = !messages.isEmpty() && "tool".equals(messages.get(messages.size() - 1).get("role"));
+        // Roughly four characters per token for English text
+        int estimatedTokens = (int) Math.min(Integer.MAX_VALUE, characters / 4);
+        return new RouteContext(estimatedTokens, toolFollowUp, execution.getResponseFormat() != null,
+            execution.getIterations());
+    }
+
+    /**
+     * Sends a request.
+     *
+     * @param lastAttempt Whether the request will not be retried; only then are API errors
+     *                    written to the conversation history
+     */
+    private CompletableFuture<JsonNode> sendRequest(ObjectNode requestBody, RequestExecution execution,
+                                                    boolean lastAttempt) {
+        // The body is encoded into a pooled buffer, which is released once the exchange completes
+        PooledBuffer buffer = bufferPool.acquire();
+        try {
+            requestWriter.writeValue(buffer, requestBody);
+        } catch (IOException e) {
+            bufferPool.release(buffer);
+            return CompletableFuture.failedFuture(e);
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("Request body: {}", new String(buffer.array(), 0, buffer.size(), StandardCharsets.UTF_8));
+        }
+        ChatTransport transport = this.transport;
+
+        long started = System.nanoTime();
+        StreamListener streamListener = execution.getStreamListener();
+        if (streamListener != null) {
+            StreamListener listener = speculativeToolExecution ? speculate(streamListener, execution) : streamListener;
+            ChatCompletionStreamAssembler assembler = new ChatCompletionStreamAssembler(objectMapper, listener);
+            CompletableFuture<Integer> pending = transport.stream(buffer.array(), buffer.size(), assembler);
+            pending.whenComplete((statusCode, error) -> completeRequest(buffer, started,
+                statusCode == null ? 0 : statusCode,
+                () -> assembler.getRawBody().getBytes(StandardCharsets.UTF_8), error));
+            return execution.track(pending)
+                .thenApply(statusCode -> {
+                    logger.debug("Response status: {}", statusCode);
+                    if (statusCode != 200) {
+                        handleErrorResponse(statusCode, assembler.getRawBody(), lastAttempt);
+                    }
+                    return assembler.getResponse();
+                });
+        }
+
+        RequestCoalescer coalescer = requestCoalescer;
+        CompletableFuture<TransportResponse> pending;
+        if (coalescer == null) {
+            pending = transport.send(buffer.array(), buffer.size());
+            pending.whenComplete((response, error) -> completeRequest(buffer, started, response, error));
+        } else {
+            String key = new String(buffer.array(), 0, buffer.size(), StandardCharsets.UTF_8);
+            boolean[] sent = new boolean[1];
+            pending = coalescer.execute(key, () -> {
+                sent[0] = true;
+                CompletableFuture<TransportResponse> exchange = transport.send(buffer.array(), buffer.size());
+                exchange.whenComplete((response, error) -> completeRequest(buffer, started, response, error));
+                return exchange;
+            });
+            if (!sent[0]) {
+                bufferPool.release(buffer);
+            }
+        }
+
+        return execution.track(pending)
+            .thenApply(response -> {
+                logger.debug("Response status: {}", response.getStatusCode());
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Response body: {}", new String(response.getBody(), StandardCharsets.UTF_8));
+                }
+                if (response.getStatusCode() != 200) {
+                    handleErrorResponse(response.getStatusCode(), new String(response.getBody(), StandardCharsets.UTF_8),
+                        lastAttempt);
+                }
+                try {
+                    return objectMapper.readTree(response.getBody());
+                } catch (IOException e) {
+                    throw new CompletionException(e);
+                }
+            });
+    }
+
+    private void completeRequest(PooledBuffer buffer, long started, TransportResponse response, Throwable error) {
+        completeRequest(buffer, started, response == null ? 0 : response.getStatusCode(),
+            response == null ? null : response::getBody, error);
+    }
+
+    /**
+     * Records the exchange if a payload recorder is set, then returns the request buffer to the pool.
+     * A cancelled exchange may still be reading the buffer, so its buffer is left to the garbage
+     * collector instead.
+     */
+    private void completeRequest(PooledBuffer buffer, long started, int statusCode, Supplier<byte[]> response,
+                                 Throwable error) {
+        PayloadRecorder recorder = payloadRecorder;
+        if (recorder != null) {
+            recorder.record(buffer.array(), buffer.size(), statusCode, response, error,
+                Duration.ofNanos(System.nanoTime() - started));
+        }
+        if (!(unwrap(error) instanceof CancellationException)) {
+            bufferPool.release(buffer);
+        }
+    }
+
+    /**
+     * Wraps a stream listener so that idempotent tools start as soon as their call is complete.
+     * Their results are picked up by {@link #executeToolCalls} when the response has arrived.
+     */
+    private StreamListener speculate(StreamListener listener, RequestExecution execution) {
+        return new StreamListener() {
+            @Override
+            public void onContentDelta(String delta) {
+                listener.onContentDelta(delta);
+            }
+
+            @Override
+            public void onToolCallComplete(JsonNode toolCall) {
+                listener.onToolCallComplete(toolCall);
+                // Calls beyond the tool call budget are left to the check once the response is complete
+                if (idempotentTools.contains(toolCall.path("function").path("name").asText())
+                        && execution.tryRecordSpeculativeToolCall()) {
+                    // Run off the stream's thread, which must keep reading the response
+                    CompletableFuture<String> result = CompletableFuture
+                        .supplyAsync(() -> executeToolCall(toolCall, execution), toolExecutor)
+                        .thenCompose(future -> future);
+                    execution.putSpeculativeResult(toolCall.path("id").asText(), execution.track(result));
+                }
+            }
+
+            @Override
+            public void onComplete(JsonNode response) {
+                listener.onComplete(response);
+            }
+        };
+    }
+
+    private void handleErrorResponse(int statusCode, String responseBody, boolean recordInHistory) {
+        JsonNode lastToolCalls = recordInHistory ? findLastToolCalls() : null;
         if (lastToolCalls != null && lastToolCalls.isArray()) {
             for (JsonNode toolCall : lastToolCalls) {
                 String toolCallId = toolCall.path("id").asText();
-                conversationHistory.addToolResponse(toolCallId, "Error: " + response.body());
+                conversationHistory.addToolResponse(toolCallId, "Error: " + responseBody);
             }
         }
+        throw new RuntimeException("API request failed with status code: " + statusCode);
     }
 
     private JsonNode findLastToolCalls() {
@@ -174,106 +906,285 @@ public class OpenAIAgent implements Agent {
         return null;
     }
 
-    private String processResponse(String responseBody) throws Exception {
-        ObjectNode responseJson = (ObjectNode) objectMapper.readTree(responseBody);
-        StringBuilder finalResponse = new StringBuilder();
-        boolean shouldContinue;
-        int maxIterations = 10; // Prevent infinite loops
-        int currentIteration = 0;
+    private CompletableFuture<String> processResponse(JsonNode responseJson, StringBuilder finalResponse,
+                                                      RequestExecution execution) {
+        try {
+            execution.checkActive();
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        boolean mayContinue = execution.recordIteration(responseJson.path("usage").path("total_tokens").asLong());
 
-        do {
-            ObjectNode responseMessage = (ObjectNode) responseJson.path("choices").get(0).path("message");
-            JsonNode toolCalls = responseMessage.path("tool_calls");
-            String content = responseMessage.path("content").isNull() ? null : responseMessage.path("content").asText();
+        ObjectNode responseMessage = (ObjectNode) responseJson.path("choices").get(0).path("message");
+        JsonNode toolCalls = responseMessage.path("tool_calls");
+        String content = responseMessage.path("content").isNull() ? null : responseMessage.path("content").asText();
+        execution.setLastContent(content);
 
-            // If there's content, add it to the response
-            if (content != null && !content.trim().isEmpty()) {
-                if (finalResponse.length() > 0) {
-                    finalResponse.append("\n");
-                }
-                finalResponse.append(content);
+        // If there's content, add it to the response
+        if (content != null && !content.trim().isEmpty()) {
+            if (finalResponse.length() > 0) {
+                finalResponse.append("\n");
             }
+            finalResponse.append(content);
+        }
 
-            // Handle tool calls if present
-            if (!toolCalls.isMissingNode() && toolCalls.isArray() && toolCalls.size() > 0) {
-                conversationHistory.addAssistantMessage(content, toolCalls);
-
-                // Execute all tool calls and collect their results
-                StringBuilder toolResults = new StringBuilder();
-                for (JsonNode toolCall : toolCalls) {
-                    String result = executeToolCall(toolCall);
-                    if (toolResults.length() > 0) {
-                        toolResults.append("\n");
-                    }
-                    toolResults.append(result);
-                }
+        // No more tool calls, add the final content and finish
+        if (toolCalls.isMissingNode() || !toolCalls.isArray() || toolCalls.size() == 0) {
+            conversationHistory.addAssistantMessage(content, null);
+            return CompletableFuture.completedFuture(finalResponse.toString());
+        }
 
-                // Create a new request to continue the conversation with tool results
-                ObjectNode newRequestBody = createRequestBody();
-                String newRequestBodyStr = objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(newRequestBody);
-                HttpResponse<String> newResponse = sendRequest(newRequestBodyStr);
+        conversationHistory.addAssistantMessage(content, toolCalls);
 
-                if (newResponse.statusCode() != 200) {
-                    handleErrorResponse(newResponse);
-                    throw new RuntimeException("API request failed with status code: " + newResponse.statusCode());
+        try {
+            execution.checkTokens();
+            execution.recordToolCalls(toolCalls.size());
+        } catch (RuntimeException e) {
+            // Answer every tool call so the history stays valid for the next request
+            for (JsonNode toolCall : toolCalls) {
+                CompletableFuture<String> speculative = execution.takeSpeculativeResult(toolCall.path("id").asText());
+                if (speculative != null) {
+                    speculative.cancel(true);
                 }
-
-                responseJson = (ObjectNode) objectMapper.readTree(newResponse.body());
-                shouldContinue = true;
-            } else {
-                // No more tool calls, add the final content and finish
-                conversationHistory.addAssistantMessage(content, null);
-                shouldContinue = false;
+                conversationHistory.addToolResponse(toolCall.path("id").asText(), "Error: " + e.getMessage());
             }
+            return CompletableFuture.failedFuture(e);
+        }
 
-            currentIteration++;
-        } while (shouldContinue && currentIteration < maxIterations);
+        // Execute all tool calls, then continue the conversation with their results
+        return executeToolCalls(toolCalls, execution).thenCompose(ignored -> {
+            if (!mayContinue) {
+                logger.warn("Reached maximum number of iterations ({}). Breaking the loop.", execution.getIterations());
+                return CompletableFuture.completedFuture(finalResponse.toString());
+            }
+            execution.checkActive();
+            return sendRoutedRequest(execution)
+                .thenCompose(newResponseJson -> processResponse(newResponseJson, finalResponse, execution));
+        });
+    }
 
-        if (currentIteration >= maxIterations) {
-            logger.warn("Reached maximum number of iterations ({}). Breaking the loop.", maxIterations);
+    /**
+     * Executes the tool calls of one assistant turn. Synchronous functions run in order on the
+     * calling thread, asynchronous functions are started immediately and run concurrently.
+     * Results are added to the conversation history in the order of the tool calls. A failed
+     * tool call is answered with its error so the model can react to it; only cancellation and
+     * exceeded budgets end the request.
+     */
+    private CompletableFuture<Void> executeToolCalls(JsonNode toolCalls, RequestExecution execution) {
+        List<String> toolCallIds = new ArrayList<>();
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        for (JsonNode toolCall : toolCalls) {
+            String toolCallId = toolCall.path("id").asText();
+            CompletableFuture<String> speculative = execution.takeSpeculativeResult(toolCallId);
+            toolCallIds.add(toolCallId);
+            results.add(speculative != null ? speculative : executeToolCall(toolCall, execution));
         }
 
-        return finalResponse.toString();
+        return CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0]))
+            .handle((ignored, error) -> {
+                Throwable firstFailure = null;
+                for (int i = 0; i < results.size(); i++) {
+                    CompletableFuture<String> result = results.get(i);
+                    try {
+                        conversationHistory.addToolResponse(toolCallIds.get(i), result.join());
+                    } catch (CompletionException | CancellationException e) {
+                        Throwable cause = unwrap(e);
+                        conversationHistory.addToolResponse(toolCallIds.get(i), cause.getMessage());
+                        Throwable reason = cause.getCause() != null ? cause.getCause() : cause;
+                        if (reason instanceof CancellationException || reason instanceof BudgetExceededException) {
+                            if (firstFailure == null) {
+                                firstFailure = reason;
+                            }
+                        } else {
+                            logger.warn(cause.getMessage());
+                        }
+                    }
+                }
+                if (firstFailure != null) {
+                    throw new CompletionException(firstFailure);
+                }
+                return null;
+            });
     }
 
-    private String executeToolCall(JsonNode toolCall) throws Exception {
+    private CompletableFuture<String> executeToolCall(JsonNode toolCall, RequestExecution execution) {
         String functionName = toolCall.path("function").path("name").asText();
         String arguments = toolCall.path("function").path("arguments").asText();
-        String toolCallId = toolCall.path("id").asText();
         
         logger.debug("Function call: {} with arguments: {}", functionName, arguments);
 
-        AgentFunction function = functions.get(functionName);
+        RegisteredTool tool = registry.get().get(functionName);
+        AgentFunction function = tool == null ? null : tool.function;
         if (function == null) {
-            String errorMsg = "Function not found: " + functionName;
-            conversationHistory.addToolResponse(toolCallId, errorMsg);
-            throw new RuntimeException(errorMsg);
+            return CompletableFuture.failedFuture(new RuntimeException("Function not found: " + functionName));
         }
+        if (tool.validator != null) {
+            // Invalid arguments are sent back to the model before any conversion or guard is involved
+            List<String> problems = tool.validator.validate(arguments, objectMapper);
+            if (!problems.isEmpty()) {
+                return CompletableFuture.failedFuture(new IllegalArgumentException("Invalid arguments for "
+                    + functionName + ": " + String.join("; ", problems)
+                    + ". Call the tool again with arguments matching its schema."));
+            }
+        }
+
+        ToolGuard guard = getToolGuard(functionName);
+        CompletableFuture<Object> result = guard == null
+            ? invokeFunction(function, arguments, execution)
+            : execution.track(guard.execute(() -> invokeFunction(function, arguments, execution),
+                !(function instanceof AsyncAgentFunction)));
 
+        return result.handle((value, error) -> {
+            if (error != null) {
+                Throwable cause = unwrap(error);
+                String errorMsg = "Error calling method: " + functionName + " - " + cause.getMessage();
+                throw new CompletionException(new RuntimeException(errorMsg, cause));
+            }
+            return limitResult(functionName, value);
+        });
+    }
+
+    private CompletableFuture<Object> invokeFunction(AgentFunction function, String arguments, RequestExecution execution) {
+        CompletableFuture<Object> result;
         try {
-            Map<String, Object> args = objectMapper.readValue(arguments, Map.class);
-            Object result = function.execute(args);
-            String resultStr = String.valueOf(result);
-            conversationHistory.addToolResponse(toolCallId, resultStr);
-            return resultStr;
+            execution.checkActive();
+            if (function instanceof MethodFunction) {
+                // Reflective tools bind the JSON directly to their parameters, skipping the argument map
+                Object value = ((MethodFunction) function).execute(arguments);
+                result = function instanceof AsyncAgentFunction
+                    ? execution.track(toFuture(value))
+                    : CompletableFuture.completedFuture(value);
+            } else {
+                Map<String, Object> args = argumentsReader.readValue(arguments);
+                if (function instanceof AsyncAgentFunction) {
+                    result = execution.track(((AsyncAgentFunction) function).executeAsync(args).toCompletableFuture());
+                } else {
+                    result = CompletableFuture.completedFuture(function.execute(args));
+                }
+            }
         } catch (Exception e) {
-            String errorMsg = "Error calling method: " + functionName + " - " + e.getMessage();
-            conversationHistory.addToolResponse(toolCallId, errorMsg);
-            throw new RuntimeException(errorMsg, e);
+            result = CompletableFuture.failedFuture(e);
         }
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static CompletableFuture<Object> toFuture(Object stage) {
+        return stage == null
+            ? CompletableFuture.completedFuture(null)
+            : ((CompletionStage<Object>) stage).toCompletableFuture();
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        while ((error instanceof CompletionException || error instanceof ExecutionException
+                || error instanceof InvocationTargetException) && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
     }
 
     @Override
     public void registerFunction(String name, AgentFunction function) {
-        functions.put(name, function);
+        register(name, function, null, false, null, false, null);
     }
 
     /**
      * Registers a function with a specific schema.
      */
     public void registerFunction(String functionName, AgentFunction function, ObjectNode schema) {
-        registerFunction(functionName, function);
-        functionSchemas.put(functionName, schema);
+        register(functionName, function, schema, true, null, false, null);
+    }
+
+    /**
+     * Registers a function with a specific schema as part of a named tool group.
+     *
+     * @param functionName The name of the function to register
+     * @param function The function to register
+     * @param schema The parameter schema of the function
+     * @param group The tool group the function belongs to
+     */
+    public void registerFunction(String functionName, AgentFunction function, ObjectNode schema, String group) {
+        registerFunction(functionName, function, schema, Objects.requireNonNull(group, "group"), null);
+    }
+
+    /**
+     * Registers a function with a specific schema and description, optionally as part of a named tool group.
+     *
+     * @param functionName The name of the function to register
+     * @param function The function to register
+     * @param schema The parameter schema of the function
+     * @param group The tool group the function belongs to, or null for no group
+     * @param description The description sent to the model, or null to derive one
+     */
+    public void registerFunction(String functionName, AgentFunction function, ObjectNode schema, String group,
+                                 String description) {
+        register(functionName, function, schema, true, group, true, description);
+    }
+
+    /**
+     * Publishes a new registry snapshot containing the function. Settings that are not replaced
+     * are kept from an earlier registration under the same name.
+     */
+    private void register(String name, AgentFunction function, ObjectNode schema, boolean replaceSchema,
+                          String group, boolean replaceGroupAndDescription, String registeredDescription) {
+        registry.updateAndGet(current -> current.with(createTool(current, name, function, schema, null, replaceSchema,
+            group, replaceGroupAndDescription, registeredDescription)));
+    }
+
+    /**
+     * Creates the registration of a function for the given snapshot, see {@link #register}.
+     *
+     * @param compiled The validator already compiled from the schema, or null to compile it if needed
+     */
+    private RegisteredTool createTool(ToolRegistry current, String name, AgentFunction function, ObjectNode schema,
+                                      SchemaValidator compiled, boolean replaceSchema, String group,
+                                      boolean replaceGroupAndDescription, String registeredDescription) {
+        RegisteredTool existing = current.get(name);
+        ObjectNode toolSchema = replaceSchema || existing == null ? schema : existing.schema;
+        String toolGroup = replaceGroupAndDescription || existing == null ? group : existing.group;
+        String toolDescription = replaceGroupAndDescription || existing == null
+            ? registeredDescription : existing.registeredDescription;
+        String description = toolDescription != null ? toolDescription : getFunctionDescription(name, function);
+        // Schemas are compiled into validators once: those of registerMethods come compiled with the
+        // descriptors shared by all agents, others are compiled here and kept while the schema is
+        SchemaValidator validator = existing != null && existing.schema == toolSchema ? existing.validator
+            : toolSchema == null ? null
+            : compiled != null && toolSchema == schema ? compiled
+            : SchemaValidator.compile(toolSchema);
+        return new RegisteredTool(name, function, toolSchema, toolGroup, toolDescription,
+            description, createToolDefinition(name, description, toolSchema), validator);
+    }
+
+    /**
+     * Returns the current snapshot of the registered tools.
+     */
+    ToolRegistry getToolRegistry() {
+        return registry.get();
+    }
+
+    /**
+     * Appends a message of an earlier turn to the conversation history, for example to continue a
+     * conversation held by a client. System messages are sent after the agent's own system prompt.
+     * Must not be called while a request is running.
+     *
+     * @param role The role of the message: {@code system}, {@code user} or {@code assistant}
+     * @param content The text of the message
+     * @throws IllegalArgumentException if the role is not one of these
+     */
+    public void addConversationMessage(String role, String content) {
+        switch (role) {
+            case "system":
+                conversationHistory.addSystemMessage(content);
+                break;
+            case "user":
+                conversationHistory.addUserMessage(content);
+                break;
+            case "assistant":
+                conversationHistory.addAssistantMessage(content, null);
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported message role: " + role);
+        }
     }
 
     /**
@@ -281,42 +1192,51 @@ public class OpenAIAgent implements Agent {
      */
     public void clearConversationHistory() {
         conversationHistory.clear();
+        resultStore.clear();
+    }
+
+    /**
+     * Writes the conversation history in a compact binary format, so the session can be
+     * continued by an agent in another process. Must not be called while a request is running.
+     *
+     * @param out The stream to write to, flushed but not closed
+     * @param compress Whether to deflate the history
+     * @throws IOException if the history cannot be written
+     * @see ConversationHistory#export(OutputStream, boolean)
+     */
+    public void exportConversationHistory(OutputStream out, boolean compress) throws IOException {
+        conversationHistory.export(out, compress);
+    }
+
+    /**
+     * Replaces the conversation history with one written by {@link #exportConversationHistory}.
+     * Offloaded tool results are not part of the history and are cleared.
+     *
+     * @param in The stream to read from, not closed
+     * @throws IOException if the stream does not contain a valid history
+     */
+    public void importConversationHistory(InputStream in) throws IOException {
+        conversationHistory.importFrom(in);
+        resultStore.clear();
     }
 
     private String getFunctionDescription(String functionName, AgentFunction function) {
         if (function instanceof MethodFunction) {
-            Method method = ((MethodFunction) function).getMethod();
-            StringBuilder description = new StringBuilder();
-            
-            description.append("Returns ").append(method.getReturnType().getSimpleName()).append(". ");
-            
-            Parameter[] params = method.getParameters();
-            if (params.length > 0) {
-                description.append("Takes ");
-                for (int i = 0; i < params.length; i++) {
-                    if (i > 0) {
-                        description.append(i == params.length - 1 ? " and " : ", ");
-                    }
-                    description.append(params[i].getType().getSimpleName())
-                             .append(" ")
-                             .append(params[i].getName());
-                }
-                description.append(".");
-            }
-            
-            return description.toString();
+            return ((MethodFunction) function).tool.defaultDescription;
         }
         
         return "Execute " + functionName;
     }
 
     // Helper class to store method information
-    private static class MethodFunction implements AgentFunction {
+    private abstract static class MethodFunction implements AgentFunction {
+        private final MethodTool tool;
         private final Method method;
         private final Object instance;
 
-        public MethodFunction(Method method, Object instance) {
-            this.method = method;
+        public MethodFunction(MethodTool tool, Object instance) {
+            this.tool = tool;
+            this.method = tool.method;
             this.instance = instance;
         }
 
@@ -324,13 +1244,15 @@ public class OpenAIAgent implements Agent {
             return method;
         }
 
-        @Override
-        public Object execute(Map<String, Object> parameters) throws Exception {
+        /**
+         * Invokes the method with arguments converted from a parameter map.
+         */
+        protected Object invoke(Map<String, Object> parameters) throws Exception {
             Parameter[] methodParams = method.getParameters();
             Object[] args = new Object[methodParams.length];
             
             for (int i = 0; i < methodParams.length; i++) {
-                String paramName = "arg" + i;
+                String paramName = FunctionSchemaGenerator.getParameterName(methodParams[i], i);
                 Class<?> paramType = methodParams[i].getType();
                 Object value = parameters.get(paramName);
                 
@@ -348,21 +1270,104 @@ public class OpenAIAgent implements Agent {
             
             return method.invoke(instance, args);
         }
+
+        /**
+         * Invokes the method with arguments bound straight from the tool call JSON.
+         */
+        public Object execute(String arguments) throws Exception {
+            return method.invoke(instance, tool.binder.bind(arguments));
+        }
+    }
+
+    // Method returning a plain value
+    private static class SyncMethodFunction extends MethodFunction {
+        public SyncMethodFunction(MethodTool tool, Object instance) {
+            super(tool, instance);
+        }
+
+        @Override
+        public Object execute(Map<String, Object> parameters) throws Exception {
+            return invoke(parameters);
+        }
+    }
+
+    // Method returning a CompletionStage, composed into the tool loop without blocking
+    private static class AsyncMethodFunction extends MethodFunction implements AsyncAgentFunction {
+        public AsyncMethodFunction(MethodTool tool, Object instance) {
+            super(tool, instance);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public CompletionStage<Object> executeAsync(Map<String, Object> parameters) {
+            try {
+                Object result = invoke(parameters);
+                if (result == null) {
+                    return CompletableFuture.completedFuture(null);
+                }
+                return (CompletionStage<Object>) result;
+            } catch (Exception e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
     }
 
     /**
      * Registers all public methods from a class instance as functions.
-     * Methods with more than 2 parameters are ignored.
-     * The 'main' method is also ignored.
+     * Non-public helper methods and the 'main' method are ignored.
+     * If any method is annotated with {@link Tool}, only the annotated methods are registered,
+     * using the {@link ToolProvider} generated at compile time when it is available.
+     * Methods returning a {@link CompletionStage} (such as {@link CompletableFuture})
+     * are registered as {@link AsyncAgentFunction}s.
      *
      * @param instance The class instance whose methods should be registered
      */
     public void registerMethods(Object instance) {
-        for (Method method : instance.getClass().getDeclaredMethods()) {
-            if (!method.getName().equals("main")) {
-                ObjectNode schema = schemaGenerator.generateSchema(method);
-                registerFunction(method.getName(), new MethodFunction(method, instance), schema);
+        registerMethods(instance, null);
+    }
+
+    /**
+     * Registers all public methods from a class instance as functions in a named tool group.
+     *
+     * @param instance The class instance whose methods should be registered
+     * @param group The tool group the methods belong to, or null for no group
+     * @see #registerMethods(Object)
+     */
+    public void registerMethods(Object instance, String group) {
+        ToolDescriptors descriptors = ToolDescriptors.of(instance.getClass());
+        ToolProvider<Object> provider = descriptors.getProvider();
+        // All methods are published in one snapshot instead of one per method
+        List<Function<ToolRegistry, RegisteredTool>> tools = new ArrayList<>();
+        if (provider != null) {
+            for (ToolDefinition tool : provider.getTools(instance)) {
+                ObjectNode schema = descriptors.getProvidedSchema(tool);
+                SchemaValidator validator = descriptors.getProvidedValidator(tool);
+                tools.add(current -> createTool(current, tool.getName(), tool.getFunction(), schema, validator, true,
+                    group, true, tool.getDescription()));
+                if (tool.isIdempotent()) {
+                    markIdempotent(tool.getName());
+                }
+            }
+        } else {
+            for (MethodTool tool : descriptors.getMethods()) {
+                MethodFunction function = tool.async
+                    ? new AsyncMethodFunction(tool, instance)
+                    : new SyncMethodFunction(tool, instance);
+                tools.add(current -> createTool(current, tool.name, function, tool.schema, tool.validator, true,
+                    group, true, tool.description));
+                if (tool.idempotent) {
+                    markIdempotent(tool.name);
+                }
             }
         }
+
+        registry.updateAndGet(current -> {
+            List<RegisteredTool> created = new ArrayList<>(tools.size());
+            for (Function<ToolRegistry, RegisteredTool> tool : tools) {
+                created.add(tool.apply(current));
+            }
+            return current.withAll(created);
+        });
     }
+
 } 
\ No newline at end of file
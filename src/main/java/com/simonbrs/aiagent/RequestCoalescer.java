@@ -0,0 +1,107 @@
+package com.simonbrs.aiagent;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Deduplicates identical requests that are in flight at the same time. The first caller for a key
+ * starts the request; callers arriving while it runs share its result instead of sending their own.
+ * Every caller receives its own future: cancelling it detaches that caller only, and the shared
+ * request is cancelled once all of its callers have cancelled.
+ * <p>
+ * Share one coalescer between agents that use the same API key, see
+ * {@link OpenAIAgent#setRequestCoalescer(RequestCoalescer)}.
+ */
+public class RequestCoalescer {
+    private final Map<String, Flight> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * Executes a request, or joins the identical request that is already in flight.
+     *
+     * @param key The canonical form of the request
+     * @param request Starts the request if none with the same key is in flight
+     * @return A future completing with the result of the (shared) request
+     */
+    public <T> CompletableFuture<T> execute(String key, Supplier<CompletableFuture<T>> request) {
+        Flight[] joined = new Flight[1];
+        boolean[] leader = new boolean[1];
+        inFlight.compute(key, (k, flight) -> {
+            if (flight == null) {
+                flight = new Flight();
+                leader[0] = true;
+            } else {
+                coalesced.increment();
+            }
+            flight.waiters++;
+            joined[0] = flight;
+            return flight;
+        });
+        Flight flight = joined[0];
+
+        if (leader[0]) {
+            try {
+                CompletableFuture<?> underlying = request.get();
+                flight.underlying = underlying;
+                // The callers may all have left while the request was being started
+                if (flight.cancelled) {
+                    underlying.cancel(true);
+                }
+                underlying.whenComplete((result, error) -> {
+                    inFlight.remove(key, flight);
+                    if (error != null) {
+                        flight.result.completeExceptionally(error);
+                    } else {
+                        flight.result.complete(result);
+                    }
+                });
+            } catch (RuntimeException e) {
+                inFlight.remove(key, flight);
+                flight.result.completeExceptionally(e);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        CompletableFuture<T> own = (CompletableFuture<T>) flight.result.copy();
+        own.whenComplete((result, error) -> {
+            if (own.isCancelled()) {
+                leave(key, flight);
+            }
+        });
+        return own;
+    }
+
+    /**
+     * Returns the number of requests that were served by joining an identical in-flight request.
+     */
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+
+    private void leave(String key, Flight flight) {
+        inFlight.computeIfPresent(key, (k, current) -> {
+            if (current != flight) {
+                return current;
+            }
+            if (--current.waiters == 0) {
+                current.cancelled = true;
+                if (current.underlying != null) {
+                    current.underlying.cancel(true);
+                }
+                return null;
+            }
+            return current;
+        });
+    }
+
+    // One shared request and the number of callers waiting for it, guarded by the map's per-key locking
+    private static class Flight {
+        private final CompletableFuture<Object> result = new CompletableFuture<>();
+        private volatile CompletableFuture<?> underlying;
+        private volatile boolean cancelled;
+        private int waiters;
+    }
+}
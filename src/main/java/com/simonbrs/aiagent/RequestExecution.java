@@ -0,0 +1,192 @@
+package com.simonbrs.aiagent;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.simonbrs.aiagent.ExecutionBudget.BudgetExceededException;
+import com.simonbrs.aiagent.streaming.StreamListener;
+
+/**
+ * Tracks the budget usage of a single {@code sendMessage} call and the futures
+ * it has in flight, so that cancelling the call also cancels HTTP requests and
+ * running tool executions.
+ */
+class RequestExecution {
+    private final ExecutionBudget budget;
+    private final long deadlineNanos;
+    private final Set<CompletableFuture<?>> inFlight = ConcurrentHashMap.newKeySet();
+    private final Map<String, CompletableFuture<String>> speculativeResults = new ConcurrentHashMap<>();
+    private final Set<String> exposedTools;
+    private final ObjectNode responseFormat;
+    private final StreamListener streamListener;
+    private final Map<String, Object> context;
+    private volatile boolean cancelled;
+    private volatile String lastContent;
+    private int iterations;
+    private long totalTokens;
+    private int toolCalls;
+    private int speculativeToolCalls;
+
+    RequestExecution(ExecutionBudget budget, Set<String> exposedTools, ObjectNode responseFormat,
+                     StreamListener streamListener) {
+        this(budget, exposedTools, responseFormat, streamListener, null);
+    }
+
+    RequestExecution(ExecutionBudget budget, Set<String> exposedTools, ObjectNode responseFormat,
+                     StreamListener streamListener, Map<String, Object> context) {
+        this.budget = budget;
+        this.context = context;
+        this.exposedTools = exposedTools;
+        this.responseFormat = responseFormat;
+        this.streamListener = streamListener;
+        this.deadlineNanos = budget.getTimeout() == null ? 0 : System.nanoTime() + budget.getTimeout().toNanos();
+    }
+
+    ExecutionBudget getBudget() {
+        return budget;
+    }
+
+    /**
+     * Returns the names of the tools sent to the model, or null if all tools are sent.
+     */
+    Set<String> getExposedTools() {
+        return exposedTools;
+    }
+
+    /**
+     * Returns the requested response format, or null for plain text responses.
+     */
+    ObjectNode getResponseFormat() {
+        return responseFormat;
+    }
+
+    /**
+     * Returns the context rendered into the system prompt, or null if there is none.
+     */
+    Map<String, Object> getContext() {
+        return context;
+    }
+
+    /**
+     * Returns the listener for streamed responses, or null if responses are not streamed.
+     */
+    StreamListener getStreamListener() {
+        return streamListener;
+    }
+
+    /**
+     * Stores the result of a tool call started before its response was complete.
+     */
+    void putSpeculativeResult(String toolCallId, CompletableFuture<String> result) {
+        speculativeResults.put(toolCallId, result);
+    }
+
+    /**
+     * Removes and returns the result of a tool call started speculatively, or null if there is none.
+     */
+    CompletableFuture<String> takeSpeculativeResult(String toolCallId) {
+        return speculativeResults.remove(toolCallId);
+    }
+
+    /**
+     * Returns the content of the last assistant message received for this request.
+     */
+    String getLastContent() {
+        return lastContent;
+    }
+
+    void setLastContent(String lastContent) {
+        this.lastContent = lastContent;
+    }
+
+    /**
+     * Registers a future to be cancelled when the request is cancelled.
+     * The future is forgotten again once it completes.
+     */
+    <T> CompletableFuture<T> track(CompletableFuture<T> future) {
+        if (cancelled) {
+            future.cancel(true);
+            return future;
+        }
+        inFlight.add(future);
+        // cancel() may have run between the check above and the add
+        if (cancelled && inFlight.remove(future)) {
+            future.cancel(true);
+            return future;
+        }
+        future.whenComplete((result, error) -> inFlight.remove(future));
+        return future;
+    }
+
+    void cancel() {
+        cancelled = true;
+        for (CompletableFuture<?> future : inFlight) {
+            if (inFlight.remove(future)) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Throws if the request was cancelled or its deadline has passed.
+     */
+    void checkActive() {
+        if (cancelled) {
+            throw new CancellationException("Request was cancelled");
+        }
+        if (deadlineNanos != 0 && System.nanoTime() - deadlineNanos > 0) {
+            throw new BudgetExceededException("Request exceeded its deadline of " + budget.getTimeout());
+        }
+    }
+
+    /**
+     * Records a model response and returns whether another iteration is allowed.
+     */
+    boolean recordIteration(long tokens) {
+        iterations++;
+        totalTokens += tokens;
+        return budget.getMaxIterations() == 0 || iterations < budget.getMaxIterations();
+    }
+
+    void checkTokens() {
+        if (budget.getMaxTotalTokens() != 0 && totalTokens > budget.getMaxTotalTokens()) {
+            throw new BudgetExceededException("Request used " + totalTokens
+                + " tokens, exceeding the budget of " + budget.getMaxTotalTokens());
+        }
+    }
+
+    /**
+     * Counts the tool calls of a response, apart from those already counted when they were
+     * started speculatively.
+     */
+    synchronized void recordToolCalls(int count) {
+        toolCalls += count - speculativeToolCalls;
+        speculativeToolCalls = 0;
+        if (budget.getMaxToolCalls() != 0 && toolCalls > budget.getMaxToolCalls()) {
+            throw new BudgetExceededException("Request attempted " + toolCalls
+                + " tool calls, exceeding the budget of " + budget.getMaxToolCalls());
+        }
+    }
+
+    /**
+     * Counts a tool call that is about to be started before its response is complete.
+     *
+     * @return false if the call would exceed the tool call budget and must not be started
+     */
+    synchronized boolean tryRecordSpeculativeToolCall() {
+        if (budget.getMaxToolCalls() != 0 && toolCalls + 1 > budget.getMaxToolCalls()) {
+            return false;
+        }
+        toolCalls++;
+        speculativeToolCalls++;
+        return true;
+    }
+
+    int getIterations() {
+        return iterations;
+    }
+}
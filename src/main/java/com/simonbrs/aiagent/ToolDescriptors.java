@@ -0,0 +1,194 @@
+package com.simonbrs.aiagent;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.simonbrs.aiagent.annotation.Tool;
+import com.simonbrs.aiagent.annotation.ToolDefinition;
+import com.simonbrs.aiagent.annotation.ToolProvider;
+import com.simonbrs.aiagent.conversion.ArgumentBinder;
+import com.simonbrs.aiagent.schema.FunctionSchemaGenerator;
+import com.simonbrs.aiagent.schema.SchemaValidator;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Parameter;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caches what {@link OpenAIAgent#registerMethods(Object)} derives from a class: the generated
+ * {@link ToolProvider} or the tool methods found by reflection, with their schemas, descriptions
+ * argument binders and the validators compiled from the schemas. The cache is keyed by class and shared by all agents, so registering
+ * the same class again only creates the functions bound to the new instance.
+ * <p>
+ * Entries are held in a {@link ClassValue}. The cached descriptors reference the methods of the
+ * class, and through them the class itself, so a class whose tools were registered is not
+ * unloaded; tool classes are expected to live as long as the application. Cached schemas are
+ * shared and must not be modified.
+ */
+final class ToolDescriptors {
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final FunctionSchemaGenerator schemaGenerator = new FunctionSchemaGenerator(objectMapper);
+
+    private static final ClassValue<ToolDescriptors> CACHE = new ClassValue<>() {
+        @Override
+        protected ToolDescriptors computeValue(Class<?> type) {
+            return new ToolDescriptors(type);
+        }
+    };
+
+    private final ToolProvider<Object> provider;
+    private final Map<String, ObjectNode> providedSchemas = new ConcurrentHashMap<>();
+    private final Map<String, SchemaValidator> providedValidators = new ConcurrentHashMap<>();
+    private final List<MethodTool> methods;
+
+    private ToolDescriptors(Class<?> type) {
+        this.provider = findToolProvider(type);
+        this.methods = provider != null ? List.of() : findMethods(type);
+    }
+
+    /**
+     * Returns the descriptors of a class, computing them on first use.
+     */
+    static ToolDescriptors of(Class<?> type) {
+        return CACHE.get(type);
+    }
+
+    /**
+     * Returns the provider generated at compile time for the class, or null if there is none.
+     */
+    ToolProvider<Object> getProvider() {
+        return provider;
+    }
+
+    /**
+     * Returns the parsed schema of a tool from the generated provider.
+     */
+    ObjectNode getProvidedSchema(ToolDefinition tool) {
+        return providedSchemas.computeIfAbsent(tool.getName(), name -> {
+            try {
+                return (ObjectNode) objectMapper.readTree(tool.getSchema());
+            } catch (IOException e) {
+                throw new IllegalStateException("Invalid generated schema for tool: " + name, e);
+            }
+        });
+    }
+
+    /**
+     * Returns the validator compiled from the schema of a tool from the generated provider.
+     */
+    SchemaValidator getProvidedValidator(ToolDefinition tool) {
+        return providedValidators.computeIfAbsent(tool.getName(), name -> SchemaValidator.compile(getProvidedSchema(tool)));
+    }
+
+    /**
+     * Returns the tool methods found by reflection, empty if the class has a generated provider.
+     */
+    List<MethodTool> getMethods() {
+        return methods;
+    }
+
+    private static List<MethodTool> findMethods(Class<?> type) {
+        Method[] declared = type.getDeclaredMethods();
+        boolean annotated = Arrays.stream(declared).anyMatch(method -> method.isAnnotationPresent(Tool.class));
+        List<MethodTool> tools = new ArrayList<>();
+        for (Method method : declared) {
+            if (Modifier.isPublic(method.getModifiers()) && !method.isSynthetic()
+                    && !method.getName().equals("main")
+                    && (!annotated || method.isAnnotationPresent(Tool.class))) {
+                tools.add(new MethodTool(method));
+            }
+        }
+        return Collections.unmodifiableList(tools);
+    }
+
+    /**
+     * Looks up the {@link ToolProvider} generated at compile time for the given class.
+     *
+     * @return The generated provider, or null if the class was not processed by the ToolProcessor
+     */
+    @SuppressWarnings("unchecked")
+    private static ToolProvider<Object> findToolProvider(Class<?> type) {
+        String packageName = type.getPackageName();
+        String className = packageName.isEmpty() ? type.getName() : type.getName().substring(packageName.length() + 1);
+        String providerName = (packageName.isEmpty() ? "" : packageName + ".")
+            + className.replace('$', '_') + ToolProvider.SUFFIX;
+        try {
+            Class<?> providerClass = Class.forName(providerName, true, type.getClassLoader());
+            return (ToolProvider<Object>) providerClass.getDeclaredConstructor().newInstance();
+        } catch (ClassNotFoundException e) {
+            return null;
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot instantiate tool provider: " + providerName, e);
+        }
+    }
+
+    /**
+     * A public method registered as a tool, with everything that does not depend on the instance.
+     */
+    static final class MethodTool {
+        final Method method;
+        final String name;
+        final String description;
+        final String defaultDescription;
+        final ObjectNode schema;
+        final SchemaValidator validator;
+        final ArgumentBinder binder;
+        final boolean async;
+        final boolean idempotent;
+
+        private MethodTool(Method method) {
+            Tool tool = method.getAnnotation(Tool.class);
+            this.method = method;
+            this.name = tool != null && !tool.name().isEmpty() ? tool.name() : method.getName();
+            this.description = tool != null && !tool.description().isEmpty() ? tool.description() : null;
+            this.defaultDescription = describe(method);
+            this.schema = schemaGenerator.generateSchema(method);
+            this.validator = SchemaValidator.compile(schema);
+            this.binder = new ArgumentBinder(method, objectMapper);
+            this.async = CompletionStage.class.isAssignableFrom(method.getReturnType());
+            this.idempotent = tool != null && tool.idempotent();
+        }
+
+        private static String describe(Method method) {
+            StringBuilder description = new StringBuilder();
+
+            description.append("Returns ").append(getResultTypeName(method)).append(". ");
+
+            Parameter[] params = method.getParameters();
+            if (params.length > 0) {
+                description.append("Takes ");
+                for (int i = 0; i < params.length; i++) {
+                    if (i > 0) {
+                        description.append(i == params.length - 1 ? " and " : ", ");
+                    }
+                    description.append(params[i].getType().getSimpleName())
+                             .append(" ")
+                             .append(FunctionSchemaGenerator.getParameterName(params[i], i));
+                }
+                description.append(".");
+            }
+
+            return description.toString();
+        }
+
+        private static String getResultTypeName(Method method) {
+            if (CompletionStage.class.isAssignableFrom(method.getReturnType())
+                    && method.getGenericReturnType() instanceof ParameterizedType) {
+                Type resultType = ((ParameterizedType) method.getGenericReturnType()).getActualTypeArguments()[0];
+                if (resultType instanceof Class) {
+                    return ((Class<?>) resultType).getSimpleName();
+                }
+            }
+            return method.getReturnType().getSimpleName();
+        }
+    }
+}
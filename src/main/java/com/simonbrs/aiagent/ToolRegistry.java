@@ -0,0 +1,144 @@
+package com.simonbrs.aiagent;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.simonbrs.aiagent.schema.SchemaValidator;
+
+/**
+ * An immutable snapshot of the registered tools. Registration publishes a new snapshot, so
+ * requests always read a consistent set of functions, schemas and descriptions, and the tool
+ * definitions sent to the API are built once per registration rather than once per request.
+ */
+final class ToolRegistry {
+    static final ToolRegistry EMPTY = new ToolRegistry(Map.of());
+
+    private final Map<String, RegisteredTool> tools;
+    private final Map<String, AgentFunction> functions;
+    private final Map<String, ObjectNode> schemas;
+    private final Map<String, String> descriptions;
+    // Derived lazily; racing threads compute equal values
+    private volatile ToolPayload allToolsPayload;
+
+    private ToolRegistry(Map<String, RegisteredTool> tools) {
+        this.tools = tools;
+        Map<String, AgentFunction> functions = new LinkedHashMap<>();
+        Map<String, ObjectNode> schemas = new LinkedHashMap<>();
+        Map<String, String> descriptions = new LinkedHashMap<>();
+        for (RegisteredTool tool : tools.values()) {
+            functions.put(tool.name, tool.function);
+            if (tool.schema != null) {
+                schemas.put(tool.name, tool.schema);
+            }
+            descriptions.put(tool.name, tool.description);
+        }
+        this.functions = Collections.unmodifiableMap(functions);
+        this.schemas = Collections.unmodifiableMap(schemas);
+        this.descriptions = Collections.unmodifiableMap(descriptions);
+    }
+
+    /**
+     * Returns a snapshot with the given tool added or replaced.
+     */
+    ToolRegistry with(RegisteredTool tool) {
+        Map<String, RegisteredTool> updated = new LinkedHashMap<>(tools);
+        updated.put(tool.name, tool);
+        return new ToolRegistry(Collections.unmodifiableMap(updated));
+    }
+
+    /**
+     * Returns a snapshot with the given tools added or replaced, copying the registry only once.
+     */
+    ToolRegistry withAll(Collection<RegisteredTool> added) {
+        Map<String, RegisteredTool> updated = new LinkedHashMap<>(tools);
+        for (RegisteredTool tool : added) {
+            updated.put(tool.name, tool);
+        }
+        return new ToolRegistry(Collections.unmodifiableMap(updated));
+    }
+
+    RegisteredTool get(String name) {
+        return tools.get(name);
+    }
+
+    Map<String, RegisteredTool> getTools() {
+        return tools;
+    }
+
+    Map<String, AgentFunction> getFunctions() {
+        return functions;
+    }
+
+    /**
+     * Returns the explicitly registered parameter schemas.
+     */
+    Map<String, ObjectNode> getSchemas() {
+        return schemas;
+    }
+
+    Map<String, String> getDescriptions() {
+        return descriptions;
+    }
+
+    /**
+     * Returns the payload exposing all tools, or null if it has not been built for this snapshot yet.
+     */
+    ToolPayload getAllToolsPayload() {
+        return allToolsPayload;
+    }
+
+    void setAllToolsPayload(ToolPayload payload) {
+        this.allToolsPayload = payload;
+    }
+
+    /**
+     * The system prompt and tool definitions shared by all requests exposing the same tools.
+     */
+    static final class ToolPayload {
+        final String systemPrompt;
+        final ArrayNode tools;
+
+        ToolPayload(String systemPrompt, ArrayNode tools) {
+            this.systemPrompt = systemPrompt;
+            this.tools = tools;
+        }
+    }
+
+    /**
+     * A registered tool with its precomputed definition.
+     */
+    static final class RegisteredTool {
+        final String name;
+        final AgentFunction function;
+        final ObjectNode schema;
+        final String group;
+        final String registeredDescription;
+        final String description;
+        final ObjectNode definition;
+        final SchemaValidator validator;
+
+        /**
+         * @param schema The explicitly registered schema, or null if the default schema is used
+         * @param registeredDescription The explicitly registered description, or null
+         * @param description The description sent to the model
+         * @param definition The tool definition sent to the model; must not be modified
+         * @param validator The validator compiled from the explicitly registered schema, or null
+         */
+        RegisteredTool(String name, AgentFunction function, ObjectNode schema, String group,
+                       String registeredDescription, String description, ObjectNode definition,
+                       SchemaValidator validator) {
+            this.name = name;
+            this.function = function;
+            this.schema = schema;
+            this.group = group;
+            this.registeredDescription = registeredDescription;
+            this.description = description;
+            this.definition = definition;
+            this.validator = validator;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.simonbrs.aiagent.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Describes a parameter of a tool method.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.PARAMETER)
+public @interface Param {
+    /**
+     * The name of the parameter in the tool schema. Defaults to the parameter name.
+     */
+    String value() default "";
+
+    /**
+     * A description of the parameter, sent to the model.
+     */
+    String description() default "";
+}
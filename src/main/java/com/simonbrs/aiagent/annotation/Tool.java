@@ -0,0 +1,36 @@
+package com.simonbrs.aiagent.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a public method as a tool that can be called by the agent.
+ * When a class annotates any of its methods with {@code @Tool}, only the
+ * annotated methods are registered by {@code registerMethods}.
+ * <p>
+ * The {@link com.simonbrs.aiagent.processor.ToolProcessor} generates the schemas
+ * and a non-reflective invoker for annotated methods at compile time.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Tool {
+    /**
+     * The name of the tool. Defaults to the method name.
+     */
+    String name() default "";
+
+    /**
+     * A description of what the tool does, sent to the model.
+     */
+    String description() default "";
+
+    /**
+     * Whether the tool is free of side effects, so that it may be started speculatively while
+     * the model is still streaming the rest of its response.
+     */
+    boolean idempotent() default false;
+}
@@ -0,0 +1,53 @@
+package com.simonbrs.aiagent.annotation;
+
+import com.simonbrs.aiagent.AgentFunction;
+
+/**
+ * A tool with its description, parameter schema and invoker, as generated at compile time.
+ */
+public final class ToolDefinition {
+    private final String name;
+    private final String description;
+    private final String schema;
+    private final AgentFunction function;
+    private final boolean idempotent;
+
+    public ToolDefinition(String name, String description, String schema, AgentFunction function) {
+        this(name, description, schema, function, false);
+    }
+
+    public ToolDefinition(String name, String description, String schema, AgentFunction function,
+                          boolean idempotent) {
+        this.name = name;
+        this.description = description;
+        this.schema = schema;
+        this.function = function;
+        this.idempotent = idempotent;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * Returns the JSON schema of the tool's parameters.
+     */
+    public String getSchema() {
+        return schema;
+    }
+
+    public AgentFunction getFunction() {
+        return function;
+    }
+
+    /**
+     * Returns whether the tool was declared free of side effects.
+     */
+    public boolean isIdempotent() {
+        return idempotent;
+    }
+}
@@ -0,0 +1,46 @@
+package com.simonbrs.aiagent.annotation;
+
+import com.simonbrs.aiagent.conversion.TypeConverter;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Provides the tools of a class without reflection. Implementations are generated
+ * by the {@link com.simonbrs.aiagent.processor.ToolProcessor} as
+ * {@code <ClassName>_Tools} in the package of the annotated class.
+ *
+ * @param <T> The class declaring the tools
+ */
+public interface ToolProvider<T> {
+    /**
+     * Suffix appended to the (flattened) class name to form the name of the generated provider.
+     */
+    String SUFFIX = "_Tools";
+
+    /**
+     * Returns the tools of the given instance.
+     *
+     * @param instance The instance whose methods the tools invoke
+     * @return The tool definitions
+     */
+    List<ToolDefinition> getTools(T instance);
+
+    /**
+     * Reads and converts a required argument. Used by generated providers.
+     *
+     * @throws IllegalArgumentException if the argument is missing or cannot be converted
+     */
+    static Object argument(Map<String, Object> parameters, String name, Class<?> type) {
+        Object value = parameters.get(name);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing required parameter: " + name);
+        }
+        try {
+            return TypeConverter.convert(value, type);
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Failed to convert parameter " + name +
+                " to type " + type.getSimpleName() + ": " + e.getMessage());
+        }
+    }
+}
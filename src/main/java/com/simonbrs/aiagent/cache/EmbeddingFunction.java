@@ -0,0 +1,15 @@
+package com.simonbrs.aiagent.cache;
+
+/**
+ * Computes a vector embedding of a text, used to find semantically similar prompts.
+ */
+@FunctionalInterface
+public interface EmbeddingFunction {
+    /**
+     * Embeds the given text.
+     *
+     * @param text The text to embed
+     * @return The embedding; every call must return a vector of the same length
+     */
+    float[] embed(String text);
+}
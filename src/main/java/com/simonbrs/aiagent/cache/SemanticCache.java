@@ -0,0 +1,411 @@
+package com.simonbrs.aiagent.cache;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Caches answers by the meaning of the prompt that produced them. Prompts are embedded with an
+ * {@link EmbeddingFunction}; a lookup returns the answer of the most similar cached prompt if its
+ * cosine similarity reaches the configured threshold.
+ * <p>
+ * Normalized vectors are stored off-heap, either in a direct buffer or in a memory-mapped file
+ * so that the cache survives restarts. Lookups scan all vectors, which is fast for the few
+ * thousand entries a cache typically holds. When the cache is full, the least recently used
+ * entry is evicted.
+ * <p>
+ * A persisted cache stores a generation for every slot both next to its vector and with its
+ * prompt and answer. Vectors reach the file as soon as they are cached, while prompts and answers
+ * are only written by {@link #flush()}, so after a crash a slot may hold a newer vector than its
+ * answer belongs to; such slots are recognised by their differing generations and dropped.
+ */
+public class SemanticCache implements Closeable {
+    private static final int MAGIC = 0x53434332; // "SCC2"
+    private static final int HEADER_BYTES = 16;
+    private static final String ENTRIES_SUFFIX = ".entries";
+
+    private final EmbeddingFunction embeddingFunction;
+    private final int dimensions;
+    private final int capacity;
+    private final double threshold;
+    private final ByteBuffer storage;
+    private final LongBuffer slotGenerations;
+    private final FloatBuffer vectors;
+    private final Path file;
+    private final String[] prompts;
+    private final String[] answers;
+    private final long[] generations;
+    private final AtomicLongArray lastUsed;
+    private final AtomicLong clock = new AtomicLong();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private long generation;
+    private int size;
+
+    /**
+     * Creates an in-memory semantic cache.
+     *
+     * @param embeddingFunction The function used to embed prompts
+     * @param dimensions The length of the embedding vectors
+     * @param capacity The maximum number of cached answers
+     * @param threshold The minimum cosine similarity for a cached answer to be returned
+     */
+    public SemanticCache(EmbeddingFunction embeddingFunction, int dimensions, int capacity, double threshold) {
+        this(embeddingFunction, dimensions, capacity, threshold, null, allocate(dimensions, capacity));
+    }
+
+    private SemanticCache(EmbeddingFunction embeddingFunction, int dimensions, int capacity, double threshold,
+                          Path file, ByteBuffer storage) {
+        if (threshold <= 0 || threshold > 1) {
+            throw new IllegalArgumentException("Threshold must be in (0, 1]");
+        }
+        this.embeddingFunction = embeddingFunction;
+        this.dimensions = dimensions;
+        this.capacity = capacity;
+        this.threshold = threshold;
+        this.file = file;
+        this.storage = storage.order(ByteOrder.nativeOrder());
+        this.storage.putInt(0, MAGIC);
+        this.storage.putInt(4, dimensions);
+        this.storage.putInt(8, capacity);
+        this.slotGenerations = this.storage.position(HEADER_BYTES).slice().order(ByteOrder.nativeOrder())
+            .asLongBuffer();
+        this.vectors = this.storage.position(HEADER_BYTES + capacity * Long.BYTES).slice()
+            .order(ByteOrder.nativeOrder()).asFloatBuffer();
+        this.prompts = new String[capacity];
+        this.answers = new String[capacity];
+        this.generations = new long[capacity];
+        this.lastUsed = new AtomicLongArray(capacity);
+    }
+
+    /**
+     * Opens a semantic cache persisted to a memory-mapped file. Vectors are written to the mapped
+     * file directly; prompts and answers are written next to it by {@link #flush()} and {@link #close()}.
+     * Entries cached or replaced since the last flush are lost when the cache is not closed.
+     *
+     * @param file The file holding the cache, created if it does not exist
+     * @param embeddingFunction The function used to embed prompts
+     * @param dimensions The length of the embedding vectors
+     * @param capacity The maximum number of cached answers
+     * @param threshold The minimum cosine similarity for a cached answer to be returned
+     * @return The opened cache
+     * @throws IOException if the file cannot be mapped or was created in another format or with other
+     *                     dimensions or capacity
+     */
+    public static SemanticCache open(Path file, EmbeddingFunction embeddingFunction, int dimensions, int capacity,
+                                     double threshold) throws IOException {
+        long bytes = storageBytes(dimensions, capacity);
+        boolean existing = Files.exists(file) && Files.size(file) > 0;
+        MappedByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+        }
+        mapped.order(ByteOrder.nativeOrder());
+        if (existing && (mapped.getInt(0) != MAGIC || mapped.getInt(4) != dimensions || mapped.getInt(8) != capacity)) {
+            throw new IOException("Cache file " + file + " was created with a different format, dimensions or capacity");
+        }
+
+        SemanticCache cache = new SemanticCache(embeddingFunction, dimensions, capacity, threshold, file, mapped);
+        if (existing) {
+            cache.readEntries(Math.min(mapped.getInt(12), capacity));
+        }
+        return cache;
+    }
+
+    /**
+     * Embeds a prompt with the cache's embedding function.
+     */
+    public float[] embed(String prompt) {
+        float[] embedding = embeddingFunction.embed(prompt);
+        if (embedding.length != dimensions) {
+            throw new IllegalArgumentException("Expected an embedding of " + dimensions
+                + " dimensions but got " + embedding.length);
+        }
+        return normalize(embedding);
+    }
+
+    /**
+     * Returns the cached answer for the prompt most similar to the given one, if similar enough.
+     *
+     * @param prompt The prompt to look up
+     * @return The cached answer, or null if there is none
+     */
+    public String lookup(String prompt) {
+        return get(embed(prompt));
+    }
+
+    /**
+     * Returns the cached answer for the prompt most similar to the given embedding, if similar enough.
+     *
+     * @param embedding An embedding returned by {@link #embed(String)}
+     * @return The cached answer, or null if there is none
+     */
+    public String get(float[] embedding) {
+        lock.readLock().lock();
+        try {
+            int slot = findMostSimilar(embedding);
+            if (slot < 0) {
+                misses.increment();
+                return null;
+            }
+            lastUsed.set(slot, clock.incrementAndGet());
+            hits.increment();
+            return answers[slot];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Caches an answer. If a similar enough prompt is already cached, its answer is replaced.
+     *
+     * @param embedding An embedding returned by {@link #embed(String)}
+     * @param prompt The prompt the answer belongs to
+     * @param answer The answer to cache
+     */
+    public void put(float[] embedding, String prompt, String answer) {
+        lock.writeLock().lock();
+        try {
+            int slot = findMostSimilar(embedding);
+            if (slot < 0) {
+                if (size < capacity) {
+                    slot = size++;
+                    storage.putInt(12, size);
+                } else {
+                    slot = leastRecentlyUsed();
+                    evictions.increment();
+                }
+            }
+            // The generation is written before the vector, so a crash in between cannot pair the
+            // new vector with the previous answer of the slot
+            generations[slot] = ++generation;
+            slotGenerations.put(slot, generation);
+            vectors.put(slot * dimensions, embedding);
+            prompts[slot] = prompt;
+            answers[slot] = answer;
+            lastUsed.set(slot, clock.incrementAndGet());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes all cached answers.
+     */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < size; i++) {
+                prompts[i] = null;
+                answers[i] = null;
+                lastUsed.set(i, 0);
+            }
+            size = 0;
+            storage.putInt(12, 0);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Returns the fraction of lookups that returned a cached answer.
+     */
+    public double getHitRate() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    /**
+     * Writes the cache to its file. Does nothing for in-memory caches.
+     *
+     * @throws IOException if the cache cannot be written
+     */
+    public void flush() throws IOException {
+        if (file == null) {
+            return;
+        }
+        lock.readLock().lock();
+        try {
+            ((MappedByteBuffer) storage).force();
+            Path entries = entriesFile();
+            Path temporary = entries.resolveSibling(entries.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                out.writeInt(size);
+                for (int i = 0; i < size; i++) {
+                    out.writeLong(generations[i]);
+                    out.writeLong(lastUsed.get(i));
+                    writeString(out, prompts[i]);
+                    writeString(out, answers[i]);
+                }
+            }
+            Files.move(temporary, entries, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+    }
+
+    private int findMostSimilar(float[] embedding) {
+        int best = -1;
+        double bestSimilarity = threshold;
+        for (int slot = 0; slot < size; slot++) {
+            int offset = slot * dimensions;
+            double similarity = 0;
+            for (int i = 0; i < dimensions; i++) {
+                similarity += embedding[i] * vectors.get(offset + i);
+            }
+            if (similarity >= bestSimilarity) {
+                bestSimilarity = similarity;
+                best = slot;
+            }
+        }
+        return best;
+    }
+
+    private int leastRecentlyUsed() {
+        int oldest = 0;
+        for (int slot = 1; slot < size; slot++) {
+            if (lastUsed.get(slot) < lastUsed.get(oldest)) {
+                oldest = slot;
+            }
+        }
+        return oldest;
+    }
+
+    private void readEntries(int storedSize) throws IOException {
+        for (int slot = 0; slot < capacity; slot++) {
+            generation = Math.max(generation, slotGenerations.get(slot));
+        }
+        Path entries = entriesFile();
+        if (!Files.exists(entries)) {
+            // Vectors without their answers are useless
+            storage.putInt(12, 0);
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(entries)))) {
+            int count = Math.min(in.readInt(), storedSize);
+            int kept = 0;
+            long maxClock = 0;
+            for (int i = 0; i < count; i++) {
+                long entryGeneration = in.readLong();
+                long used = in.readLong();
+                String prompt = readString(in);
+                String answer = readString(in);
+                generation = Math.max(generation, entryGeneration);
+                if (slotGenerations.get(i) != entryGeneration) {
+                    // The vector was replaced after the entry was flushed
+                    continue;
+                }
+                if (kept != i) {
+                    moveSlot(i, kept);
+                }
+                generations[kept] = entryGeneration;
+                lastUsed.set(kept, used);
+                prompts[kept] = prompt;
+                answers[kept] = answer;
+                maxClock = Math.max(maxClock, used);
+                kept++;
+            }
+            size = kept;
+            storage.putInt(12, kept);
+            clock.set(maxClock);
+        }
+    }
+
+    private void moveSlot(int from, int to) {
+        slotGenerations.put(to, slotGenerations.get(from));
+        for (int i = 0; i < dimensions; i++) {
+            vectors.put(to * dimensions + i, vectors.get(from * dimensions + i));
+        }
+    }
+
+    private Path entriesFile() {
+        return file.resolveSibling(file.getFileName() + ENTRIES_SUFFIX);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static float[] normalize(float[] embedding) {
+        double norm = 0;
+        for (float value : embedding) {
+            norm += value * value;
+        }
+        norm = Math.sqrt(norm);
+        float[] normalized = new float[embedding.length];
+        if (norm > 0) {
+            for (int i = 0; i < embedding.length; i++) {
+                normalized[i] = (float) (embedding[i] / norm);
+            }
+        }
+        return normalized;
+    }
+
+    private static long storageBytes(int dimensions, int capacity) {
+        if (dimensions <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("Dimensions and capacity must be positive");
+        }
+        return HEADER_BYTES + (long) capacity * Long.BYTES + (long) dimensions * capacity * Float.BYTES;
+    }
+
+    private static ByteBuffer allocate(int dimensions, int capacity) {
+        long bytes = storageBytes(dimensions, capacity);
+        if (bytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Cache too large for a single buffer");
+        }
+        return ByteBuffer.allocateDirect((int) bytes);
+    }
+}
@@ -1,6 +1,10 @@
 package com.simonbrs.aiagent.conversation;
 
 import com.fasterxml.jackson.databind.JsonNode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.*;
 
 public class ConversationHistory {
@@ -10,6 +14,10 @@ public class ConversationHistory {
         this.messages = new ArrayList<>();
     }
 
+    public void addSystemMessage(String content) {
+        addMessage("system", content, null);
+    }
+
     public void addUserMessage(String content) {
         addMessage("user", content, null);
     }
@@ -34,6 +42,33 @@ public class ConversationHistory {
         return Collections.unmodifiableList(messages);
     }
 
+    /**
+     * Writes the history in a compact binary format, for moving a session to another process.
+     * Tool calls are written as binary JSON trees and restored without parsing text.
+     * Must not be called while a request is running, since the messages are read unsynchronized.
+     *
+     * @param out The stream to write to, flushed but not closed
+     * @param compress Whether to deflate the messages, which pays off for long histories
+     * @throws IOException if the history cannot be written
+     */
+    public void export(OutputStream out, boolean compress) throws IOException {
+        HistoryCodec.write(messages, out, compress);
+    }
+
+    /**
+     * Replaces the messages of this history with a history written by {@link #export}.
+     * Uncompressed histories are read without consuming anything after them, compressed ones
+     * may read ahead. The history is left unchanged if the stream cannot be read.
+     *
+     * @param in The stream to read from, not closed
+     * @throws IOException if the stream does not contain a valid history
+     */
+    public void importFrom(InputStream in) throws IOException {
+        List<Map<String, Object>> imported = HistoryCodec.read(in);
+        messages.clear();
+        messages.addAll(imported);
+    }
+
     private void addMessage(String role, String content, JsonNode toolCalls) {
         Map<String, Object> messageMap = new HashMap<>();
         messageMap.put("role", role);
@@ -0,0 +1,351 @@
+package com.simonbrs.aiagent.conversation;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Reads and writes conversation histories in a compact binary format, so sessions can be moved
+ * between processes without going through JSON text.
+ * <p>
+ * A stream starts with a four byte magic number and a flags byte; if the compressed flag is set,
+ * the rest of the stream is deflated. Messages follow as a count and, per message, its fields.
+ * Counts and lengths are variable-length integers. Field names, roles and tool names recur in
+ * every message and are written once and then referred to by index, while all other strings,
+ * such as content, tool call ids and arguments, are written as length-prefixed UTF-8. Tool calls are written as a tree of
+ * tagged JSON values and are read back as {@link JsonNode}s without parsing text.
+ */
+final class HistoryCodec {
+    private static final int MAGIC = 0x43485301; // "CHS" + version 1
+    private static final int FLAG_COMPRESSED = 1;
+    private static final int READ_CHUNK = 8192;
+
+    private static final int TAG_NULL = 0;
+    private static final int TAG_STRING = 1;
+    private static final int TAG_INTERNED = 2;
+    private static final int TAG_TRUE = 3;
+    private static final int TAG_FALSE = 4;
+    private static final int TAG_LONG = 5;
+    private static final int TAG_DOUBLE = 6;
+    private static final int TAG_ARRAY = 7;
+    private static final int TAG_OBJECT = 8;
+    private static final int TAG_DECIMAL = 9;
+
+    private HistoryCodec() {
+    }
+
+    /**
+     * Writes messages to a stream. The stream is flushed but not closed.
+     */
+    static void write(List<Map<String, Object>> messages, OutputStream out, boolean compress) throws IOException {
+        DataOutputStream header = new DataOutputStream(out);
+        header.writeInt(MAGIC);
+        header.writeByte(compress ? FLAG_COMPRESSED : 0);
+
+        Deflater deflater = compress ? new Deflater(Deflater.BEST_SPEED) : null;
+        try {
+            DeflaterOutputStream deflated = compress ? new DeflaterOutputStream(out, deflater, 8192) : null;
+            Writer writer = new Writer(new DataOutputStream(
+                new BufferedOutputStream(deflated != null ? deflated : out, 8192)));
+            writer.writeVarInt(messages.size());
+            for (Map<String, Object> message : messages) {
+                writer.writeVarInt(message.size());
+                for (Map.Entry<String, Object> field : message.entrySet()) {
+                    writer.writeInterned(field.getKey());
+                    writer.writeValue(field.getKey(), field.getValue());
+                }
+            }
+            writer.out.flush();
+            if (deflated != null) {
+                deflated.finish();
+            }
+        } finally {
+            if (deflater != null) {
+                deflater.end();
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Reads messages written by {@link #write}.
+     *
+     * @throws IOException if the stream is not a conversation history or is truncated
+     */
+    static List<Map<String, Object>> read(InputStream in) throws IOException {
+        DataInputStream header = new DataInputStream(in);
+        if (header.readInt() != MAGIC) {
+            throw new IOException("Not a conversation history");
+        }
+        boolean compressed = (header.readUnsignedByte() & FLAG_COMPRESSED) != 0;
+
+        Inflater inflater = compressed ? new Inflater() : null;
+        try {
+            // Uncompressed input is not buffered here so nothing after the history is consumed
+            Reader reader = new Reader(compressed
+                ? new DataInputStream(new BufferedInputStream(new InflaterInputStream(in, inflater), 8192)) : header);
+            int count = reader.readVarInt();
+            List<Map<String, Object>> messages = new ArrayList<>(Math.min(count, 1024));
+            for (int i = 0; i < count; i++) {
+                int fields = reader.readVarInt();
+                Map<String, Object> message = new HashMap<>();
+                for (int j = 0; j < fields; j++) {
+                    String key = reader.readInterned();
+                    message.put(key, reader.readValue());
+                }
+                messages.add(message);
+            }
+            return messages;
+        } finally {
+            if (inflater != null) {
+                inflater.end();
+            }
+        }
+    }
+
+    private static final class Writer {
+        private final DataOutputStream out;
+        private final Map<String, Integer> interned = new HashMap<>();
+
+        Writer(DataOutputStream out) {
+            this.out = out;
+        }
+
+        void writeValue(String key, Object value) throws IOException {
+            if (value == null) {
+                out.writeByte(TAG_NULL);
+            } else if (value instanceof String) {
+                writeText(((String) value), "role".equals(key));
+            } else if (value instanceof JsonNode) {
+                writeNode(null, (JsonNode) value);
+            } else {
+                throw new IllegalArgumentException("Cannot serialize message field " + key
+                    + " of type " + value.getClass().getName());
+            }
+        }
+
+        /**
+         * Writes a JSON value. Only the {@code name} of a function is interned; other strings,
+         * such as call ids, are unique to one call and would only grow the table.
+         */
+        void writeNode(String key, JsonNode node) throws IOException {
+            switch (node.getNodeType()) {
+                case STRING:
+                    writeText(node.textValue(), "name".equals(key));
+                    break;
+                case BOOLEAN:
+                    out.writeByte(node.booleanValue() ? TAG_TRUE : TAG_FALSE);
+                    break;
+                case NUMBER:
+                    if (node.canConvertToLong() && node.isIntegralNumber()) {
+                        out.writeByte(TAG_LONG);
+                        writeVarLong(node.longValue());
+                    } else if (node.isBigDecimal() || node.isBigInteger()) {
+                        out.writeByte(TAG_DECIMAL);
+                        writeString(node.asText());
+                    } else {
+                        out.writeByte(TAG_DOUBLE);
+                        out.writeDouble(node.doubleValue());
+                    }
+                    break;
+                case ARRAY:
+                    out.writeByte(TAG_ARRAY);
+                    writeVarInt(node.size());
+                    for (JsonNode element : node) {
+                        writeNode(null, element);
+                    }
+                    break;
+                case OBJECT:
+                    out.writeByte(TAG_OBJECT);
+                    writeVarInt(node.size());
+                    Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+                    while (fields.hasNext()) {
+                        Map.Entry<String, JsonNode> field = fields.next();
+                        writeInterned(field.getKey());
+                        writeNode(field.getKey(), field.getValue());
+                    }
+                    break;
+                default:
+                    out.writeByte(TAG_NULL);
+            }
+        }
+
+        void writeText(String value, boolean intern) throws IOException {
+            if (intern) {
+                out.writeByte(TAG_INTERNED);
+                writeInterned(value);
+            } else {
+                out.writeByte(TAG_STRING);
+                writeString(value);
+            }
+        }
+
+        /**
+         * Writes 0 and the string the first time it is seen, its index plus one after that.
+         */
+        void writeInterned(String value) throws IOException {
+            Integer index = interned.get(value);
+            if (index != null) {
+                writeVarInt(index + 1);
+                return;
+            }
+            interned.put(value, interned.size());
+            writeVarInt(0);
+            writeString(value);
+        }
+
+        void writeString(String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(bytes.length);
+            out.write(bytes);
+        }
+
+        void writeVarInt(int value) throws IOException {
+            writeUnsigned(value);
+        }
+
+        void writeVarLong(long value) throws IOException {
+            // Zig-zag encoding keeps small negative numbers short
+            writeUnsigned((value << 1) ^ (value >> 63));
+        }
+
+        private void writeUnsigned(long value) throws IOException {
+            while ((value & ~0x7FL) != 0) {
+                out.writeByte((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            out.writeByte((int) value);
+        }
+    }
+
+    private static final class Reader {
+        private final DataInputStream in;
+        private final List<String> interned = new ArrayList<>();
+
+        Reader(DataInputStream in) {
+            this.in = in;
+        }
+
+        Object readValue() throws IOException {
+            int tag = in.readUnsignedByte();
+            switch (tag) {
+                case TAG_NULL:
+                    return null;
+                case TAG_STRING:
+                    return readString();
+                case TAG_INTERNED:
+                    return readInterned();
+                default:
+                    return readNode(tag);
+            }
+        }
+
+        JsonNode readNode(int tag) throws IOException {
+            JsonNodeFactory factory = JsonNodeFactory.instance;
+            switch (tag) {
+                case TAG_NULL:
+                    return factory.nullNode();
+                case TAG_STRING:
+                    return factory.textNode(readString());
+                case TAG_INTERNED:
+                    return factory.textNode(readInterned());
+                case TAG_TRUE:
+                    return factory.booleanNode(true);
+                case TAG_FALSE:
+                    return factory.booleanNode(false);
+                case TAG_LONG:
+                    long value = readVarLong();
+                    return value == (int) value ? factory.numberNode((int) value) : factory.numberNode(value);
+                case TAG_DOUBLE:
+                    return factory.numberNode(in.readDouble());
+                case TAG_DECIMAL:
+                    return factory.numberNode(new BigDecimal(readString()));
+                case TAG_ARRAY:
+                    int size = readVarInt();
+                    ArrayNode array = factory.arrayNode(Math.min(size, 1024));
+                    for (int i = 0; i < size; i++) {
+                        array.add(readNode(in.readUnsignedByte()));
+                    }
+                    return array;
+                case TAG_OBJECT:
+                    int fields = readVarInt();
+                    ObjectNode object = factory.objectNode();
+                    for (int i = 0; i < fields; i++) {
+                        String key = readInterned();
+                        object.set(key, readNode(in.readUnsignedByte()));
+                    }
+                    return object;
+                default:
+                    throw new IOException("Unknown value tag: " + tag);
+            }
+        }
+
+        String readInterned() throws IOException {
+            int reference = readVarInt();
+            if (reference == 0) {
+                String value = readString();
+                interned.add(value);
+                return value;
+            }
+            if (reference > interned.size()) {
+                throw new IOException("Invalid string reference: " + reference);
+            }
+            return interned.get(reference - 1);
+        }
+
+        /**
+         * Reads a length-prefixed string. The length comes from the stream, so the buffer grows
+         * with the bytes actually read, and a corrupt length fails at the end of the stream
+         * instead of allocating the claimed size up front.
+         */
+        String readString() throws IOException {
+            int length = readVarInt();
+            byte[] bytes = new byte[Math.min(length, READ_CHUNK)];
+            int read = 0;
+            while (read < length) {
+                if (read == bytes.length) {
+                    bytes = Arrays.copyOf(bytes, (int) Math.min(length, 2L * bytes.length));
+                }
+                int chunk = bytes.length - read;
+                in.readFully(bytes, read, chunk);
+                read += chunk;
+            }
+            return new String(bytes, 0, length, StandardCharsets.UTF_8);
+        }
+
+        int readVarInt() throws IOException {
+            long value = readUnsigned();
+            if (value < 0 || value > Integer.MAX_VALUE) {
+                throw new IOException("Invalid length: " + value);
+            }
+            return (int) value;
+        }
+
+        long readVarLong() throws IOException {
+            long zigzag = readUnsigned();
+            return (zigzag >>> 1) ^ -(zigzag & 1);
+        }
+
+        private long readUnsigned() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = in.readUnsignedByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Malformed variable-length integer");
+        }
+    }
+}
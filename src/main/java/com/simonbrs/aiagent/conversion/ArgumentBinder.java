@@ -0,0 +1,257 @@
+package com.simonbrs.aiagent.conversion;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.simonbrs.aiagent.schema.FunctionSchemaGenerator;
+
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Binds the JSON arguments of a tool call directly to the parameters of a method. The JSON is
+ * streamed once, and each value is read straight into the type of its parameter: primitives are
+ * stored unboxed and primitive arrays are filled without an intermediate list. Values the
+ * binder does not handle itself, such as lists and records, are read by the object mapper.
+ * <p>
+ * Conversions are as lenient as {@link TypeConverter}: numbers may be given as strings and
+ * booleans as strings or numbers. A string is read as a boolean only if it is one of
+ * {@code true}, {@code false}, {@code yes}, {@code no}, {@code 1} or {@code 0}.
+ */
+public class ArgumentBinder {
+    private final ObjectMapper objectMapper;
+    private final String[] names;
+    private final Class<?>[] types;
+    private final JavaType[] javaTypes;
+    private final Map<String, Integer> indices = new HashMap<>();
+
+    public ArgumentBinder(Method method, ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        Parameter[] parameters = method.getParameters();
+        this.names = new String[parameters.length];
+        this.types = new Class<?>[parameters.length];
+        this.javaTypes = new JavaType[parameters.length];
+        for (int i = 0; i < parameters.length; i++) {
+            names[i] = FunctionSchemaGenerator.getParameterName(parameters[i], i);
+            types[i] = parameters[i].getType();
+            javaTypes[i] = objectMapper.constructType(parameters[i].getParameterizedType());
+            indices.put(names[i], i);
+        }
+    }
+
+    /**
+     * Parses tool call arguments into the method's parameter array.
+     *
+     * @param json The JSON object with the arguments, as sent by the model
+     * @return The arguments, in parameter order
+     * @throws IllegalArgumentException if a parameter is missing or has the wrong type
+     * @throws IOException if the JSON is malformed
+     */
+    public Object[] bind(String json) throws IOException {
+        Object[] args = new Object[names.length];
+        boolean[] bound = new boolean[names.length];
+        if (json != null && !json.isBlank()) {
+            try (JsonParser parser = objectMapper.getFactory().createParser(json)) {
+                if (parser.nextToken() != JsonToken.START_OBJECT) {
+                    throw new IllegalArgumentException("Tool arguments must be a JSON object");
+                }
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    Integer index = indices.get(parser.getCurrentName());
+                    parser.nextToken();
+                    if (index == null) {
+                        parser.skipChildren();
+                        continue;
+                    }
+                    if (parser.currentToken() != JsonToken.VALUE_NULL) {
+                        args[index] = readParameter(parser, index);
+                        bound[index] = true;
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < names.length; i++) {
+            if (!bound[i]) {
+                throw new IllegalArgumentException("Missing required parameter: " + names[i]);
+            }
+        }
+        return args;
+    }
+
+    private Object readParameter(JsonParser parser, int index) throws IOException {
+        try {
+            return read(parser, types[index], javaTypes[index]);
+        } catch (RuntimeException | IOException e) {
+            throw new IllegalArgumentException("Failed to convert parameter " + names[index]
+                + " to type " + types[index].getSimpleName() + ": " + e.getMessage());
+        }
+    }
+
+    private Object read(JsonParser parser, Class<?> type, JavaType javaType) throws IOException {
+        if (type == String.class) {
+            return parser.currentToken().isScalarValue() ? parser.getValueAsString() : parser.readValueAsTree().toString();
+        }
+        if (type == int.class || type == Integer.class) {
+            return readInt(parser);
+        }
+        if (type == long.class || type == Long.class) {
+            return readLong(parser);
+        }
+        if (type == double.class || type == Double.class) {
+            return readDouble(parser);
+        }
+        if (type == float.class || type == Float.class) {
+            return (float) readDouble(parser);
+        }
+        if (type == short.class || type == Short.class) {
+            return (short) readIntegral(parser, Short.MIN_VALUE, Short.MAX_VALUE);
+        }
+        if (type == byte.class || type == Byte.class) {
+            return (byte) readIntegral(parser, Byte.MIN_VALUE, Byte.MAX_VALUE);
+        }
+        if (type == boolean.class || type == Boolean.class) {
+            return readBoolean(parser);
+        }
+        if (type.isArray() && parser.currentToken() == JsonToken.START_ARRAY) {
+            return readArray(parser, javaType);
+        }
+        return objectMapper.readValue(parser, javaType);
+    }
+
+    private static double readDouble(JsonParser parser) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.VALUE_NUMBER_INT || token == JsonToken.VALUE_NUMBER_FLOAT) {
+            return parser.getDoubleValue();
+        }
+        if (token == JsonToken.VALUE_STRING) {
+            try {
+                return Double.parseDouble(parser.getText().trim());
+            } catch (NumberFormatException e) {
+                throw new TypeConverter.TypeConversionException("Cannot convert string to number: " + parser.getText());
+            }
+        }
+        throw new TypeConverter.TypeConversionException("Expected a number but got " + token);
+    }
+
+    private static long readLong(JsonParser parser) throws IOException {
+        // Integral values are read exactly instead of through a double
+        return parser.currentToken() == JsonToken.VALUE_NUMBER_INT ? parser.getLongValue()
+            : readIntegral(parser, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    private static int readInt(JsonParser parser) throws IOException {
+        return (int) readIntegral(parser, Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Reads a whole number within the given range, rejecting fractions and values that a cast
+     * would silently clamp or wrap.
+     */
+    private static long readIntegral(JsonParser parser, long min, long max) throws IOException {
+        double value = readDouble(parser);
+        if (value != Math.rint(value) || value < min || value > max) {
+            throw new TypeConverter.TypeConversionException("Expected a whole number between " + min + " and " + max
+                + " but got " + parser.getText());
+        }
+        return (long) value;
+    }
+
+    private static boolean readBoolean(JsonParser parser) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.VALUE_TRUE || token == JsonToken.VALUE_FALSE) {
+            return token == JsonToken.VALUE_TRUE;
+        }
+        if (token == JsonToken.VALUE_STRING) {
+            String text = parser.getText().toLowerCase().trim();
+            switch (text) {
+                case "true", "yes", "1":
+                    return true;
+                case "false", "no", "0":
+                    return false;
+                default:
+                    throw new TypeConverter.TypeConversionException("Cannot convert string to boolean: " + parser.getText());
+            }
+        }
+        if (token.isNumeric()) {
+            return parser.getIntValue() != 0;
+        }
+        throw new TypeConverter.TypeConversionException("Expected a boolean but got " + token);
+    }
+
+    private Object readArray(JsonParser parser, JavaType arrayType) throws IOException {
+        Class<?> componentType = arrayType.getContentType().getRawClass();
+        if (componentType == int.class) {
+            int[] values = new int[16];
+            int size = 0;
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                if (size == values.length) {
+                    values = Arrays.copyOf(values, size * 2);
+                }
+                values[size++] = readInt(parser);
+            }
+            return Arrays.copyOf(values, size);
+        }
+        if (componentType == long.class) {
+            long[] values = new long[16];
+            int size = 0;
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                if (size == values.length) {
+                    values = Arrays.copyOf(values, size * 2);
+                }
+                values[size++] = readLong(parser);
+            }
+            return Arrays.copyOf(values, size);
+        }
+        if (componentType == double.class) {
+            double[] values = new double[16];
+            int size = 0;
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                if (size == values.length) {
+                    values = Arrays.copyOf(values, size * 2);
+                }
+                values[size++] = readDouble(parser);
+            }
+            return Arrays.copyOf(values, size);
+        }
+        if (componentType == float.class) {
+            float[] values = new float[16];
+            int size = 0;
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                if (size == values.length) {
+                    values = Arrays.copyOf(values, size * 2);
+                }
+                values[size++] = (float) readDouble(parser);
+            }
+            return Arrays.copyOf(values, size);
+        }
+        if (componentType == boolean.class) {
+            boolean[] values = new boolean[16];
+            int size = 0;
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                if (size == values.length) {
+                    values = Arrays.copyOf(values, size * 2);
+                }
+                values[size++] = readBoolean(parser);
+            }
+            return Arrays.copyOf(values, size);
+        }
+        if (componentType.isPrimitive()) {
+            return objectMapper.readValue(parser, arrayType);
+        }
+
+        Object[] values = (Object[]) Array.newInstance(componentType, 16);
+        int size = 0;
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = parser.currentToken() == JsonToken.VALUE_NULL ? null : read(parser, componentType, arrayType.getContentType());
+        }
+        return Arrays.copyOf(values, size);
+    }
+}
@@ -0,0 +1,174 @@
+package com.simonbrs.aiagent.diagnostics;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the payloads of the most recent API exchanges in a bounded ring buffer for diagnosing
+ * failures. Successful exchanges are sampled; failed exchanges are always kept. Payloads are
+ * stored as the raw bytes sent and received, and only formatted when dumped.
+ */
+public class PayloadRecorder {
+    private static final ObjectMapper PRETTY_MAPPER = new ObjectMapper();
+
+    private final AtomicReferenceArray<Exchange> exchanges;
+    private final int sampleEvery;
+    private final boolean dumpOnError;
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+
+    /**
+     * Creates a recorder.
+     *
+     * @param capacity The number of exchanges kept
+     * @param sampleEvery Keep one in this many successful exchanges; 1 keeps all of them
+     * @param dumpOnError Whether the agent logs the recorded exchanges when a request fails
+     */
+    public PayloadRecorder(int capacity, int sampleEvery, boolean dumpOnError) {
+        if (capacity <= 0 || sampleEvery <= 0) {
+            throw new IllegalArgumentException("Capacity and sampling interval must be positive");
+        }
+        this.exchanges = new AtomicReferenceArray<>(capacity);
+        this.sampleEvery = sampleEvery;
+        this.dumpOnError = dumpOnError;
+    }
+
+    /**
+     * Records an exchange. The request bytes are copied, so the caller may reuse its buffer afterwards.
+     *
+     * @param request The buffer holding the request body
+     * @param length The number of valid bytes in the buffer
+     * @param statusCode The HTTP status code, or 0 if no response was received
+     * @param response Supplies the response body; only called if the exchange is kept
+     * @param error The transport failure, or null
+     * @param duration The time between sending the request and receiving the response
+     */
+    public void record(byte[] request, int length, int statusCode, Supplier<byte[]> response, Throwable error,
+                       Duration duration) {
+        boolean failed = error != null || statusCode < 200 || statusCode >= 300;
+        if (!failed && sequence.getAndIncrement() % sampleEvery != 0) {
+            return;
+        }
+        Exchange exchange = new Exchange(Instant.now(), Arrays.copyOf(request, length), statusCode,
+            response == null ? null : response.get(), error == null ? null : error.toString(), duration);
+        long slot = written.getAndIncrement();
+        exchanges.set((int) (slot % exchanges.length()), exchange);
+    }
+
+    public boolean isDumpOnError() {
+        return dumpOnError;
+    }
+
+    /**
+     * Returns the recorded exchanges, oldest first.
+     */
+    public List<Exchange> getExchanges() {
+        long end = written.get();
+        long start = Math.max(0, end - exchanges.length());
+        List<Exchange> result = new ArrayList<>();
+        for (long i = start; i < end; i++) {
+            Exchange exchange = exchanges.get((int) (i % exchanges.length()));
+            if (exchange != null) {
+                result.add(exchange);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Formats the recorded exchanges, oldest first, with JSON payloads pretty-printed.
+     */
+    public String dump() {
+        StringBuilder dump = new StringBuilder();
+        for (Exchange exchange : getExchanges()) {
+            exchange.appendTo(dump);
+        }
+        return dump.toString();
+    }
+
+    public void clear() {
+        for (int i = 0; i < exchanges.length(); i++) {
+            exchanges.set(i, null);
+        }
+    }
+
+    /**
+     * One recorded request and its response.
+     */
+    public static final class Exchange {
+        private final Instant timestamp;
+        private final byte[] request;
+        private final int statusCode;
+        private final byte[] response;
+        private final String error;
+        private final Duration duration;
+
+        Exchange(Instant timestamp, byte[] request, int statusCode, byte[] response, String error, Duration duration) {
+            this.timestamp = timestamp;
+            this.request = request;
+            this.statusCode = statusCode;
+            this.response = response;
+            this.error = error;
+            this.duration = duration;
+        }
+
+        public Instant getTimestamp() {
+            return timestamp;
+        }
+
+        public int getStatusCode() {
+            return statusCode;
+        }
+
+        public String getError() {
+            return error;
+        }
+
+        public Duration getDuration() {
+            return duration;
+        }
+
+        public String getRequest() {
+            return new String(request, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Returns the response body, or null if no response was received.
+         */
+        public String getResponse() {
+            return response == null ? null : new String(response, StandardCharsets.UTF_8);
+        }
+
+        void appendTo(StringBuilder dump) {
+            dump.append("=== ").append(timestamp).append(" status ").append(statusCode)
+                .append(" in ").append(duration.toMillis()).append(" ms");
+            if (error != null) {
+                dump.append(" error ").append(error);
+            }
+            dump.append("\n--- request\n").append(format(request));
+            if (response != null) {
+                dump.append("\n--- response\n").append(format(response));
+            }
+            dump.append('\n');
+        }
+
+        private static String format(byte[] payload) {
+            try {
+                return PRETTY_MAPPER.writerWithDefaultPrettyPrinter().writeValueAsString(PRETTY_MAPPER.readTree(payload));
+            } catch (IOException e) {
+                // Streamed responses are server-sent events rather than a single JSON document
+                return new String(payload, StandardCharsets.UTF_8);
+            }
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.simonbrs.aiagent.evaluation;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The results of an evaluation, in the order of its scenarios.
+ */
+public final class EvaluationReport {
+    private final List<ScenarioResult> results;
+    private final Duration duration;
+
+    EvaluationReport(List<ScenarioResult> results, Duration duration) {
+        this.results = List.copyOf(results);
+        this.duration = duration;
+    }
+
+    public List<ScenarioResult> getResults() {
+        return results;
+    }
+
+    /**
+     * Returns the wall-clock time the whole evaluation took.
+     */
+    public Duration getDuration() {
+        return duration;
+    }
+
+    /**
+     * Returns the fraction of scenarios that passed, or 0 if there were none.
+     */
+    public double getAccuracy() {
+        if (results.isEmpty()) {
+            return 0;
+        }
+        return (double) results.stream().filter(ScenarioResult::isPassed).count() / results.size();
+    }
+
+    /**
+     * Returns a latency percentile over all scenarios.
+     *
+     * @param percentile The percentile, between 0 and 100
+     * @return The latency, or {@link Duration#ZERO} if there were no scenarios
+     */
+    public Duration getLatencyPercentile(double percentile) {
+        if (results.isEmpty()) {
+            return Duration.ZERO;
+        }
+        long[] sorted = results.stream().mapToLong(result -> result.getLatency().toNanos()).sorted().toArray();
+        int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+        return Duration.ofNanos(sorted[Math.max(0, Math.min(index, sorted.length - 1))]);
+    }
+
+    public long getTotalTokens() {
+        return results.stream().mapToLong(ScenarioResult::getTotalTokens).sum();
+    }
+
+    public int getTotalToolCalls() {
+        return results.stream().mapToInt(result -> result.getToolCalls().size()).sum();
+    }
+
+    /**
+     * Formats the report as a table with one line per scenario and a summary.
+     */
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format(Locale.ROOT, "%-30s %-6s %10s %8s %6s%n", "scenario", "result", "latency ms", "tokens", "tools"));
+        for (ScenarioResult result : results) {
+            report.append(String.format(Locale.ROOT, "%-30s %-6s %10d %8d %6d%n", result.getScenario().getName(),
+                result.isPassed() ? "pass" : result.getError() != null ? "error" : "fail",
+                result.getLatency().toMillis(), result.getTotalTokens(), result.getToolCalls().size()));
+        }
+        report.append(String.format(Locale.ROOT, "accuracy %.1f%%, p50 %d ms, p90 %d ms, p99 %d ms, %d tokens, %d tool calls, %d ms total%n",
+            getAccuracy() * 100, getLatencyPercentile(50).toMillis(), getLatencyPercentile(90).toMillis(),
+            getLatencyPercentile(99).toMillis(), getTotalTokens(), getTotalToolCalls(), duration.toMillis()));
+        return report.toString();
+    }
+}
@@ -0,0 +1,114 @@
+package com.simonbrs.aiagent.evaluation;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.simonbrs.aiagent.ExecutionBudget;
+import com.simonbrs.aiagent.OpenAIAgent;
+import com.simonbrs.aiagent.evaluation.MeteredTransport.RateLimit;
+import com.simonbrs.aiagent.resilience.AsyncLimiter;
+import com.simonbrs.aiagent.transport.ChatTransport;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+/**
+ * Runs a suite of scenarios against fresh agents in parallel, to check how a change to tools or
+ * prompts affects answers, latency and token usage before shipping it.
+ * <p>
+ * Every scenario gets its own agent from the factory, so scenarios do not share a conversation.
+ * All agents send their requests through one transport, which may be an
+ * {@link com.simonbrs.aiagent.transport.HttpChatTransport} for a live run or a
+ * {@link com.simonbrs.aiagent.transport.ReplayTransport} to repeat a recorded run offline. The
+ * number of scenarios running at once and the rate of requests to the transport are both bounded.
+ */
+public class EvaluationRunner {
+    private final Supplier<OpenAIAgent> agentFactory;
+    private final ChatTransport transport;
+    private final int maxConcurrency;
+    private final double maxRequestsPerSecond;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private volatile ExecutionBudget budget;
+
+    /**
+     * Creates a new runner.
+     *
+     * @param agentFactory Creates an agent with its tools registered; its transport is replaced
+     * @param transport The transport all requests are sent through
+     * @param maxConcurrency The maximum number of scenarios running at once
+     * @param maxRequestsPerSecond The maximum rate of requests to the transport, or 0 for no limit
+     */
+    public EvaluationRunner(Supplier<OpenAIAgent> agentFactory, ChatTransport transport, int maxConcurrency,
+                            double maxRequestsPerSecond) {
+        if (maxConcurrency <= 0 || maxRequestsPerSecond < 0) {
+            throw new IllegalArgumentException("Concurrency must be positive and the rate limit non-negative");
+        }
+        this.agentFactory = agentFactory;
+        this.transport = transport;
+        this.maxConcurrency = maxConcurrency;
+        this.maxRequestsPerSecond = maxRequestsPerSecond;
+    }
+
+    /**
+     * Sets the budget each scenario runs with, for example to bound its time.
+     *
+     * @param budget The budget, or null to use the agent's default budget
+     */
+    public void setBudget(ExecutionBudget budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * Runs the scenarios. Failing scenarios are reported, they do not fail the evaluation.
+     *
+     * @param scenarios The scenarios to run
+     * @return A future completing with the report once all scenarios are done
+     */
+    public CompletableFuture<EvaluationReport> run(List<Scenario> scenarios) {
+        AsyncLimiter limiter = new AsyncLimiter(maxConcurrency, Integer.MAX_VALUE, ForkJoinPool.commonPool());
+        RateLimit rateLimit = new RateLimit(maxRequestsPerSecond);
+        long started = System.nanoTime();
+
+        List<CompletableFuture<ScenarioResult>> pending = new ArrayList<>(scenarios.size());
+        for (Scenario scenario : scenarios) {
+            pending.add(limiter.submit(() -> runScenario(scenario, rateLimit)));
+        }
+        return CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0]))
+            .thenApply(ignored -> {
+                List<ScenarioResult> results = new ArrayList<>(pending.size());
+                for (CompletableFuture<ScenarioResult> result : pending) {
+                    results.add(result.join());
+                }
+                return new EvaluationReport(results, Duration.ofNanos(System.nanoTime() - started));
+            });
+    }
+
+    private CompletableFuture<ScenarioResult> runScenario(Scenario scenario, RateLimit rateLimit) {
+        MeteredTransport metered = new MeteredTransport(transport, rateLimit, objectMapper);
+        long started = System.nanoTime();
+        CompletableFuture<String> answer;
+        try {
+            OpenAIAgent agent = agentFactory.get();
+            agent.setTransport(metered);
+            ExecutionBudget scenarioBudget = budget;
+            answer = scenarioBudget == null
+                ? agent.sendMessage(scenario.getInput())
+                : agent.sendMessage(scenario.getInput(), Map.of(), scenarioBudget);
+        } catch (RuntimeException e) {
+            answer = CompletableFuture.failedFuture(e);
+        }
+        return answer.handle((content, error) -> {
+            Duration latency = Duration.ofNanos(System.nanoTime() - started);
+            Throwable cause = error instanceof CompletionException && error.getCause() != null
+                ? error.getCause() : error;
+            List<String> toolCalls = metered.getToolCalls();
+            boolean passed = cause == null && scenario.isSatisfiedBy(content, toolCalls);
+            return new ScenarioResult(scenario, passed, content, cause, latency, metered.getTotalTokens(),
+                metered.getRequests(), toolCalls);
+        });
+    }
+}
@@ -0,0 +1,181 @@
+package com.simonbrs.aiagent.evaluation;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.simonbrs.aiagent.transport.ChatTransport;
+import com.simonbrs.aiagent.transport.TransportResponse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Passes the requests of one scenario to the shared transport, spacing them out to respect the
+ * rate limit, and records the tokens used and tools called from the responses.
+ */
+class MeteredTransport implements ChatTransport {
+    private static final String DATA_PREFIX = "data:";
+
+    private final ChatTransport delegate;
+    private final RateLimit rateLimit;
+    private final ObjectMapper objectMapper;
+    private final List<String> toolCalls = new ArrayList<>();
+    private long totalTokens;
+    private int requests;
+
+    MeteredTransport(ChatTransport delegate, RateLimit rateLimit, ObjectMapper objectMapper) {
+        this.delegate = delegate;
+        this.rateLimit = rateLimit;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public CompletableFuture<TransportResponse> send(byte[] body, int length) {
+        CompletableFuture<TransportResponse> exchange = afterRateLimit(() -> delegate.send(body, length));
+        return ChatTransport.forwardCancellation(exchange.thenApply(response -> {
+            if (response.getStatusCode() == 200) {
+                record(response.getBody(), "message");
+            }
+            return response;
+        }), exchange);
+    }
+
+    @Override
+    public CompletableFuture<Integer> stream(byte[] body, int length, Flow.Subscriber<String> lines) {
+        Flow.Subscriber<String> metered = new Flow.Subscriber<>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                lines.onSubscribe(subscription);
+            }
+
+            @Override
+            public void onNext(String line) {
+                if (line.startsWith(DATA_PREFIX)) {
+                    record(line.substring(DATA_PREFIX.length()).trim().getBytes(StandardCharsets.UTF_8), "delta");
+                }
+                lines.onNext(line);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                lines.onError(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                lines.onComplete();
+            }
+        };
+        return afterRateLimit(() -> delegate.stream(body, length, metered));
+    }
+
+    /**
+     * Starts an exchange once the rate limit allows it. Cancelling the returned future cancels the
+     * exchange, or keeps it from starting if it is still waiting for the rate limit.
+     */
+    private <T> CompletableFuture<T> afterRateLimit(Supplier<CompletableFuture<T>> exchange) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        rateLimit.acquire().thenRun(() -> {
+            if (result.isDone()) {
+                return;
+            }
+            countRequest();
+            CompletableFuture<T> started;
+            try {
+                started = exchange.get();
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+                return;
+            }
+            ChatTransport.forwardCancellation(result, started);
+            started.whenComplete((value, error) -> {
+                if (error != null) {
+                    result.completeExceptionally(error);
+                } else {
+                    result.complete(value);
+                }
+            });
+        });
+        return result;
+    }
+
+    synchronized List<String> getToolCalls() {
+        return List.copyOf(toolCalls);
+    }
+
+    synchronized long getTotalTokens() {
+        return totalTokens;
+    }
+
+    synchronized int getRequests() {
+        return requests;
+    }
+
+    private synchronized void countRequest() {
+        requests++;
+    }
+
+    /**
+     * Records usage and tool call names from a response, or from a chunk of a streamed one.
+     */
+    private void record(byte[] json, String messageField) {
+        JsonNode response;
+        try {
+            response = objectMapper.readTree(json);
+        } catch (IOException e) {
+            // Not JSON, such as the end of a stream
+            return;
+        }
+        synchronized (this) {
+            totalTokens += response.path("usage").path("total_tokens").asLong();
+            for (JsonNode toolCall : response.path("choices").path(0).path(messageField).path("tool_calls")) {
+                JsonNode name = toolCall.path("function").path("name");
+                if (name.isTextual()) {
+                    toolCalls.add(name.textValue());
+                }
+            }
+        }
+    }
+
+    /**
+     * Spaces out requests shared by all scenarios of an evaluation, without blocking threads.
+     */
+    static class RateLimit {
+        private final long intervalNanos;
+        private long next;
+
+        /**
+         * @param requestsPerSecond The maximum request rate, or 0 for no limit
+         */
+        RateLimit(double requestsPerSecond) {
+            if (requestsPerSecond < 0) {
+                throw new IllegalArgumentException("Rate limit cannot be negative");
+            }
+            this.intervalNanos = requestsPerSecond == 0 ? 0 : (long) (TimeUnit.SECONDS.toNanos(1) / requestsPerSecond);
+            this.next = System.nanoTime();
+        }
+
+        CompletableFuture<Void> acquire() {
+            if (intervalNanos == 0) {
+                return CompletableFuture.completedFuture(null);
+            }
+            long now = System.nanoTime();
+            long slot;
+            synchronized (this) {
+                slot = Math.max(now, next);
+                next = slot + intervalNanos;
+            }
+            long delay = slot - now;
+            if (delay <= 0) {
+                return CompletableFuture.completedFuture(null);
+            }
+            return CompletableFuture.runAsync(() -> { },
+                CompletableFuture.delayedExecutor(delay, TimeUnit.NANOSECONDS));
+        }
+    }
+}
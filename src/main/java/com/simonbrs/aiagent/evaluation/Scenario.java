@@ -0,0 +1,74 @@
+package com.simonbrs.aiagent.evaluation;
+
+import java.util.List;
+
+/**
+ * A message sent to an agent during an evaluation, with what the answer must contain and which
+ * tools the agent is expected to call.
+ */
+public final class Scenario {
+    private final String name;
+    private final String input;
+    private final String expectedAnswer;
+    private final List<String> expectedTools;
+
+    /**
+     * Creates a scenario that passes as long as the agent answers.
+     *
+     * @param name The name shown in the report
+     * @param input The message sent to the agent
+     */
+    public Scenario(String name, String input) {
+        this(name, input, null, List.of());
+    }
+
+    private Scenario(String name, String input, String expectedAnswer, List<String> expectedTools) {
+        this.name = name;
+        this.input = input;
+        this.expectedAnswer = expectedAnswer;
+        this.expectedTools = expectedTools;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getInput() {
+        return input;
+    }
+
+    public String getExpectedAnswer() {
+        return expectedAnswer;
+    }
+
+    public List<String> getExpectedTools() {
+        return expectedTools;
+    }
+
+    /**
+     * Returns a scenario whose answer must contain the given text, ignoring case.
+     */
+    public Scenario withExpectedAnswer(String expectedAnswer) {
+        return new Scenario(name, input, expectedAnswer, expectedTools);
+    }
+
+    /**
+     * Returns a scenario in which each of the given tools must be called at least once.
+     */
+    public Scenario withExpectedTools(String... expectedTools) {
+        return new Scenario(name, input, expectedAnswer, List.of(expectedTools));
+    }
+
+    /**
+     * Checks an answer and the tools called against the expectations of this scenario.
+     */
+    boolean isSatisfiedBy(String answer, List<String> toolCalls) {
+        if (answer == null) {
+            return false;
+        }
+        if (expectedAnswer != null && !answer.toLowerCase().contains(expectedAnswer.toLowerCase())) {
+            return false;
+        }
+        return toolCalls.containsAll(expectedTools);
+    }
+}
@@ -0,0 +1,84 @@
+package com.simonbrs.aiagent.evaluation;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * The outcome of one scenario of an evaluation.
+ */
+public final class ScenarioResult {
+    private final Scenario scenario;
+    private final boolean passed;
+    private final String answer;
+    private final Throwable error;
+    private final Duration latency;
+    private final long totalTokens;
+    private final int requests;
+    private final List<String> toolCalls;
+
+    ScenarioResult(Scenario scenario, boolean passed, String answer, Throwable error, Duration latency,
+                   long totalTokens, int requests, List<String> toolCalls) {
+        this.scenario = scenario;
+        this.passed = passed;
+        this.answer = answer;
+        this.error = error;
+        this.latency = latency;
+        this.totalTokens = totalTokens;
+        this.requests = requests;
+        this.toolCalls = toolCalls;
+    }
+
+    public Scenario getScenario() {
+        return scenario;
+    }
+
+    /**
+     * Returns whether the agent answered and met the expectations of the scenario.
+     */
+    public boolean isPassed() {
+        return passed;
+    }
+
+    /**
+     * Returns the answer of the agent, or null if the request failed.
+     */
+    public String getAnswer() {
+        return answer;
+    }
+
+    /**
+     * Returns the error the request failed with, or null if the agent answered.
+     */
+    public Throwable getError() {
+        return error;
+    }
+
+    /**
+     * Returns the time from sending the message to receiving the answer, including time spent
+     * waiting for the rate limit.
+     */
+    public Duration getLatency() {
+        return latency;
+    }
+
+    /**
+     * Returns the tokens reported as used by the API over all requests of the scenario.
+     */
+    public long getTotalTokens() {
+        return totalTokens;
+    }
+
+    /**
+     * Returns the number of requests sent to the API.
+     */
+    public int getRequests() {
+        return requests;
+    }
+
+    /**
+     * Returns the names of the tools the model called, in order.
+     */
+    public List<String> getToolCalls() {
+        return toolCalls;
+    }
+}
@@ -0,0 +1,93 @@
+package com.simonbrs.aiagent.json;
+
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A pool of growable byte buffers for encoding request bodies. A buffer is acquired, written to,
+ * handed to the HTTP client as a byte array slice, and released once the request has been sent,
+ * so steady-state request encoding allocates no new body arrays.
+ */
+public class JsonBufferPool {
+    private static final int INITIAL_CAPACITY = 8 * 1024;
+
+    private final BlockingQueue<PooledBuffer> buffers;
+    private final int maxRetainedCapacity;
+
+    /**
+     * Creates a pool.
+     *
+     * @param maxPooled The maximum number of idle buffers kept
+     * @param maxRetainedCapacity Buffers that grew beyond this size are dropped instead of pooled
+     */
+    public JsonBufferPool(int maxPooled, int maxRetainedCapacity) {
+        this.buffers = new ArrayBlockingQueue<>(maxPooled);
+        this.maxRetainedCapacity = maxRetainedCapacity;
+    }
+
+    /**
+     * Takes an empty buffer from the pool, or creates one if the pool is empty.
+     */
+    public PooledBuffer acquire() {
+        PooledBuffer buffer = buffers.poll();
+        return buffer != null ? buffer : new PooledBuffer(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Returns a buffer to the pool. The buffer must not be used afterwards.
+     */
+    public void release(PooledBuffer buffer) {
+        buffer.reset();
+        if (buffer.array().length <= maxRetainedCapacity) {
+            buffers.offer(buffer);
+        }
+    }
+
+    /**
+     * An unsynchronized, growable output buffer exposing its backing array.
+     */
+    public static class PooledBuffer extends OutputStream {
+        private byte[] bytes;
+        private int size;
+
+        PooledBuffer(int capacity) {
+            this.bytes = new byte[capacity];
+        }
+
+        @Override
+        public void write(int b) {
+            ensureCapacity(size + 1);
+            bytes[size++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] source, int offset, int length) {
+            ensureCapacity(size + length);
+            System.arraycopy(source, offset, bytes, size, length);
+            size += length;
+        }
+
+        /**
+         * Returns the backing array; only the first {@link #size()} bytes are valid.
+         */
+        public byte[] array() {
+            return bytes;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        void reset() {
+            size = 0;
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(capacity, bytes.length * 2));
+            }
+        }
+    }
+}
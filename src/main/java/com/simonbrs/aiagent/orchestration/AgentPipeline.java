@@ -0,0 +1,143 @@
+package com.simonbrs.aiagent.orchestration;
+
+import com.simonbrs.aiagent.Agent;
+import com.simonbrs.aiagent.resilience.AsyncLimiter;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Runs agents as the steps of a directed acyclic graph. Each step turns the pipeline input and the
+ * outputs of the steps it depends on into a prompt for its agent. Steps whose dependencies have
+ * completed run in parallel on a bounded work-stealing pool, each step limits how many of its
+ * requests run at once, and the number of concurrent pipeline runs is bounded as well: runs beyond
+ * the queue are rejected instead of piling up.
+ * <p>
+ * An agent keeps one conversation history, so a step's concurrency should stay at 1 unless its
+ * agent is stateless.
+ */
+public class AgentPipeline implements AutoCloseable {
+    /**
+     * The key under which the pipeline input is passed to every step's prompt function.
+     */
+    public static final String INPUT = "input";
+
+    private final ForkJoinPool pool;
+    private final AsyncLimiter runLimiter;
+    private final Map<String, Step> steps = new LinkedHashMap<>();
+
+    /**
+     * Creates a new pipeline.
+     *
+     * @param parallelism The number of threads used to run steps
+     * @param maxConcurrentRuns The maximum number of pipeline runs executing at once
+     * @param maxQueuedRuns The maximum number of runs waiting to execute before new runs are rejected
+     */
+    public AgentPipeline(int parallelism, int maxConcurrentRuns, int maxQueuedRuns) {
+        this.pool = new ForkJoinPool(parallelism, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+        this.runLimiter = new AsyncLimiter(maxConcurrentRuns, maxQueuedRuns, pool);
+    }
+
+    /**
+     * Adds a step running one request at a time.
+     *
+     * @see #addStep(String, Agent, Function, int, String...)
+     */
+    public void addStep(String name, Agent agent, Function<Map<String, String>, String> prompt, String... dependsOn) {
+        addStep(name, agent, prompt, 1, dependsOn);
+    }
+
+    /**
+     * Adds a step to the pipeline. Dependencies must have been added before, which keeps the graph acyclic.
+     *
+     * @param name The unique name of the step
+     * @param agent The agent answering the step's prompt
+     * @param prompt Builds the prompt from the pipeline input and the outputs of the dependencies, keyed by step name
+     * @param maxConcurrency The maximum number of requests this step sends at once
+     * @param dependsOn The names of the steps whose output this step needs
+     * @throws IllegalArgumentException if the name is taken or a dependency is unknown
+     */
+    public synchronized void addStep(String name, Agent agent, Function<Map<String, String>, String> prompt,
+                                     int maxConcurrency, String... dependsOn) {
+        if (INPUT.equals(name) || steps.containsKey(name)) {
+            throw new IllegalArgumentException("Step name already in use: " + name);
+        }
+        for (String dependency : dependsOn) {
+            if (!steps.containsKey(dependency)) {
+                throw new IllegalArgumentException("Unknown dependency of step " + name + ": " + dependency);
+            }
+        }
+        steps.put(name, new Step(agent, prompt, List.of(dependsOn), new AsyncLimiter(maxConcurrency, Integer.MAX_VALUE, pool)));
+    }
+
+    /**
+     * Runs the pipeline.
+     *
+     * @param input The input passed to every step
+     * @return A future completing with the output of every step, keyed by step name, or failing with
+     *         a {@link java.util.concurrent.RejectedExecutionException} if too many runs are pending
+     */
+    public CompletableFuture<Map<String, String>> run(String input) {
+        Map<String, Step> snapshot;
+        synchronized (this) {
+            snapshot = new LinkedHashMap<>(steps);
+        }
+        return runLimiter.submit(() -> execute(input, snapshot));
+    }
+
+    private CompletableFuture<Map<String, String>> execute(String input, Map<String, Step> snapshot) {
+        Map<String, CompletableFuture<String>> outputs = new LinkedHashMap<>();
+        // Steps are stored in insertion order, so dependencies are always scheduled first
+        for (Map.Entry<String, Step> entry : snapshot.entrySet()) {
+            Step step = entry.getValue();
+            CompletableFuture<?>[] dependencies = step.dependsOn.stream().map(outputs::get).toArray(CompletableFuture<?>[]::new);
+            CompletableFuture<String> output = CompletableFuture.allOf(dependencies)
+                .thenComposeAsync(ignored -> step.limiter.submit(() -> {
+                    Map<String, String> inputs = new HashMap<>();
+                    inputs.put(INPUT, input);
+                    for (String dependency : step.dependsOn) {
+                        inputs.put(dependency, outputs.get(dependency).join());
+                    }
+                    return step.agent.sendMessage(step.prompt.apply(inputs));
+                }), pool);
+            outputs.put(entry.getKey(), output);
+        }
+
+        return CompletableFuture.allOf(outputs.values().toArray(new CompletableFuture<?>[0]))
+            .thenApply(ignored -> {
+                Map<String, String> results = new LinkedHashMap<>();
+                outputs.forEach((name, output) -> results.put(name, output.join()));
+                return results;
+            });
+    }
+
+    /**
+     * Stops the pipeline's threads, waiting briefly for running steps to finish.
+     */
+    @Override
+    public void close() {
+        pool.shutdown();
+        try {
+            pool.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class Step {
+        private final Agent agent;
+        private final Function<Map<String, String>, String> prompt;
+        private final List<String> dependsOn;
+        private final AsyncLimiter limiter;
+
+        Step(Agent agent, Function<Map<String, String>, String> prompt, List<String> dependsOn, AsyncLimiter limiter) {
+            this.agent = agent;
+            this.prompt = prompt;
+            this.dependsOn = dependsOn;
+            this.limiter = limiter;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.simonbrs.aiagent.orchestration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.simonbrs.aiagent.Agent;
+import com.simonbrs.aiagent.AsyncAgentFunction;
+import com.simonbrs.aiagent.OpenAIAgent;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Exposes agents as tools of other agents, for supervisor/worker setups. Worker agents are
+ * registered as asynchronous functions, so a supervisor calling several workers in one turn
+ * runs them concurrently.
+ */
+public final class AgentTool {
+    private static final String MESSAGE = "message";
+    // Registered schemas are never modified, so every supervisor shares this one
+    private static final ObjectNode SCHEMA = createSchema(new ObjectMapper());
+
+    private AgentTool() {
+    }
+
+    /**
+     * Registers a worker agent as a tool of a supervisor agent.
+     *
+     * @param supervisor The agent that may call the worker
+     * @param name The tool name of the worker
+     * @param description What the worker does, sent to the supervisor's model
+     * @param worker The agent handling the calls
+     */
+    public static void register(OpenAIAgent supervisor, String name, String description, Agent worker) {
+        supervisor.registerFunction(name, asFunction(worker), SCHEMA, null, description);
+    }
+
+    /**
+     * Wraps an agent as a function taking a single {@code message} parameter. The function returns
+     * the agent's own future, so cancelling the call, for example because the supervisor's request
+     * was cancelled or ran out of budget, cancels the agent's request.
+     */
+    @SuppressWarnings("unchecked")
+    public static AsyncAgentFunction asFunction(Agent agent) {
+        return parameters -> {
+            Object message = parameters.get(MESSAGE);
+            if (message == null) {
+                return CompletableFuture.failedFuture(new IllegalArgumentException("Missing required parameter: " + MESSAGE));
+            }
+            return (CompletableFuture<Object>) (CompletableFuture<?>) agent.sendMessage(message.toString());
+        };
+    }
+
+    /**
+     * Creates the parameter schema of an agent tool.
+     */
+    public static ObjectNode createSchema(ObjectMapper objectMapper) {
+        ObjectNode schema = objectMapper.createObjectNode();
+        schema.put("type", "object");
+        ObjectNode message = schema.putObject("properties").putObject(MESSAGE);
+        message.put("type", "string");
+        message.put("description", "The message to send to the agent");
+        schema.putArray("required").add(MESSAGE);
+        schema.put("additionalProperties", false);
+        return schema;
+    }
+}
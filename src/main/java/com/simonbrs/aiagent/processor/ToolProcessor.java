@@ -0,0 +1,378 @@
+package com.simonbrs.aiagent.processor;
+
+import com.simonbrs.aiagent.annotation.Param;
+import com.simonbrs.aiagent.annotation.Tool;
+import com.simonbrs.aiagent.annotation.ToolProvider;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+
+/**
+ * Generates a {@link ToolProvider} for every class with {@link Tool}-annotated methods.
+ * The provider contains the parameter schemas and descriptions as constants and invokes
+ * the methods directly, so registering the class requires no reflection. The generated
+ * schemas match those of {@link com.simonbrs.aiagent.schema.FunctionSchemaGenerator} for
+ * classes compiled with {@code -parameters}; both use the source parameter names, while without
+ * that flag reflection only sees {@code arg0..argN}.
+ * <p>
+ * The generated providers are listed in a GraalVM {@code reflect-config.json}, so that
+ * {@code registerMethods} can find them in a native image. The file is written to
+ * {@code META-INF/native-image/<directory>/}, where the directory is given with the
+ * {@value #DIRECTORY_OPTION} option, conventionally as {@code groupId/artifactId}. Without the
+ * option the package of the generated providers is used, so that jars merged into one do not
+ * overwrite each other's configuration.
+ */
+@SupportedAnnotationTypes("com.simonbrs.aiagent.annotation.Tool")
+@SupportedOptions(ToolProcessor.DIRECTORY_OPTION)
+public class ToolProcessor extends AbstractProcessor {
+    static final String DIRECTORY_OPTION = "aiagent.nativeImageDirectory";
+
+    private final List<String> generatedProviders = new ArrayList<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            writeReflectConfig();
+            return true;
+        }
+
+        Map<TypeElement, List<ExecutableElement>> toolsByClass = new LinkedHashMap<>();
+        for (Element element : roundEnv.getElementsAnnotatedWith(Tool.class)) {
+            ExecutableElement method = (ExecutableElement) element;
+            if (!method.getModifiers().contains(Modifier.PUBLIC)) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "@Tool methods must be public", method);
+                continue;
+            }
+            toolsByClass.computeIfAbsent((TypeElement) method.getEnclosingElement(), k -> new ArrayList<>()).add(method);
+        }
+
+        for (Map.Entry<TypeElement, List<ExecutableElement>> entry : toolsByClass.entrySet()) {
+            try {
+                writeProvider(entry.getKey(), entry.getValue());
+            } catch (IOException e) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "Failed to generate tool provider: " + e.getMessage(), entry.getKey());
+            }
+        }
+        return true;
+    }
+
+    private void writeProvider(TypeElement type, List<ExecutableElement> methods) throws IOException {
+        Elements elements = processingEnv.getElementUtils();
+        String packageName = elements.getPackageOf(type).getQualifiedName().toString();
+        String binaryName = elements.getBinaryName(type).toString();
+        String simpleName = (packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1))
+            .replace('$', '_') + ToolProvider.SUFFIX;
+        String typeName = processingEnv.getTypeUtils().erasure(type.asType()).toString();
+
+        StringBuilder source = new StringBuilder();
+        if (!packageName.isEmpty()) {
+            source.append("package ").append(packageName).append(";\n\n");
+        }
+        source.append("@javax.annotation.processing.Generated(\"").append(ToolProcessor.class.getName()).append("\")\n");
+        source.append("public final class ").append(simpleName)
+            .append(" implements com.simonbrs.aiagent.annotation.ToolProvider<").append(typeName).append("> {\n");
+        source.append("    @Override\n");
+        source.append("    @SuppressWarnings({\"unchecked\", \"rawtypes\"})\n");
+        source.append("    public java.util.List<com.simonbrs.aiagent.annotation.ToolDefinition> getTools(")
+            .append(typeName).append(" instance) {\n");
+        source.append("        return java.util.List.of(");
+        for (int i = 0; i < methods.size(); i++) {
+            source.append(i == 0 ? "\n" : ",\n");
+            appendDefinition(source, typeName, methods.get(i));
+        }
+        source.append("\n        );\n");
+        source.append("    }\n");
+        source.append("}\n");
+
+        String qualifiedName = packageName.isEmpty() ? simpleName : packageName + "." + simpleName;
+        JavaFileObject file = processingEnv.getFiler().createSourceFile(qualifiedName, type);
+        try (Writer writer = file.openWriter()) {
+            writer.write(source.toString());
+        }
+        generatedProviders.add(qualifiedName);
+    }
+
+    private void writeReflectConfig() {
+        if (generatedProviders.isEmpty()) {
+            return;
+        }
+        String directory = processingEnv.getOptions().get(DIRECTORY_OPTION);
+        if (directory == null || directory.isBlank()) {
+            directory = defaultDirectory();
+        }
+        StringBuilder config = new StringBuilder("[\n");
+        for (int i = 0; i < generatedProviders.size(); i++) {
+            config.append("  {\"name\": ").append(literal(generatedProviders.get(i)))
+                .append(", \"methods\": [{\"name\": \"<init>\", \"parameterTypes\": []}]}")
+                .append(i == generatedProviders.size() - 1 ? "\n" : ",\n");
+        }
+        config.append("]\n");
+        try {
+            FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "",
+                "META-INF/native-image/" + directory.replaceAll("^/+|/+$", "") + "/reflect-config.json");
+            try (Writer writer = file.openWriter()) {
+                writer.write(config.toString());
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                "Failed to write native image configuration: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the first package, in sorted order, containing a generated provider, followed by
+     * {@code tools} to keep the configuration apart from any the project writes itself.
+     */
+    private String defaultDirectory() {
+        String first = null;
+        for (String provider : generatedProviders) {
+            int dot = provider.lastIndexOf('.');
+            String packageName = dot < 0 ? "default" : provider.substring(0, dot);
+            if (first == null || packageName.compareTo(first) < 0) {
+                first = packageName;
+            }
+        }
+        return first + "/tools";
+    }
+
+    private void appendDefinition(StringBuilder source, String typeName, ExecutableElement method) {
+        Tool tool = method.getAnnotation(Tool.class);
+        String methodName = method.getSimpleName().toString();
+        String toolName = tool.name().isEmpty() ? methodName : tool.name();
+        String description = tool.description().isEmpty() ? describe(method) : tool.description();
+
+        StringBuilder invocation = new StringBuilder();
+        invocation.append(method.getModifiers().contains(Modifier.STATIC) ? typeName : "instance")
+            .append('.').append(methodName).append('(');
+        List<? extends VariableElement> parameters = method.getParameters();
+        for (int i = 0; i < parameters.size(); i++) {
+            VariableElement parameter = parameters.get(i);
+            TypeMirror erasure = processingEnv.getTypeUtils().erasure(parameter.asType());
+            if (i > 0) {
+                invocation.append(", ");
+            }
+            invocation.append('(').append(castType(erasure)).append(") com.simonbrs.aiagent.annotation.ToolProvider.argument(parameters, ")
+                .append(literal(parameterName(parameter))).append(", ").append(erasure).append(".class)");
+        }
+        invocation.append(')');
+
+        String function;
+        if (method.getReturnType().getKind() == TypeKind.VOID) {
+            function = "parameters -> { " + invocation + "; return null; }";
+        } else if (isCompletionStage(method.getReturnType())) {
+            function = "(com.simonbrs.aiagent.AsyncAgentFunction) parameters -> (java.util.concurrent.CompletionStage) "
+                + invocation;
+        } else {
+            function = "parameters -> " + invocation;
+        }
+
+        source.append("            new com.simonbrs.aiagent.annotation.ToolDefinition(")
+            .append(literal(toolName)).append(", ")
+            .append(literal(description)).append(",\n                ")
+            .append(literal(schema(method))).append(",\n                ")
+            .append(function).append(tool.idempotent() ? ", true)" : ")");
+    }
+
+    private String schema(ExecutableElement method) {
+        StringBuilder properties = new StringBuilder();
+        StringBuilder required = new StringBuilder();
+        for (VariableElement parameter : method.getParameters()) {
+            String name = parameterName(parameter);
+            if (properties.length() > 0) {
+                properties.append(',');
+                required.append(',');
+            }
+            properties.append(literal(name)).append(":{").append(typeInfo(parameter, name)).append('}');
+            required.append(literal(name));
+        }
+        return "{\"type\":\"object\",\"properties\":{" + properties + "},\"required\":[" + required
+            + "],\"additionalProperties\":false}";
+    }
+
+    private String typeInfo(VariableElement parameter, String name) {
+        TypeMirror type = parameter.asType();
+        Param param = parameter.getAnnotation(Param.class);
+        String given = param == null ? "" : param.description();
+
+        String jsonType;
+        String description;
+        String extra = "";
+        if (type.getKind() == TypeKind.INT || type.getKind() == TypeKind.LONG) {
+            jsonType = "number";
+            description = "Integer parameter " + name;
+        } else if (type.getKind() == TypeKind.FLOAT || type.getKind() == TypeKind.DOUBLE || isNumber(type)) {
+            jsonType = "number";
+            description = "Decimal number parameter " + name;
+        } else if (type.getKind() == TypeKind.BOOLEAN || isClass(type, "java.lang.Boolean")) {
+            jsonType = "boolean";
+            description = "Boolean parameter " + name;
+        } else if (isClass(type, "java.lang.String")) {
+            jsonType = "string";
+            description = "Text parameter " + name;
+        } else if (type.getKind() == TypeKind.ARRAY) {
+            jsonType = "array";
+            description = "Array parameter " + name;
+            extra = ",\"items\":{\"type\":" + literal(jsonType(((ArrayType) type).getComponentType())) + "}";
+        } else if (isClass(type, "java.util.List") || isClass(type, "java.util.Collection")
+                || isClass(type, "java.lang.Iterable")) {
+            jsonType = "array";
+            description = "List parameter " + name;
+            List<? extends TypeMirror> typeArguments = ((DeclaredType) type).getTypeArguments();
+            String itemType = typeArguments.size() == 1 && typeArguments.get(0).getKind() == TypeKind.DECLARED
+                ? jsonType(typeArguments.get(0)) : "string";
+            extra = ",\"items\":{\"type\":" + literal(itemType) + "}";
+        } else if (isEnum(type)) {
+            Element enumType = processingEnv.getTypeUtils().asElement(type);
+            jsonType = "string";
+            description = "Enum parameter " + name + " (" + enumType.getSimpleName() + ")";
+            StringBuilder values = new StringBuilder();
+            for (Element constant : enumType.getEnclosedElements()) {
+                if (constant.getKind() == ElementKind.ENUM_CONSTANT) {
+                    values.append(values.length() == 0 ? "" : ",").append(literal(constant.getSimpleName().toString()));
+                }
+            }
+            extra = ",\"enum\":[" + values + "]";
+        } else {
+            jsonType = "string";
+            description = "Parameter " + name + " (type: " + simpleName(type) + ")";
+        }
+
+        return "\"type\":" + literal(jsonType) + ",\"description\":" + literal(given.isEmpty() ? description : given) + extra;
+    }
+
+    private String jsonType(TypeMirror type) {
+        TypeKind kind = type.getKind();
+        if (kind == TypeKind.INT || kind == TypeKind.LONG || kind == TypeKind.FLOAT || kind == TypeKind.DOUBLE
+                || isNumber(type)) {
+            return "number";
+        } else if (kind == TypeKind.BOOLEAN || isClass(type, "java.lang.Boolean")) {
+            return "boolean";
+        } else if (isClass(type, "java.lang.String")) {
+            return "string";
+        } else if (kind == TypeKind.ARRAY || isAssignable(type, "java.util.List")) {
+            return "array";
+        }
+        return "string";
+    }
+
+    private String describe(ExecutableElement method) {
+        TypeMirror returnType = method.getReturnType();
+        if (isCompletionStage(returnType) && returnType.getKind() == TypeKind.DECLARED
+                && ((DeclaredType) returnType).getTypeArguments().size() == 1) {
+            returnType = ((DeclaredType) returnType).getTypeArguments().get(0);
+        }
+
+        StringBuilder description = new StringBuilder();
+        description.append("Returns ").append(simpleName(returnType)).append(". ");
+        List<? extends VariableElement> parameters = method.getParameters();
+        if (!parameters.isEmpty()) {
+            description.append("Takes ");
+            for (int i = 0; i < parameters.size(); i++) {
+                if (i > 0) {
+                    description.append(i == parameters.size() - 1 ? " and " : ", ");
+                }
+                description.append(simpleName(parameters.get(i).asType()))
+                    .append(" ")
+                    .append(parameterName(parameters.get(i)));
+            }
+            description.append(".");
+        }
+        return description.toString();
+    }
+
+    private static String parameterName(VariableElement parameter) {
+        Param param = parameter.getAnnotation(Param.class);
+        return param != null && !param.value().isEmpty() ? param.value() : parameter.getSimpleName().toString();
+    }
+
+    private String castType(TypeMirror erasure) {
+        if (erasure.getKind().isPrimitive()) {
+            return processingEnv.getTypeUtils().boxedClass((javax.lang.model.type.PrimitiveType) erasure)
+                .getQualifiedName().toString();
+        }
+        return erasure.toString();
+    }
+
+    private String simpleName(TypeMirror type) {
+        if (type.getKind().isPrimitive() || type.getKind() == TypeKind.VOID) {
+            return type.toString();
+        }
+        if (type.getKind() == TypeKind.ARRAY) {
+            return simpleName(((ArrayType) type).getComponentType()) + "[]";
+        }
+        Element element = processingEnv.getTypeUtils().asElement(type);
+        return element == null ? type.toString() : element.getSimpleName().toString();
+    }
+
+    private boolean isCompletionStage(TypeMirror type) {
+        return isAssignable(type, "java.util.concurrent.CompletionStage");
+    }
+
+    private boolean isNumber(TypeMirror type) {
+        return isAssignable(type, "java.lang.Number");
+    }
+
+    private boolean isEnum(TypeMirror type) {
+        Element element = processingEnv.getTypeUtils().asElement(type);
+        return element != null && element.getKind() == ElementKind.ENUM;
+    }
+
+    private boolean isClass(TypeMirror type, String className) {
+        if (type.getKind() != TypeKind.DECLARED) {
+            return false;
+        }
+        return ((TypeElement) ((DeclaredType) type).asElement()).getQualifiedName().contentEquals(className);
+    }
+
+    private boolean isAssignable(TypeMirror type, String className) {
+        if (type.getKind() != TypeKind.DECLARED) {
+            return false;
+        }
+        Types types = processingEnv.getTypeUtils();
+        TypeElement target = processingEnv.getElementUtils().getTypeElement(className);
+        return target != null && types.isAssignable(types.erasure(type), types.erasure(target.asType()));
+    }
+
+    private static String literal(String value) {
+        StringBuilder literal = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            switch (c) {
+                case '"': literal.append("\\\""); break;
+                case '\\': literal.append("\\\\"); break;
+                case '\n': literal.append("\\n"); break;
+                case '\r': literal.append("\\r"); break;
+                case '\t': literal.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        literal.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        literal.append(c);
+                    }
+            }
+        }
+        return literal.append('"').toString();
+    }
+}
@@ -0,0 +1,89 @@
+package com.simonbrs.aiagent.prompt;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A prompt fragment with {@code {{name}}} placeholders, parsed once and rendered with context
+ * values per request. Placeholders without a value in the context render as an empty string.
+ */
+public final class PromptTemplate {
+    private static final String OPEN = "{{";
+    private static final String CLOSE = "}}";
+
+    private final String source;
+    // Literal text at even indices, placeholder names at odd indices
+    private final String[] parts;
+    private final List<String> placeholders;
+
+    private PromptTemplate(String source, String[] parts, List<String> placeholders) {
+        this.source = source;
+        this.parts = parts;
+        this.placeholders = placeholders;
+    }
+
+    /**
+     * Parses a template.
+     *
+     * @param template The template text
+     * @return The compiled template
+     * @throws IllegalArgumentException if a placeholder is not closed or has no name
+     */
+    public static PromptTemplate compile(String template) {
+        List<String> parts = new ArrayList<>();
+        List<String> placeholders = new ArrayList<>();
+        int position = 0;
+        while (true) {
+            int open = template.indexOf(OPEN, position);
+            if (open < 0) {
+                parts.add(template.substring(position));
+                break;
+            }
+            int close = template.indexOf(CLOSE, open + OPEN.length());
+            if (close < 0) {
+                throw new IllegalArgumentException("Unclosed placeholder at index " + open + " of template");
+            }
+            String name = template.substring(open + OPEN.length(), close).trim();
+            if (name.isEmpty()) {
+                throw new IllegalArgumentException("Empty placeholder at index " + open + " of template");
+            }
+            parts.add(template.substring(position, open));
+            parts.add(name);
+            placeholders.add(name);
+            position = close + CLOSE.length();
+        }
+        return new PromptTemplate(template, parts.toArray(new String[0]), Collections.unmodifiableList(placeholders));
+    }
+
+    /**
+     * Returns the names of the placeholders, in order of appearance.
+     */
+    public List<String> getPlaceholders() {
+        return placeholders;
+    }
+
+    /**
+     * Renders the template with the given context values.
+     */
+    public String render(Map<String, ?> context) {
+        StringBuilder rendered = new StringBuilder(source.length() + 16 * placeholders.size());
+        for (int i = 0; i < parts.length; i++) {
+            if (i % 2 == 0) {
+                rendered.append(parts[i]);
+            } else {
+                Object value = context.get(parts[i]);
+                if (value != null) {
+                    rendered.append(value);
+                }
+            }
+        }
+        return rendered.toString();
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+}
@@ -3,9 +3,87 @@ package com.simonbrs.aiagent.prompt;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.simonbrs.aiagent.AgentFunction;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 
 public class SystemPromptGenerator {
+    private static final int RENDER_CACHE_SIZE = 256;
+
+    private volatile PromptTemplate contextTemplate;
+    private final Map<List<String>, String> renderCache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<List<String>, String> eldest) {
+            return size() > RENDER_CACHE_SIZE;
+        }
+    };
+
+    /**
+     * Sets the template rendered with the context of each request and appended to the system
+     * prompt. Without a template, the context is listed as key-value pairs.
+     *
+     * @param template The template with {@code {{name}}} placeholders, or null for the default listing
+     */
+    public void setContextTemplate(String template) {
+        PromptTemplate compiled = template == null ? null : PromptTemplate.compile(template);
+        synchronized (renderCache) {
+            contextTemplate = compiled;
+            renderCache.clear();
+        }
+    }
+
+    /**
+     * Renders the context of a request as a fragment to append to the system prompt. The fragment
+     * is appended after the generated prompt, which stays byte-identical between requests so that
+     * it remains cacheable upstream. Renderings are cached by their context values.
+     *
+     * @param context The context of the request, or null
+     * @return The fragment, or an empty string if there is no context
+     */
+    public String renderContext(Map<String, Object> context) {
+        if (context == null || context.isEmpty()) {
+            return "";
+        }
+        PromptTemplate template = contextTemplate;
+        List<String> key = new ArrayList<>();
+        if (template != null) {
+            for (String placeholder : template.getPlaceholders()) {
+                key.add(String.valueOf(context.get(placeholder)));
+            }
+        } else {
+            // Sorted so that equal contexts render identically regardless of map order
+            for (Map.Entry<String, Object> entry : new TreeMap<>(context).entrySet()) {
+                key.add(entry.getKey());
+                key.add(String.valueOf(entry.getValue()));
+            }
+        }
+
+        synchronized (renderCache) {
+            String cached = renderCache.get(key);
+            if (cached != null && template == contextTemplate) {
+                return cached;
+            }
+        }
+        String rendered = template != null ? "\n\n" + template.render(context) : listContext(key);
+        synchronized (renderCache) {
+            if (template == contextTemplate) {
+                renderCache.put(key, rendered);
+            }
+        }
+        return rendered;
+    }
+
+    private static String listContext(List<String> keysAndValues) {
+        StringBuilder fragment = new StringBuilder("\n\nContext:\n");
+        for (int i = 0; i < keysAndValues.size(); i += 2) {
+            fragment.append("- ").append(keysAndValues.get(i)).append(": ").append(keysAndValues.get(i + 1)).append('\n');
+        }
+        return fragment.toString();
+    }
+
     public String generatePrompt(Map<String, AgentFunction> functions, Map<String, ObjectNode> schemas) {
         StringBuilder prompt = new StringBuilder();
         prompt.append("You are a helpful assistant that can use provided functions. ");
@@ -0,0 +1,267 @@
+package com.simonbrs.aiagent.reactive;
+
+import com.simonbrs.aiagent.Agent;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Flow;
+
+/**
+ * Connects a stream of user messages to an agent and publishes its responses. The processor is
+ * one session: it sends one message at a time, so the agent's conversation history sees the
+ * messages in order.
+ * <p>
+ * Demand flows from the subscriber to the message source. A message is only requested from
+ * upstream once the subscriber has requested a response and the previous response has been
+ * delivered, so a slow subscriber throttles the source and no request is sent to the API that
+ * nobody is waiting for. Nothing is buffered.
+ * <p>
+ * A failed request is passed to the subscriber as an error and cancels the upstream
+ * subscription. Cancelling the downstream subscription cancels the request in flight.
+ */
+public class AgentProcessor implements Flow.Processor<String, String> {
+    private final Agent agent;
+
+    private Flow.Subscription upstream;
+    private Flow.Subscriber<? super String> downstream;
+    private long demand;
+    private boolean awaitingMessage;
+    private CompletableFuture<String> inFlight;
+    private boolean upstreamDone;
+    private Throwable upstreamError;
+    private boolean terminated;
+
+    /**
+     * Creates a processor sending messages to the given agent.
+     *
+     * @param agent The agent of this session
+     */
+    public AgentProcessor(Agent agent) {
+        this.agent = agent;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super String> subscriber) {
+        synchronized (this) {
+            if (downstream == null) {
+                downstream = subscriber;
+            } else {
+                subscriber.onSubscribe(new Flow.Subscription() {
+                    @Override
+                    public void request(long n) {
+                    }
+
+                    @Override
+                    public void cancel() {
+                    }
+                });
+                subscriber.onError(new IllegalStateException("AgentProcessor supports a single subscriber"));
+                return;
+            }
+        }
+        subscriber.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+                requestResponses(n);
+            }
+
+            @Override
+            public void cancel() {
+                cancelSession();
+            }
+        });
+        boolean done;
+        Throwable doneError;
+        synchronized (this) {
+            // Upstream may have finished before anyone subscribed
+            done = upstreamDone && inFlight == null;
+            doneError = upstreamError;
+        }
+        if (done) {
+            terminate(doneError);
+        } else {
+            requestNext();
+        }
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        synchronized (this) {
+            if (upstream != null || terminated) {
+                subscription.cancel();
+                return;
+            }
+            upstream = subscription;
+        }
+        requestNext();
+    }
+
+    @Override
+    public void onNext(String message) {
+        CompletableFuture<String> response = new CompletableFuture<>();
+        synchronized (this) {
+            if (terminated) {
+                return;
+            }
+            awaitingMessage = false;
+            inFlight = response;
+        }
+        CompletableFuture<String> request;
+        try {
+            request = agent.sendMessage(message);
+        } catch (RuntimeException e) {
+            request = CompletableFuture.failedFuture(e);
+        }
+        CompletableFuture<String> sent = request;
+        response.whenComplete((ignored, error) -> {
+            if (response.isCancelled()) {
+                sent.cancel(true);
+            }
+        });
+        sent.whenComplete((result, error) -> {
+            if (error != null) {
+                response.completeExceptionally(error);
+            } else {
+                response.complete(result);
+            }
+        });
+        response.whenComplete(this::onResponse);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        synchronized (this) {
+            upstreamDone = true;
+            upstreamError = throwable;
+            if (inFlight != null) {
+                return;
+            }
+        }
+        terminate(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        synchronized (this) {
+            upstreamDone = true;
+            if (inFlight != null) {
+                return;
+            }
+        }
+        terminate(null);
+    }
+
+    private void onResponse(String response, Throwable error) {
+        if (error != null) {
+            cancelUpstream();
+            terminate(unwrap(error));
+            return;
+        }
+        Flow.Subscriber<? super String> subscriber;
+        synchronized (this) {
+            if (terminated) {
+                return;
+            }
+            demand--;
+            subscriber = downstream;
+        }
+        subscriber.onNext(response);
+
+        boolean done;
+        Throwable doneError;
+        synchronized (this) {
+            inFlight = null;
+            done = upstreamDone;
+            doneError = upstreamError;
+        }
+        if (done) {
+            terminate(doneError);
+        } else {
+            requestNext();
+        }
+    }
+
+    private void requestResponses(long n) {
+        if (n <= 0) {
+            CompletableFuture<String> response;
+            synchronized (this) {
+                response = inFlight;
+            }
+            terminate(new IllegalArgumentException("Demand must be positive: " + n));
+            cancelUpstream();
+            if (response != null) {
+                response.cancel(true);
+            }
+            return;
+        }
+        synchronized (this) {
+            demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+        }
+        requestNext();
+    }
+
+    /**
+     * Requests the next message from upstream if a response is wanted and none is being produced.
+     */
+    private void requestNext() {
+        Flow.Subscription subscription;
+        synchronized (this) {
+            if (upstream == null || downstream == null || terminated || upstreamDone
+                    || demand == 0 || awaitingMessage || inFlight != null) {
+                return;
+            }
+            awaitingMessage = true;
+            subscription = upstream;
+        }
+        subscription.request(1);
+    }
+
+    private void cancelSession() {
+        CompletableFuture<String> response;
+        synchronized (this) {
+            if (terminated) {
+                return;
+            }
+            terminated = true;
+            response = inFlight;
+        }
+        cancelUpstream();
+        if (response != null) {
+            response.cancel(true);
+        }
+    }
+
+    private void cancelUpstream() {
+        Flow.Subscription subscription;
+        synchronized (this) {
+            subscription = upstream;
+            upstreamDone = true;
+        }
+        if (subscription != null) {
+            subscription.cancel();
+        }
+    }
+
+    private void terminate(Throwable error) {
+        Flow.Subscriber<? super String> subscriber;
+        synchronized (this) {
+            if (terminated || downstream == null) {
+                return;
+            }
+            terminated = true;
+            subscriber = downstream;
+        }
+        if (error != null) {
+            subscriber.onError(error);
+        } else {
+            subscriber.onComplete();
+        }
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        if (error instanceof CompletionException && error.getCause() != null) {
+            return error.getCause();
+        }
+        return error;
+    }
+}
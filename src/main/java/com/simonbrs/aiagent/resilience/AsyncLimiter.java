@@ -0,0 +1,109 @@
+package com.simonbrs.aiagent.resilience;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Limits the number of asynchronous tasks running at once without blocking threads.
+ * Tasks beyond the limit wait in a bounded queue; tasks beyond the queue are rejected.
+ * A queued task whose future is cancelled is skipped when its turn comes; cancelling the future
+ * of a running task cancels the future the task returned, which frees its slot.
+ */
+public class AsyncLimiter {
+    private final int maxConcurrent;
+    private final int maxQueued;
+    private final Executor executor;
+    private final Deque<Queued> queue = new ArrayDeque<>();
+    private int running;
+
+    public AsyncLimiter(int maxConcurrent, int maxQueued, Executor executor) {
+        if (maxConcurrent <= 0 || maxQueued < 0) {
+            throw new IllegalArgumentException("Concurrency must be positive and the queue size non-negative");
+        }
+        this.maxConcurrent = maxConcurrent;
+        this.maxQueued = maxQueued;
+        this.executor = executor;
+    }
+
+    /**
+     * Starts the task now if a slot is free, or once one frees up.
+     *
+     * @return A future completing with the task's result, or failing with a
+     *         {@link RejectedExecutionException} if the queue is full
+     */
+    public <T> CompletableFuture<T> submit(Supplier<CompletableFuture<T>> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Runnable start = () -> {
+            CompletableFuture<T> started;
+            try {
+                started = task.get();
+            } catch (RuntimeException e) {
+                started = CompletableFuture.failedFuture(e);
+            }
+            CompletableFuture<T> running = started;
+            running.whenComplete((value, error) -> {
+                release();
+                if (error != null) {
+                    result.completeExceptionally(error);
+                } else {
+                    result.complete(value);
+                }
+            });
+            result.whenComplete((value, error) -> {
+                if (result.isCancelled()) {
+                    running.cancel(true);
+                }
+            });
+        };
+
+        synchronized (this) {
+            if (running >= maxConcurrent) {
+                if (queue.size() >= maxQueued) {
+                    return CompletableFuture.failedFuture(new RejectedExecutionException(
+                        "Too many pending tasks (" + maxQueued + " queued)"));
+                }
+                queue.add(new Queued(result, start));
+                return result;
+            }
+            running++;
+        }
+        start.run();
+        return result;
+    }
+
+    // Hands the freed slot to the next queued task that is still wanted, or gives it up
+    private void release() {
+        while (true) {
+            Queued next;
+            synchronized (this) {
+                do {
+                    next = queue.poll();
+                } while (next != null && next.result.isDone());
+                if (next == null) {
+                    running--;
+                    return;
+                }
+            }
+            try {
+                executor.execute(next.start);
+                return;
+            } catch (RejectedExecutionException e) {
+                next.result.completeExceptionally(e);
+            }
+        }
+    }
+
+    private static final class Queued {
+        private final CompletableFuture<?> result;
+        private final Runnable start;
+
+        Queued(CompletableFuture<?> result, Runnable start) {
+            this.result = result;
+            this.start = start;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.simonbrs.aiagent.resilience;
+
+import java.time.Duration;
+
+/**
+ * Opens after a number of consecutive failures and rejects calls until the open duration has
+ * passed. Then a single trial call is let through: its success closes the circuit, its failure
+ * opens it again.
+ */
+public class CircuitBreaker {
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int failureThreshold;
+    private final long openNanos;
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+
+    /**
+     * @param failureThreshold The number of consecutive failures that opens the circuit
+     * @param openDuration How long the circuit stays open before a trial call is allowed
+     */
+    public CircuitBreaker(int failureThreshold, Duration openDuration) {
+        if (failureThreshold <= 0) {
+            throw new IllegalArgumentException("Failure threshold must be positive");
+        }
+        this.failureThreshold = failureThreshold;
+        this.openNanos = openDuration.toNanos();
+    }
+
+    /**
+     * Returns whether a call may be made now. While half open, only one call is allowed until it completes.
+     */
+    public synchronized boolean tryAcquire() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.nanoTime() - openedAt >= openNanos) {
+                    state = State.HALF_OPEN;
+                    return true;
+                }
+                return false;
+            default:
+                return false;
+        }
+    }
+
+    public synchronized void onSuccess() {
+        consecutiveFailures = 0;
+        state = State.CLOSED;
+    }
+
+    public synchronized void onFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            state = State.OPEN;
+            openedAt = System.nanoTime();
+        }
+    }
+
+    /**
+     * Records a call that was allowed but never reached the tool, freeing the trial slot while half open.
+     */
+    public synchronized void onIgnored() {
+        if (state == State.HALF_OPEN) {
+            state = State.OPEN;
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+}
@@ -0,0 +1,209 @@
+package com.simonbrs.aiagent.resilience;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Applies a {@link ToolPolicy} to the calls of one tool. Calls beyond the bulkhead are rejected,
+ * calls exceeding the timeout fail without waiting for the tool, and while the circuit breaker
+ * is open calls fail immediately with a {@link ToolUnavailableException}.
+ * <p>
+ * A call that times out or is cancelled is cancelled in turn: its bulkhead slot is released,
+ * and the thread of a blocking call is interrupted, so a hanging tool cannot hold the bulkhead.
+ * Rejected calls, invalid arguments and cancellations do not count as failures of the tool.
+ */
+public class ToolGuard {
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    private final String name;
+    private final ToolPolicy policy;
+    private final Executor executor;
+    private final AsyncLimiter bulkhead;
+    private final CircuitBreaker circuitBreaker;
+
+    /**
+     * Creates a guard running blocking calls on a shared pool of daemon threads.
+     */
+    public ToolGuard(String name, ToolPolicy policy) {
+        this(name, policy, SharedExecutor.INSTANCE);
+    }
+
+    /**
+     * @param name The name of the guarded tool, used in error messages
+     * @param policy The policy to apply
+     * @param executor The executor for blocking calls that need a timeout and for queued calls
+     */
+    public ToolGuard(String name, ToolPolicy policy, Executor executor) {
+        this.name = name;
+        this.policy = policy;
+        this.executor = executor;
+        this.bulkhead = policy.getMaxConcurrency() > 0
+            ? new AsyncLimiter(policy.getMaxConcurrency(), policy.getMaxQueued(), executor)
+            : null;
+        this.circuitBreaker = policy.getFailureThreshold() > 0
+            ? new CircuitBreaker(policy.getFailureThreshold(), policy.getOpenDuration())
+            : null;
+    }
+
+    /**
+     * Calls the tool under this guard's policy.
+     *
+     * @param call Starts the call
+     * @param blocking Whether the call blocks the calling thread; blocking calls with a timeout
+     *                 run on the guard's executor so the timeout can fire
+     * @return A future completing with the tool's result
+     */
+    public <T> CompletableFuture<T> execute(Supplier<CompletableFuture<T>> call, boolean blocking) {
+        if (circuitBreaker != null && !circuitBreaker.tryAcquire()) {
+            return CompletableFuture.failedFuture(new ToolUnavailableException(
+                "Tool " + name + " is unavailable after repeated failures"));
+        }
+
+        Supplier<CompletableFuture<T>> start = blocking && policy.getTimeout() != null
+            ? () -> startBlocking(call)
+            : call;
+        CompletableFuture<T> started = bulkhead != null ? bulkhead.submit(start) : startSafely(start);
+        CompletableFuture<T> result = started;
+        if (policy.getTimeout() != null) {
+            result = started.copy().orTimeout(policy.getTimeout().toMillis(), TimeUnit.MILLISECONDS);
+            result.whenComplete((value, error) -> {
+                if (error instanceof TimeoutException) {
+                    started.cancel(true);
+                }
+            });
+        }
+
+        CompletableFuture<T> guarded = result.handle((value, error) -> {
+            if (error == null) {
+                if (circuitBreaker != null) {
+                    circuitBreaker.onSuccess();
+                }
+                return value;
+            }
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (cause instanceof CancellationException || cause instanceof IllegalArgumentException) {
+                // The call was given up or never got valid arguments, which says nothing about the tool
+                if (circuitBreaker != null) {
+                    circuitBreaker.onIgnored();
+                }
+                throw new CompletionException(cause);
+            }
+            if (cause instanceof RejectedExecutionException) {
+                // Rejected calls never reached the tool, so they say nothing about its health
+                if (circuitBreaker != null) {
+                    circuitBreaker.onIgnored();
+                }
+                throw new CompletionException(new ToolUnavailableException(
+                    "Tool " + name + " is busy: " + cause.getMessage()));
+            }
+            if (circuitBreaker != null) {
+                circuitBreaker.onFailure();
+            }
+            if (cause instanceof TimeoutException) {
+                throw new CompletionException(new TimeoutException(
+                    "Tool " + name + " timed out after " + policy.getTimeout().toMillis() + " ms"));
+            }
+            throw new CompletionException(cause);
+        });
+        guarded.whenComplete((value, error) -> {
+            if (guarded.isCancelled()) {
+                started.cancel(true);
+            }
+        });
+        return guarded;
+    }
+
+    /**
+     * Returns the shared pool of daemon threads guards use for blocking calls by default.
+     */
+    public static Executor defaultExecutor() {
+        return SharedExecutor.INSTANCE;
+    }
+
+    public ToolPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Returns the state of the circuit breaker, or null if the policy has none.
+     */
+    public CircuitBreaker.State getCircuitState() {
+        return circuitBreaker != null ? circuitBreaker.getState() : null;
+    }
+
+    /**
+     * Runs a blocking call on the executor. Cancelling the returned future interrupts the call.
+     */
+    private <T> CompletableFuture<T> startBlocking(Supplier<CompletableFuture<T>> call) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        AtomicReference<Thread> runner = new AtomicReference<>();
+        executor.execute(() -> {
+            synchronized (runner) {
+                if (future.isDone()) {
+                    return;
+                }
+                runner.set(Thread.currentThread());
+            }
+            try {
+                CompletableFuture<T> result = call.get();
+                result.whenComplete((value, error) -> {
+                    if (error != null) {
+                        future.completeExceptionally(error);
+                    } else {
+                        future.complete(value);
+                    }
+                });
+                future.whenComplete((value, error) -> {
+                    if (future.isCancelled()) {
+                        result.cancel(true);
+                    }
+                });
+            } catch (RuntimeException e) {
+                future.completeExceptionally(e);
+            } finally {
+                synchronized (runner) {
+                    runner.set(null);
+                    // An interrupt meant for this call must not reach the executor's next task
+                    Thread.interrupted();
+                }
+            }
+        });
+        future.whenComplete((value, error) -> {
+            if (future.isCancelled()) {
+                synchronized (runner) {
+                    Thread thread = runner.get();
+                    if (thread != null) {
+                        thread.interrupt();
+                    }
+                }
+            }
+        });
+        return future;
+    }
+
+    private static <T> CompletableFuture<T> startSafely(Supplier<CompletableFuture<T>> start) {
+        try {
+            return start.get();
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private static class SharedExecutor {
+        static final ExecutorService INSTANCE = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "agent-tool-" + THREAD_COUNT.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
@@ -0,0 +1,90 @@
+package com.simonbrs.aiagent.resilience;
+
+import java.time.Duration;
+
+/**
+ * Isolation settings for a tool: how many calls may run and wait at once, how long a call may
+ * take, and after how many consecutive failures the tool is considered unhealthy.
+ * A limit of zero (or a null duration) means the limit is not enforced.
+ */
+public final class ToolPolicy {
+    /**
+     * The policy used when no other policy is configured: no limits and no circuit breaker.
+     */
+    public static final ToolPolicy DEFAULT = new ToolPolicy(0, 0, null, 0, null);
+
+    private static final Duration DEFAULT_OPEN_DURATION = Duration.ofSeconds(30);
+
+    private final int maxConcurrency;
+    private final int maxQueued;
+    private final Duration timeout;
+    private final int failureThreshold;
+    private final Duration openDuration;
+
+    /**
+     * Creates a new tool policy.
+     *
+     * @param maxConcurrency The maximum number of calls running at once
+     * @param maxQueued The maximum number of calls waiting for a free slot; further calls are rejected
+     * @param timeout The maximum duration of a call, or null for none
+     * @param failureThreshold The number of consecutive failures that opens the circuit breaker
+     * @param openDuration How long an open circuit rejects calls before a trial call is allowed,
+     *                     or null for 30 seconds
+     * @throws IllegalArgumentException if a limit is negative
+     */
+    public ToolPolicy(int maxConcurrency, int maxQueued, Duration timeout, int failureThreshold, Duration openDuration) {
+        if (maxConcurrency < 0 || maxQueued < 0 || failureThreshold < 0) {
+            throw new IllegalArgumentException("Policy limits cannot be negative");
+        }
+        if (timeout != null && (timeout.isNegative() || timeout.isZero())) {
+            throw new IllegalArgumentException("Timeout must be positive");
+        }
+        if (openDuration != null && (openDuration.isNegative() || openDuration.isZero())) {
+            throw new IllegalArgumentException("Open duration must be positive");
+        }
+        this.maxConcurrency = maxConcurrency;
+        this.maxQueued = maxQueued;
+        this.timeout = timeout;
+        this.failureThreshold = failureThreshold;
+        this.openDuration = openDuration;
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public int getMaxQueued() {
+        return maxQueued;
+    }
+
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    public int getFailureThreshold() {
+        return failureThreshold;
+    }
+
+    public Duration getOpenDuration() {
+        return openDuration != null ? openDuration : DEFAULT_OPEN_DURATION;
+    }
+
+    /**
+     * Returns whether this policy enforces no limit at all.
+     */
+    public boolean isUnrestricted() {
+        return maxConcurrency == 0 && timeout == null && failureThreshold == 0;
+    }
+
+    public ToolPolicy withBulkhead(int maxConcurrency, int maxQueued) {
+        return new ToolPolicy(maxConcurrency, maxQueued, timeout, failureThreshold, openDuration);
+    }
+
+    public ToolPolicy withTimeout(Duration timeout) {
+        return new ToolPolicy(maxConcurrency, maxQueued, timeout, failureThreshold, openDuration);
+    }
+
+    public ToolPolicy withCircuitBreaker(int failureThreshold, Duration openDuration) {
+        return new ToolPolicy(maxConcurrency, maxQueued, timeout, failureThreshold, openDuration);
+    }
+}
@@ -0,0 +1,10 @@
+package com.simonbrs.aiagent.resilience;
+
+/**
+ * Thrown instead of calling a tool whose circuit breaker is open or whose bulkhead is full.
+ */
+public class ToolUnavailableException extends RuntimeException {
+    public ToolUnavailableException(String message) {
+        super(message);
+    }
+}
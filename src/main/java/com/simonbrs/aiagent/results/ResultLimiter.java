@@ -0,0 +1,91 @@
+package com.simonbrs.aiagent.results;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Applies a {@link ResultPolicy} to a tool result, turning it into the text added to the history.
+ */
+public class ResultLimiter {
+    /**
+     * The name of the tool the model uses to page through offloaded results.
+     */
+    public static final String READ_TOOL = "read_tool_result";
+
+    private final ResultStore store;
+
+    /**
+     * @param store The store for offloaded results
+     */
+    public ResultLimiter(ResultStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Converts a tool result to text, compacted, truncated or offloaded as the policy requires.
+     */
+    public String apply(Object value, ResultPolicy policy) {
+        String text;
+        if (policy.getMaxItems() > 0 && isContainer(value)) {
+            text = compact(value, policy.getMaxItems());
+        } else {
+            text = String.valueOf(value);
+        }
+
+        int maxChars = policy.getMaxChars();
+        if (maxChars == 0 || text.length() <= maxChars) {
+            return text;
+        }
+        if (policy.isOffload()) {
+            String handle = store.store(text);
+            return text.substring(0, maxChars) + "\n[Result truncated: showing characters 0-" + maxChars + " of "
+                + text.length() + ". The full result is stored as handle \"" + handle + "\"; call " + READ_TOOL
+                + " with this handle and an offset to read more.]";
+        }
+        return text.substring(0, maxChars) + "\n[Result truncated: " + (text.length() - maxChars) + " of "
+            + text.length() + " characters omitted]";
+    }
+
+    private static boolean isContainer(Object value) {
+        return value instanceof Collection || value instanceof Map || (value != null && value.getClass().isArray());
+    }
+
+    private static String compact(Object value, int maxItems) {
+        int size;
+        Object shown;
+        if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            size = map.size();
+            Map<Object, Object> first = new LinkedHashMap<>();
+            Iterator<? extends Map.Entry<?, ?>> entries = map.entrySet().iterator();
+            while (entries.hasNext() && first.size() < maxItems) {
+                Map.Entry<?, ?> entry = entries.next();
+                first.put(entry.getKey(), entry.getValue());
+            }
+            shown = first;
+        } else {
+            List<Object> items = new ArrayList<>();
+            if (value instanceof Collection) {
+                Collection<?> collection = (Collection<?>) value;
+                size = collection.size();
+                Iterator<?> iterator = collection.iterator();
+                while (iterator.hasNext() && items.size() < maxItems) {
+                    items.add(iterator.next());
+                }
+            } else {
+                size = Array.getLength(value);
+                for (int i = 0; i < Math.min(size, maxItems); i++) {
+                    items.add(Array.get(value, i));
+                }
+            }
+            shown = items;
+        }
+        String text = String.valueOf(shown);
+        return size > maxItems ? text + " [showing " + maxItems + " of " + size + " items]" : text;
+    }
+}
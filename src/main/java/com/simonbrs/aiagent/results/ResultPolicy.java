@@ -0,0 +1,64 @@
+package com.simonbrs.aiagent.results;
+
+/**
+ * Limits the size of a tool result before it is added to the conversation history, where it
+ * would otherwise be sent with every later request. A limit of zero means it is not enforced.
+ * <p>
+ * Lists, arrays and maps are first compacted to their first {@code maxItems} entries. A result
+ * still longer than {@code maxChars} is truncated with a marker, or, when offloading, kept in a
+ * side store from which the model can page through it with the {@code read_tool_result} tool.
+ */
+public final class ResultPolicy {
+    /**
+     * The policy used when no other policy is configured: results are added in full.
+     */
+    public static final ResultPolicy DEFAULT = new ResultPolicy(0, 0, false);
+
+    private final int maxChars;
+    private final int maxItems;
+    private final boolean offload;
+
+    /**
+     * Creates a new result policy.
+     *
+     * @param maxChars The maximum number of characters added to the history
+     * @param maxItems The maximum number of list, array or map entries included
+     * @param offload Whether results longer than maxChars are stored for paging instead of truncated
+     * @throws IllegalArgumentException if a limit is negative, or offloading is enabled without a character limit
+     */
+    public ResultPolicy(int maxChars, int maxItems, boolean offload) {
+        if (maxChars < 0 || maxItems < 0) {
+            throw new IllegalArgumentException("Result limits cannot be negative");
+        }
+        if (offload && maxChars == 0) {
+            throw new IllegalArgumentException("Offloading requires a character limit");
+        }
+        this.maxChars = maxChars;
+        this.maxItems = maxItems;
+        this.offload = offload;
+    }
+
+    public int getMaxChars() {
+        return maxChars;
+    }
+
+    public int getMaxItems() {
+        return maxItems;
+    }
+
+    public boolean isOffload() {
+        return offload;
+    }
+
+    public ResultPolicy withMaxChars(int maxChars) {
+        return new ResultPolicy(maxChars, maxItems, offload);
+    }
+
+    public ResultPolicy withMaxItems(int maxItems) {
+        return new ResultPolicy(maxChars, maxItems, offload);
+    }
+
+    public ResultPolicy withOffload(boolean offload) {
+        return new ResultPolicy(maxChars, maxItems, offload);
+    }
+}
@@ -0,0 +1,73 @@
+package com.simonbrs.aiagent.results;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps offloaded tool results so the model can read them page by page. Only the most recently
+ * stored results are kept.
+ */
+public class ResultStore {
+    private final int pageChars;
+    private final Map<String, String> results;
+    private long nextHandle;
+
+    /**
+     * @param capacity The number of results kept
+     * @param pageChars The number of characters returned per page
+     */
+    public ResultStore(int capacity, int pageChars) {
+        if (capacity <= 0 || pageChars <= 0) {
+            throw new IllegalArgumentException("Capacity and page size must be positive");
+        }
+        this.pageChars = pageChars;
+        this.results = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Stores a result and returns its handle.
+     */
+    public synchronized String store(String result) {
+        String handle = "result-" + (++nextHandle);
+        results.put(handle, result);
+        return handle;
+    }
+
+    /**
+     * Returns a page of a stored result, followed by a marker if more of it remains.
+     *
+     * @param handle The handle returned by {@link #store(String)}
+     * @param offset The character offset to start reading at
+     * @throws IllegalArgumentException if the handle is unknown or the offset out of range
+     */
+    public String read(String handle, int offset) {
+        String result;
+        synchronized (this) {
+            result = results.get(handle);
+        }
+        if (result == null) {
+            throw new IllegalArgumentException("Unknown or expired result handle: " + handle);
+        }
+        if (offset < 0 || offset > result.length()) {
+            throw new IllegalArgumentException("Offset " + offset + " is outside the result of "
+                + result.length() + " characters");
+        }
+        int end = Math.min(result.length(), offset + pageChars);
+        String page = result.substring(offset, end);
+        if (end < result.length()) {
+            page += "\n[Characters " + offset + "-" + end + " of " + result.length()
+                + ". Call " + ResultLimiter.READ_TOOL + " with handle \"" + handle + "\" and offset " + end
+                + " to read more.]";
+        }
+        return page;
+    }
+
+    public synchronized void clear() {
+        results.clear();
+    }
+}
@@ -0,0 +1,104 @@
+package com.simonbrs.aiagent.routing;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Routes requests between a primary model and a smaller, faster model. Small requests that only
+ * continue after tool results go to the fast model, as do all small requests while the primary
+ * model's 95th percentile latency exceeds the latency threshold, apart from an occasional probe
+ * that keeps the primary model's latency current. The fast model is avoided while its error rate
+ * is too high, also apart from an occasional probe, and a request failing on it is retried on the
+ * primary model.
+ */
+public class AdaptiveModelRouter implements ModelRouter {
+    private static final int DEFAULT_WINDOW = 100;
+    private static final int MIN_SAMPLES = 10;
+    private static final int PROBE_INTERVAL = 20;
+
+    private final String primaryModel;
+    private final String fastModel;
+    private final Map<String, ModelStats> stats = new ConcurrentHashMap<>();
+    private final AtomicLong routed = new AtomicLong();
+    private final AtomicLong shifted = new AtomicLong();
+    private volatile int maxFastTokens = 4000;
+    private volatile double maxErrorRate = 0.2;
+    private volatile Duration latencyThreshold;
+
+    /**
+     * @param primaryModel The model used by default and as fallback, e.g. "gpt-4o"
+     * @param fastModel The smaller model used where it suffices, e.g. "gpt-4o-mini"
+     */
+    public AdaptiveModelRouter(String primaryModel, String fastModel) {
+        this.primaryModel = primaryModel;
+        this.fastModel = fastModel;
+    }
+
+    /**
+     * Sets the largest request, in estimated prompt tokens, sent to the fast model. Defaults to 4000.
+     */
+    public void setMaxFastTokens(int maxFastTokens) {
+        this.maxFastTokens = maxFastTokens;
+    }
+
+    /**
+     * Sets the error rate above which the fast model is not used. Defaults to 0.2.
+     */
+    public void setMaxErrorRate(double maxErrorRate) {
+        this.maxErrorRate = maxErrorRate;
+    }
+
+    /**
+     * Sets the 95th percentile latency of the primary model above which small requests go to the
+     * fast model, or null to route by request type only.
+     */
+    public void setLatencyThreshold(Duration latencyThreshold) {
+        this.latencyThreshold = latencyThreshold;
+    }
+
+    @Override
+    public String route(RouteContext context) {
+        if (context.isStructured() || context.getEstimatedTokens() > maxFastTokens || !isHealthy(fastModel)) {
+            return primaryModel;
+        }
+        if (context.isToolFollowUp()) {
+            return fastModel;
+        }
+        Duration threshold = latencyThreshold;
+        ModelStats primary = stats.get(primaryModel);
+        if (threshold != null && primary != null && primary.getCount() >= MIN_SAMPLES
+                && primary.getLatencyPercentile(95).compareTo(threshold) > 0) {
+            // Without new samples the primary model would be considered slow forever
+            return shifted.incrementAndGet() % PROBE_INTERVAL == 0 ? primaryModel : fastModel;
+        }
+        return primaryModel;
+    }
+
+    @Override
+    public String fallback(String failedModel, RouteContext context) {
+        return failedModel.equals(primaryModel) ? null : primaryModel;
+    }
+
+    @Override
+    public void onResult(String model, Duration latency, boolean success) {
+        getStats(model).record(latency, success);
+    }
+
+    /**
+     * Returns the statistics of recent requests to a model.
+     */
+    public ModelStats getStats(String model) {
+        return stats.computeIfAbsent(model, key -> new ModelStats(DEFAULT_WINDOW));
+    }
+
+    private boolean isHealthy(String model) {
+        ModelStats modelStats = stats.get(model);
+        if (modelStats == null || modelStats.getCount() < MIN_SAMPLES || modelStats.getErrorRate() <= maxErrorRate) {
+            return true;
+        }
+        // An unhealthy model still gets an occasional request, so that it can recover
+        return routed.incrementAndGet() % PROBE_INTERVAL == 0;
+    }
+}
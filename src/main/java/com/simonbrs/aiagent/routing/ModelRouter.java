@@ -0,0 +1,37 @@
+package com.simonbrs.aiagent.routing;
+
+import java.time.Duration;
+
+/**
+ * Chooses the model for each request of the tool loop, for example a {@link AdaptiveModelRouter}.
+ */
+public interface ModelRouter {
+    /**
+     * Chooses the model for a request.
+     *
+     * @param context What is known about the request
+     * @return The model to send the request to
+     */
+    String route(RouteContext context);
+
+    /**
+     * Chooses the model to retry a failed request with.
+     *
+     * @param failedModel The model the request failed on
+     * @param context What is known about the request
+     * @return The model to retry with, or null to fail the request
+     */
+    default String fallback(String failedModel, RouteContext context) {
+        return null;
+    }
+
+    /**
+     * Called when a request to a model has completed.
+     *
+     * @param model The model the request was sent to
+     * @param latency The time until the response was received
+     * @param success Whether the request succeeded
+     */
+    default void onResult(String model, Duration latency, boolean success) {
+    }
+}
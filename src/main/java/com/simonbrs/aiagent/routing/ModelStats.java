@@ -0,0 +1,74 @@
+package com.simonbrs.aiagent.routing;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * Latencies and outcomes of the most recent requests to one model.
+ */
+public class ModelStats {
+    private final long[] latencies;
+    private final boolean[] failures;
+    private int count;
+    private int next;
+
+    /**
+     * @param windowSize The number of recent requests the statistics cover
+     */
+    public ModelStats(int windowSize) {
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("Window size must be positive");
+        }
+        this.latencies = new long[windowSize];
+        this.failures = new boolean[windowSize];
+    }
+
+    public synchronized void record(Duration latency, boolean success) {
+        latencies[next] = latency.toNanos();
+        failures[next] = !success;
+        next = (next + 1) % latencies.length;
+        count = Math.min(count + 1, latencies.length);
+    }
+
+    /**
+     * Returns the number of requests in the window.
+     */
+    public synchronized int getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the fraction of failed requests in the window, or 0 if there were none.
+     */
+    public synchronized double getErrorRate() {
+        if (count == 0) {
+            return 0;
+        }
+        int failed = 0;
+        for (int i = 0; i < count; i++) {
+            if (failures[i]) {
+                failed++;
+            }
+        }
+        return (double) failed / count;
+    }
+
+    /**
+     * Returns the latency percentile of the requests in the window.
+     *
+     * @param percentile The percentile, between 0 and 100
+     * @return The latency, or {@link Duration#ZERO} if there were no requests
+     */
+    public Duration getLatencyPercentile(double percentile) {
+        long[] sorted;
+        synchronized (this) {
+            if (count == 0) {
+                return Duration.ZERO;
+            }
+            sorted = Arrays.copyOf(latencies, count);
+        }
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+        return Duration.ofNanos(sorted[Math.max(0, Math.min(index, sorted.length - 1))]);
+    }
+}
@@ -0,0 +1,46 @@
+package com.simonbrs.aiagent.routing;
+
+/**
+ * What a {@link ModelRouter} knows about the request it routes.
+ */
+public final class RouteContext {
+    private final int estimatedTokens;
+    private final boolean toolFollowUp;
+    private final boolean structured;
+    private final int iteration;
+
+    public RouteContext(int estimatedTokens, boolean toolFollowUp, boolean structured, int iteration) {
+        this.estimatedTokens = estimatedTokens;
+        this.toolFollowUp = toolFollowUp;
+        this.structured = structured;
+        this.iteration = iteration;
+    }
+
+    /**
+     * Returns a rough estimate of the prompt tokens of the request.
+     */
+    public int getEstimatedTokens() {
+        return estimatedTokens;
+    }
+
+    /**
+     * Returns whether the request only asks the model to continue after tool results.
+     */
+    public boolean isToolFollowUp() {
+        return toolFollowUp;
+    }
+
+    /**
+     * Returns whether the request requires a structured response format.
+     */
+    public boolean isStructured() {
+        return structured;
+    }
+
+    /**
+     * Returns the number of model responses already handled for this {@code sendMessage} call.
+     */
+    public int getIteration() {
+        return iteration;
+    }
+}
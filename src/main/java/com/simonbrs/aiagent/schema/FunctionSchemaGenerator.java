@@ -3,14 +3,21 @@ package com.simonbrs.aiagent.schema;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.simonbrs.aiagent.annotation.Param;
+import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.lang.reflect.Parameter;
 import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.RecordComponent;
 import java.lang.reflect.Type;
 import java.util.List;
 import java.util.Collection;
+import java.util.Map;
 
 public class FunctionSchemaGenerator {
+    private static final int MAX_NESTING = 8;
+
     private final ObjectMapper objectMapper;
 
     public FunctionSchemaGenerator(ObjectMapper objectMapper) {
@@ -26,12 +33,16 @@ public class FunctionSchemaGenerator {
         Parameter[] parameters = method.getParameters();
         for (int i = 0; i < parameters.length; i++) {
             Parameter param = parameters[i];
-            String paramName = "arg" + i;
+            String paramName = getParameterName(param, i);
             Class<?> paramType = param.getType();
             Type genericType = param.getParameterizedType();
             
             ObjectNode property = properties.putObject(paramName);
             addTypeInfo(property, paramType, genericType, paramName);
+            Param annotation = param.getAnnotation(Param.class);
+            if (annotation != null && !annotation.description().isEmpty()) {
+                property.put("description", annotation.description());
+            }
             required.add(paramName);
         }
 
@@ -39,6 +50,112 @@ public class FunctionSchemaGenerator {
         return schema;
     }
 
+    /**
+     * Generates a schema for the components of a record, or the non-static fields of a class,
+     * suitable for requesting structured output. Nested records and classes are described as
+     * nested objects; every property is required and no additional properties are allowed.
+     *
+     * @param type The record or class to describe
+     * @return The JSON schema of the type
+     */
+    public ObjectNode generateSchema(Class<?> type) {
+        return generateObjectSchema(type, 0);
+    }
+
+    private ObjectNode generateObjectSchema(Class<?> type, int depth) {
+        if (depth > MAX_NESTING) {
+            throw new IllegalArgumentException("Type nesting too deep for schema generation: " + type.getName());
+        }
+        ObjectNode schema = objectMapper.createObjectNode();
+        schema.put("type", "object");
+        ObjectNode properties = schema.putObject("properties");
+        ArrayNode required = schema.putArray("required");
+
+        if (type.isRecord()) {
+            RecordComponent[] components = type.getRecordComponents();
+            Parameter[] constructorParams = getCanonicalConstructorParameters(type, components);
+            for (int i = 0; i < components.length; i++) {
+                String name = components[i].getName();
+                ObjectNode property = properties.putObject(name);
+                addValueSchema(property, components[i].getType(), components[i].getGenericType(), name, depth);
+                Param annotation = constructorParams == null ? null : constructorParams[i].getAnnotation(Param.class);
+                if (annotation != null && !annotation.description().isEmpty()) {
+                    property.put("description", annotation.description());
+                }
+                required.add(name);
+            }
+        } else {
+            for (Field field : type.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers()) || field.isSynthetic()) {
+                    continue;
+                }
+                ObjectNode property = properties.putObject(field.getName());
+                addValueSchema(property, field.getType(), field.getGenericType(), field.getName(), depth);
+                required.add(field.getName());
+            }
+        }
+
+        schema.put("additionalProperties", false);
+        return schema;
+    }
+
+    private void addValueSchema(ObjectNode property, Class<?> type, Type genericType, String name, int depth) {
+        Class<?> elementType = getElementType(type, genericType);
+        if (elementType != null && !isSimpleType(elementType)) {
+            property.put("type", "array");
+            property.set("items", generateObjectSchema(elementType, depth + 1));
+        } else if (elementType == null && !isSimpleType(type)) {
+            property.setAll(generateObjectSchema(type, depth + 1));
+        } else {
+            addTypeInfo(property, type, genericType, name);
+        }
+    }
+
+    private static Class<?> getElementType(Class<?> type, Type genericType) {
+        if (type.isArray()) {
+            return type.getComponentType();
+        }
+        if ((type == List.class || type == Collection.class || type == Iterable.class)
+                && genericType instanceof ParameterizedType) {
+            Type[] typeArgs = ((ParameterizedType) genericType).getActualTypeArguments();
+            if (typeArgs.length > 0 && typeArgs[0] instanceof Class) {
+                return (Class<?>) typeArgs[0];
+            }
+        }
+        return null;
+    }
+
+    private static boolean isSimpleType(Class<?> type) {
+        return type.isPrimitive() || Number.class.isAssignableFrom(type) || type == Boolean.class
+            || CharSequence.class.isAssignableFrom(type) || type.isEnum() || type == Object.class
+            || Collection.class.isAssignableFrom(type) || Map.class.isAssignableFrom(type);
+    }
+
+    private static Parameter[] getCanonicalConstructorParameters(Class<?> type, RecordComponent[] components) {
+        Class<?>[] types = new Class<?>[components.length];
+        for (int i = 0; i < components.length; i++) {
+            types[i] = components[i].getType();
+        }
+        try {
+            return type.getDeclaredConstructor(types).getParameters();
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the name of a method parameter in the generated schema: the name given by
+     * {@link Param}, the source name if the class was compiled with {@code -parameters}, or
+     * {@code argN} otherwise. The schemas generated by the annotation processor use the same names.
+     */
+    public static String getParameterName(Parameter param, int index) {
+        Param annotation = param.getAnnotation(Param.class);
+        if (annotation != null && !annotation.value().isEmpty()) {
+            return annotation.value();
+        }
+        return param.isNamePresent() ? param.getName() : "arg" + index;
+    }
+
     public ObjectNode generateDefaultSchema(String functionName) {
         ObjectNode schema = objectMapper.createObjectNode();
         schema.put("type", "object");
@@ -0,0 +1,215 @@
+package com.simonbrs.aiagent.schema;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Checks tool call arguments against the JSON schema of a tool before the tool is invoked, so
+ * the model can be told exactly what was wrong instead of the call failing during conversion.
+ * The schema is compiled once into a tree of checks; validating walks the arguments and that
+ * tree together.
+ * <p>
+ * The keywords produced by {@link FunctionSchemaGenerator} are supported: {@code type},
+ * {@code properties}, {@code required}, {@code additionalProperties}, {@code items} and
+ * {@code enum}. Other keywords are ignored. Values are accepted in the lenient forms the argument
+ * conversion understands: numbers may be given as strings, booleans as strings or numbers, and
+ * strings as any other scalar value.
+ */
+public final class SchemaValidator {
+    private static final int MAX_ERRORS = 10;
+
+    private final Node root;
+
+    private SchemaValidator(Node root) {
+        this.root = root;
+    }
+
+    /**
+     * Compiles a schema. A schema with a {@code parameters} object is compiled from that object.
+     *
+     * @param schema The JSON schema of the tool's arguments
+     * @return The compiled validator
+     */
+    public static SchemaValidator compile(JsonNode schema) {
+        JsonNode parameters = schema.path("parameters");
+        return new SchemaValidator(Node.compile(parameters.isObject() ? parameters : schema));
+    }
+
+    /**
+     * Validates tool call arguments as sent by the model.
+     *
+     * @param arguments The JSON arguments; null or blank is treated as an empty object
+     * @param objectMapper The mapper used to parse the arguments
+     * @return The problems found, empty if the arguments are valid
+     */
+    public List<String> validate(String arguments, ObjectMapper objectMapper) {
+        JsonNode value;
+        try {
+            value = arguments == null || arguments.isBlank()
+                ? objectMapper.createObjectNode() : objectMapper.readTree(arguments);
+        } catch (JsonProcessingException e) {
+            return List.of("arguments are not valid JSON: " + e.getOriginalMessage());
+        }
+        return validate(value);
+    }
+
+    /**
+     * Validates parsed tool call arguments.
+     *
+     * @return The problems found, empty if the arguments are valid
+     */
+    public List<String> validate(JsonNode arguments) {
+        List<String> errors = new ArrayList<>();
+        root.validate(arguments, "$", errors);
+        return errors.isEmpty() ? List.of() : Collections.unmodifiableList(errors);
+    }
+
+    private static final class Node {
+        private final String type;
+        private final Map<String, Node> properties;
+        private final List<String> required;
+        private final boolean additionalProperties;
+        private final Node items;
+        private final Set<String> allowed;
+
+        private Node(JsonNode schema) {
+            this.type = schema.path("type").isTextual() ? schema.get("type").textValue() : null;
+            Map<String, Node> compiled = new LinkedHashMap<>();
+            Iterator<Map.Entry<String, JsonNode>> fields = schema.path("properties").fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                compiled.put(field.getKey(), compile(field.getValue()));
+            }
+            this.properties = compiled;
+            List<String> requiredNames = new ArrayList<>();
+            for (JsonNode name : schema.path("required")) {
+                requiredNames.add(name.asText());
+            }
+            this.required = requiredNames;
+            this.additionalProperties = !schema.path("additionalProperties").isBoolean()
+                || schema.get("additionalProperties").booleanValue();
+            this.items = schema.path("items").isObject() ? compile(schema.get("items")) : null;
+            if (schema.path("enum").isArray()) {
+                Set<String> values = new HashSet<>();
+                for (JsonNode value : schema.get("enum")) {
+                    values.add(value.asText());
+                }
+                this.allowed = values;
+            } else {
+                this.allowed = null;
+            }
+        }
+
+        static Node compile(JsonNode schema) {
+            return new Node(schema);
+        }
+
+        void validate(JsonNode value, String path, List<String> errors) {
+            if (errors.size() >= MAX_ERRORS) {
+                return;
+            }
+            if (type != null && !matchesType(value)) {
+                errors.add(path + ": expected " + type + " but got " + describe(value));
+                return;
+            }
+            if (allowed != null && !allowed.contains(value.asText())) {
+                errors.add(path + ": " + describe(value) + " is not one of " + allowed);
+                return;
+            }
+            if (value.isObject()) {
+                for (String name : required) {
+                    if (!value.has(name) || value.get(name).isNull()) {
+                        errors.add(path + ": missing required property '" + name + "'");
+                    }
+                }
+                Iterator<Map.Entry<String, JsonNode>> fields = value.fields();
+                while (fields.hasNext()) {
+                    Map.Entry<String, JsonNode> field = fields.next();
+                    Node property = properties.get(field.getKey());
+                    if (property != null) {
+                        if (!field.getValue().isNull()) {
+                            property.validate(field.getValue(), path + "." + field.getKey(), errors);
+                        }
+                    } else if (!additionalProperties) {
+                        errors.add(path + ": unknown property '" + field.getKey() + "', expected one of "
+                            + properties.keySet());
+                    }
+                }
+            } else if (value.isArray() && items != null) {
+                for (int i = 0; i < value.size(); i++) {
+                    items.validate(value.get(i), path + "[" + i + "]", errors);
+                }
+            }
+        }
+
+        private boolean matchesType(JsonNode value) {
+            switch (type) {
+                case "object":
+                    return value.isObject();
+                case "array":
+                    return value.isArray();
+                case "string":
+                    return value.isValueNode() && !value.isNull();
+                case "number":
+                    return value.isNumber() || value.isTextual() && isNumber(value.textValue().trim());
+                case "integer":
+                    return value.isIntegralNumber() || value.isTextual() && isInteger(value.textValue().trim());
+                case "boolean":
+                    return value.isBoolean() || value.isNumber() || value.isTextual() && isBoolean(value.textValue());
+                case "null":
+                    return value.isNull();
+                default:
+                    return true;
+            }
+        }
+
+        private static boolean isNumber(String text) {
+            try {
+                Double.parseDouble(text);
+                return !text.isEmpty();
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+
+        private static boolean isInteger(String text) {
+            try {
+                Long.parseLong(text);
+                return true;
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+
+        private static boolean isBoolean(String text) {
+            switch (text.trim().toLowerCase(Locale.ROOT)) {
+                case "true": case "false": case "1": case "0": case "yes": case "no":
+                    return true;
+                default:
+                    return false;
+            }
+        }
+
+        private static String describe(JsonNode value) {
+            if (value.isTextual()) {
+                String text = value.textValue();
+                return "string \"" + (text.length() > 40 ? text.substring(0, 40) + "..." : text) + "\"";
+            }
+            if (value.isContainerNode()) {
+                return value.isArray() ? "array" : "object";
+            }
+            return value.getNodeType().name().toLowerCase(Locale.ROOT) + " " + value;
+        }
+    }
+}
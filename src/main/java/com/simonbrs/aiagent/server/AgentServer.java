@@ -0,0 +1,439 @@
+package com.simonbrs.aiagent.server;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.simonbrs.aiagent.ExecutionBudget.BudgetExceededException;
+import com.simonbrs.aiagent.OpenAIAgent;
+import com.simonbrs.aiagent.resilience.AsyncLimiter;
+import com.simonbrs.aiagent.streaming.StreamListener;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Serves agents over HTTP in the chat completions format, so clients that speak the OpenAI API
+ * can use agents, and their tools, running in this process. Each agent is served under a model
+ * name; {@code GET /v1/models} lists them and {@code POST /v1/chat/completions} answers the last
+ * user message of a request with the agent of the requested model, streaming the response as
+ * server-sent events if the request asks for it.
+ * <p>
+ * Requests without a {@value #SESSION_HEADER} header get a fresh agent, whose history is seeded
+ * with the system, user and assistant messages before the last user message, so clients sending
+ * the whole conversation with every request work as with the OpenAI API. Requests carrying the
+ * header are answered by the same agent instance for as long as the session is kept, one request
+ * at a time; the agent keeps the conversation server-side, so only the first request of a session
+ * seeds its history and later requests need to carry just the new user message.
+ * <p>
+ * Admission is bounded: requests beyond the concurrency limit wait in a bounded queue, and
+ * requests beyond the queue are rejected with {@code 429 Too Many Requests}. Requests of a
+ * session are admitted one at a time, when the session's previous request is done, so a busy
+ * session does not hold slots other clients could use; a session rejects requests beyond the
+ * queue limit waiting for it as well.
+ * <p>
+ * Requests are handled on the given executor; on Java 21 and later, an executor creating a
+ * virtual thread per task suits the blocking HTTP exchange well.
+ */
+public class AgentServer implements AutoCloseable {
+    /**
+     * The request header identifying a session.
+     */
+    public static final String SESSION_HEADER = "X-Session-Id";
+
+    private static final Logger logger = LoggerFactory.getLogger(AgentServer.class);
+    private static final String COMPLETIONS_PATH = "/v1/chat/completions";
+    private static final String MODELS_PATH = "/v1/models";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpServer server;
+    private final AsyncLimiter admission;
+    private final int maxQueued;
+    private final Map<String, Supplier<OpenAIAgent>> models = new ConcurrentHashMap<>();
+    private final Map<String, Session> sessions;
+
+    /**
+     * Creates a server keeping up to 1024 sessions.
+     *
+     * @see #AgentServer(InetSocketAddress, Executor, int, int, int)
+     */
+    public AgentServer(InetSocketAddress address, Executor executor, int maxConcurrent, int maxQueued)
+            throws IOException {
+        this(address, executor, maxConcurrent, maxQueued, 1024);
+    }
+
+    /**
+     * Creates a server. Call {@link #start()} to accept requests.
+     *
+     * @param address The address to bind to, port 0 picks a free port
+     * @param executor The executor handling requests
+     * @param maxConcurrent The maximum number of requests answered at once
+     * @param maxQueued The maximum number of requests waiting before new requests are rejected, both
+     *                  for admission and for each session
+     * @param maxSessions The maximum number of sessions kept; the least recently used is dropped beyond that
+     * @throws IOException if the address cannot be bound
+     */
+    public AgentServer(InetSocketAddress address, Executor executor, int maxConcurrent, int maxQueued,
+                       int maxSessions) throws IOException {
+        this.admission = new AsyncLimiter(maxConcurrent, maxQueued, executor);
+        this.maxQueued = maxQueued;
+        this.sessions = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Session> eldest) {
+                return size() > maxSessions;
+            }
+        };
+        this.server = HttpServer.create(address, 0);
+        this.server.setExecutor(executor);
+        this.server.createContext(COMPLETIONS_PATH, this::handleCompletion);
+        this.server.createContext(MODELS_PATH, this::handleModels);
+    }
+
+    /**
+     * Serves agents under a model name. The factory is called for every new session, and for
+     * every request without a session; it may share a transport between agents to pool connections.
+     *
+     * @param model The model name clients request
+     * @param agentFactory Creates a configured agent with its tools registered
+     */
+    public void addModel(String model, Supplier<OpenAIAgent> agentFactory) {
+        models.put(model, agentFactory);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Returns the address the server is bound to.
+     */
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    /**
+     * Returns the number of sessions currently kept.
+     */
+    public int getSessionCount() {
+        synchronized (sessions) {
+            return sessions.size();
+        }
+    }
+
+    /**
+     * Stops the server, closing open exchanges.
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private void handleModels(HttpExchange exchange) throws IOException {
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            sendError(exchange, 405, "invalid_request_error", "Method not allowed");
+            return;
+        }
+        ObjectNode response = objectMapper.createObjectNode();
+        response.put("object", "list");
+        ArrayNode data = response.putArray("data");
+        for (String model : models.keySet()) {
+            data.addObject().put("id", model).put("object", "model").put("owned_by", "aiagent");
+        }
+        sendJson(exchange, 200, response);
+    }
+
+    private void handleCompletion(HttpExchange exchange) throws IOException {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            sendError(exchange, 405, "invalid_request_error", "Method not allowed");
+            return;
+        }
+        JsonNode request;
+        try (InputStream body = exchange.getRequestBody()) {
+            request = objectMapper.readTree(body);
+        } catch (IOException e) {
+            sendError(exchange, 400, "invalid_request_error", "Malformed JSON body");
+            return;
+        }
+        String model = request.path("model").asText();
+        Supplier<OpenAIAgent> factory = models.get(model);
+        if (factory == null) {
+            sendError(exchange, 404, "invalid_request_error", "The model '" + model + "' does not exist");
+            return;
+        }
+        JsonNode messages = request.path("messages");
+        int last = lastUserMessage(messages);
+        if (last < 0) {
+            sendError(exchange, 400, "invalid_request_error", "The request contains no user message");
+            return;
+        }
+
+        boolean stream = request.path("stream").asBoolean(false);
+        String sessionId = exchange.getRequestHeaders().getFirst(SESSION_HEADER);
+        CompletionWriter writer = new CompletionWriter(exchange, model, stream);
+        CompletableFuture<String> response;
+        try {
+            response = session(model, sessionId, factory).send(messages, last, writer, admission);
+        } catch (RuntimeException e) {
+            response = CompletableFuture.failedFuture(e);
+        }
+        response.whenComplete((content, error) -> {
+            try {
+                if (error != null) {
+                    writer.fail(unwrap(error));
+                } else {
+                    writer.complete(content);
+                }
+            } catch (IOException e) {
+                logger.debug("Could not write response", e);
+            } finally {
+                exchange.close();
+            }
+        });
+    }
+
+    private Session session(String model, String sessionId, Supplier<OpenAIAgent> factory) {
+        if (sessionId == null || sessionId.isEmpty()) {
+            return new Session(factory.get(), maxQueued);
+        }
+        synchronized (sessions) {
+            return sessions.computeIfAbsent(model + '\n' + sessionId, key -> new Session(factory.get(), maxQueued));
+        }
+    }
+
+    /**
+     * Returns the index of the last user message, or -1 if there is none.
+     */
+    private static int lastUserMessage(JsonNode messages) {
+        for (int i = messages.size() - 1; i >= 0; i--) {
+            if ("user".equals(messages.get(i).path("role").asText())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the text of a message, joining the text parts of multi-part content.
+     */
+    private static String text(JsonNode message) {
+        JsonNode content = message.path("content");
+        if (content.isTextual()) {
+            return content.textValue();
+        }
+        StringBuilder text = new StringBuilder();
+        for (JsonNode part : content) {
+            if ("text".equals(part.path("type").asText())) {
+                text.append(part.path("text").asText());
+            }
+        }
+        return text.toString();
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        while (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+
+    private void sendJson(HttpExchange exchange, int status, JsonNode body) throws IOException {
+        byte[] bytes = objectMapper.writeValueAsBytes(body);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private void sendError(HttpExchange exchange, int status, String type, String message) throws IOException {
+        sendJson(exchange, status, createError(type, message));
+    }
+
+    private ObjectNode createError(String type, String message) {
+        ObjectNode body = objectMapper.createObjectNode();
+        body.putObject("error").put("message", message).put("type", type);
+        return body;
+    }
+
+    /**
+     * An agent answering the requests of one session in order. A request is submitted for
+     * admission only once the previous request of the session is done.
+     */
+    private static final class Session {
+        private final OpenAIAgent agent;
+        private final int maxQueued;
+        private CompletableFuture<?> tail = CompletableFuture.completedFuture(null);
+        private int pending;
+        private boolean seeded;
+
+        Session(OpenAIAgent agent, int maxQueued) {
+            this.agent = agent;
+            this.maxQueued = maxQueued;
+        }
+
+        synchronized CompletableFuture<String> send(JsonNode messages, int last, CompletionWriter writer,
+                                                    AsyncLimiter admission) {
+            // One request may run while up to maxQueued wait for their turn
+            if (pending > maxQueued) {
+                return CompletableFuture.failedFuture(new RejectedExecutionException("Too many requests waiting for the session"));
+            }
+            pending++;
+            CompletableFuture<String> response = tail.handle((ignored, error) -> null)
+                .thenCompose(ignored -> admission.submit(() -> answer(messages, last, writer)));
+            response.whenComplete((content, error) -> {
+                synchronized (this) {
+                    pending--;
+                }
+            });
+            tail = response;
+            return response;
+        }
+
+        // Runs one at a time, ordered by the tail of the session
+        private CompletableFuture<String> answer(JsonNode messages, int last, CompletionWriter writer) {
+            if (!seeded) {
+                seeded = true;
+                for (int i = 0; i < last; i++) {
+                    String role = messages.get(i).path("role").asText();
+                    if ("system".equals(role) || "developer".equals(role)) {
+                        agent.addConversationMessage("system", text(messages.get(i)));
+                    } else if ("user".equals(role) || "assistant".equals(role)) {
+                        agent.addConversationMessage(role, text(messages.get(i)));
+                    }
+                }
+            }
+            String message = text(messages.get(last));
+            return writer.stream ? agent.sendMessage(message, Map.of(), writer) : agent.sendMessage(message);
+        }
+    }
+
+    /**
+     * Writes a completion, either as one JSON response or as server-sent events.
+     */
+    private final class CompletionWriter implements StreamListener {
+        private final HttpExchange exchange;
+        private final String model;
+        private final boolean stream;
+        private final String id = "chatcmpl-" + UUID.randomUUID();
+        private final long created = System.currentTimeMillis() / 1000;
+        private OutputStream events;
+        private boolean streamedContent;
+        private boolean disconnected;
+
+        CompletionWriter(HttpExchange exchange, String model, boolean stream) {
+            this.exchange = exchange;
+            this.model = model;
+            this.stream = stream;
+        }
+
+        @Override
+        public synchronized void onContentDelta(String delta) {
+            if (disconnected) {
+                return;
+            }
+            try {
+                writeChunk(delta, null);
+                streamedContent = true;
+            } catch (IOException e) {
+                // The agent still finishes, so a session's history stays consistent
+                logger.debug("Client disconnected from stream", e);
+                disconnected = true;
+            }
+        }
+
+        synchronized void complete(String content) throws IOException {
+            if (!stream) {
+                ObjectNode response = createCompletion("chat.completion");
+                ObjectNode choice = response.putArray("choices").addObject();
+                choice.put("index", 0);
+                choice.putObject("message").put("role", "assistant").put("content", content);
+                choice.put("finish_reason", "stop");
+                sendJson(exchange, 200, response);
+                return;
+            }
+            if (disconnected) {
+                return;
+            }
+            if (!streamedContent && content != null) {
+                // Cached answers arrive without being streamed
+                writeChunk(content, null);
+            }
+            writeChunk(null, "stop");
+            writeEvent("[DONE]");
+        }
+
+        synchronized void fail(Throwable error) throws IOException {
+            int status;
+            String type;
+            if (error instanceof RejectedExecutionException) {
+                status = 429;
+                type = "rate_limit_exceeded";
+                exchange.getResponseHeaders().set("Retry-After", "1");
+            } else if (error instanceof BudgetExceededException || error instanceof CancellationException) {
+                status = 504;
+                type = "timeout";
+            } else {
+                status = 502;
+                type = "api_error";
+            }
+            String message = error.getMessage() != null ? error.getMessage() : error.getClass().getSimpleName();
+            if (events == null) {
+                sendError(exchange, status, type, message);
+            } else {
+                writeEvent(objectMapper.writeValueAsString(createError(type, message)));
+            }
+        }
+
+        private void writeChunk(String content, String finishReason) throws IOException {
+            ObjectNode chunk = createCompletion("chat.completion.chunk");
+            ObjectNode choice = chunk.putArray("choices").addObject();
+            choice.put("index", 0);
+            ObjectNode delta = choice.putObject("delta");
+            if (events == null) {
+                delta.put("role", "assistant");
+            }
+            if (content != null) {
+                delta.put("content", content);
+            }
+            choice.put("finish_reason", finishReason);
+            writeEvent(objectMapper.writeValueAsString(chunk));
+        }
+
+        private void writeEvent(String data) throws IOException {
+            if (events == null) {
+                exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+                exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+                exchange.sendResponseHeaders(200, 0);
+                events = exchange.getResponseBody();
+            }
+            events.write(("data: " + data + "\n\n").getBytes(StandardCharsets.UTF_8));
+            events.flush();
+        }
+
+        private ObjectNode createCompletion(String object) {
+            ObjectNode completion = objectMapper.createObjectNode();
+            completion.put("id", id);
+            completion.put("object", object);
+            completion.put("created", created);
+            completion.put("model", model);
+            return completion;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.simonbrs.aiagent.streaming;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Flow;
+
+/**
+ * Consumes the server-sent event lines of a streamed chat completion and assembles them
+ * into a response in the format of a non-streamed chat completion, so that the tool loop
+ * can handle streamed and non-streamed responses alike.
+ */
+public class ChatCompletionStreamAssembler implements Flow.Subscriber<String> {
+    private static final String DATA_PREFIX = "data:";
+    private static final String DONE = "[DONE]";
+
+    private final ObjectMapper objectMapper;
+    private final StreamListener listener;
+    private final StringBuilder rawBody = new StringBuilder();
+    private final StringBuilder content = new StringBuilder();
+    private final List<ToolCallBuilder> toolCalls = new ArrayList<>();
+    private int completedToolCalls;
+    private boolean hasContent;
+    private JsonNode usage;
+    private String finishReason;
+    private IllegalStateException failure;
+
+    public ChatCompletionStreamAssembler(ObjectMapper objectMapper, StreamListener listener) {
+        this.objectMapper = objectMapper;
+        this.listener = listener;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        subscription.request(Long.MAX_VALUE);
+    }
+
+    @Override
+    public void onNext(String line) {
+        rawBody.append(line).append('\n');
+        if (failure != null || !line.startsWith(DATA_PREFIX)) {
+            return;
+        }
+        String data = line.substring(DATA_PREFIX.length()).trim();
+        if (data.isEmpty() || DONE.equals(data)) {
+            return;
+        }
+
+        JsonNode chunk;
+        try {
+            chunk = objectMapper.readTree(data);
+        } catch (IOException e) {
+            failure = new IllegalStateException("Malformed stream chunk: " + data, e);
+            return;
+        }
+        if (chunk.hasNonNull("usage")) {
+            usage = chunk.get("usage");
+        }
+
+        JsonNode choice = chunk.path("choices").path(0);
+        JsonNode delta = choice.path("delta");
+        if (delta.hasNonNull("content")) {
+            String text = delta.get("content").asText();
+            hasContent = true;
+            content.append(text);
+            listener.onContentDelta(text);
+        }
+        for (JsonNode toolCallDelta : delta.path("tool_calls")) {
+            int index = toolCallDelta.path("index").asInt(toolCalls.size());
+            // Tool calls are streamed one after another, so a new one completes the previous ones
+            completeToolCalls(index);
+            while (toolCalls.size() <= index) {
+                toolCalls.add(new ToolCallBuilder());
+            }
+            toolCalls.get(index).append(toolCallDelta);
+        }
+        if (choice.hasNonNull("finish_reason")) {
+            finishReason = choice.get("finish_reason").asText();
+            completeToolCalls(toolCalls.size());
+        }
+    }
+
+    private void completeToolCalls(int upTo) {
+        while (completedToolCalls < Math.min(upTo, toolCalls.size())) {
+            listener.onToolCallComplete(toolCalls.get(completedToolCalls++).build(objectMapper));
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+    }
+
+    @Override
+    public void onComplete() {
+        if (failure == null && (hasContent || !toolCalls.isEmpty() || finishReason != null)) {
+            completeToolCalls(toolCalls.size());
+            listener.onComplete(getResponse());
+        }
+    }
+
+    /**
+     * Returns the assembled response in the format of a non-streamed chat completion.
+     *
+     * @throws IllegalStateException if the stream contained a malformed chunk
+     */
+    public ObjectNode getResponse() {
+        if (failure != null) {
+            throw failure;
+        }
+        ObjectNode response = objectMapper.createObjectNode();
+        ObjectNode choice = response.putArray("choices").addObject();
+        choice.put("finish_reason", finishReason);
+        ObjectNode message = choice.putObject("message");
+        message.put("role", "assistant");
+        if (hasContent) {
+            message.put("content", content.toString());
+        } else {
+            message.putNull("content");
+        }
+        if (!toolCalls.isEmpty()) {
+            ArrayNode calls = message.putArray("tool_calls");
+            for (ToolCallBuilder toolCall : toolCalls) {
+                calls.add(toolCall.build(objectMapper));
+            }
+        }
+        if (usage != null) {
+            response.set("usage", usage);
+        }
+        return response;
+    }
+
+    /**
+     * Returns the unparsed body, used for error responses which are not streamed.
+     */
+    public String getRawBody() {
+        return rawBody.toString();
+    }
+
+    // Accumulates the fragments of one tool call spread over several chunks
+    private static class ToolCallBuilder {
+        private String id;
+        private String type = "function";
+        private String name;
+        private final StringBuilder arguments = new StringBuilder();
+
+        void append(JsonNode delta) {
+            if (delta.hasNonNull("id")) {
+                id = delta.get("id").asText();
+            }
+            if (delta.hasNonNull("type")) {
+                type = delta.get("type").asText();
+            }
+            JsonNode function = delta.path("function");
+            if (function.hasNonNull("name")) {
+                name = function.get("name").asText();
+            }
+            if (function.hasNonNull("arguments")) {
+                arguments.append(function.get("arguments").asText());
+            }
+        }
+
+        ObjectNode build(ObjectMapper objectMapper) {
+            ObjectNode toolCall = objectMapper.createObjectNode();
+            toolCall.put("id", id);
+            toolCall.put("type", type);
+            ObjectNode function = toolCall.putObject("function");
+            function.put("name", name);
+            function.put("arguments", arguments.toString());
+            return toolCall;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.simonbrs.aiagent.streaming;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Receives the parts of a streamed chat completion as they arrive.
+ */
+public interface StreamListener {
+    /**
+     * Called for every piece of assistant content in the stream.
+     *
+     * @param delta The content received since the previous call
+     */
+    default void onContentDelta(String delta) {
+    }
+
+    /**
+     * Called as soon as the name and arguments of a tool call are complete, which may be well
+     * before the rest of the response has arrived.
+     *
+     * @param toolCall The tool call, in the format of a non-streamed chat completion
+     */
+    default void onToolCallComplete(JsonNode toolCall) {
+    }
+
+    /**
+     * Called when a streamed response is complete.
+     *
+     * @param response The assembled response, in the format of a non-streamed chat completion
+     */
+    default void onComplete(JsonNode response) {
+    }
+}
@@ -0,0 +1,17 @@
+package com.simonbrs.aiagent.structured;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Receives the top-level fields of a structured response as soon as they have been streamed in full.
+ */
+@FunctionalInterface
+public interface PartialResultListener {
+    /**
+     * Called when a top-level field of the response object is complete.
+     *
+     * @param name The name of the field
+     * @param value The decoded value of the field
+     */
+    void onField(String name, JsonNode value);
+}
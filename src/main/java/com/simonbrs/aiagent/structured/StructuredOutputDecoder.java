@@ -0,0 +1,155 @@
+package com.simonbrs.aiagent.structured;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.simonbrs.aiagent.streaming.StreamListener;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Decodes a structured JSON response while it is streamed in. Content deltas are fed to a
+ * non-blocking parser; completed top-level fields are reported to a {@link PartialResultListener},
+ * and the parsed tokens are kept so that the final object can be bound without parsing the text again.
+ */
+public class StructuredOutputDecoder implements StreamListener {
+    private final ObjectMapper objectMapper;
+    private final PartialResultListener listener;
+    private JsonParser parser;
+    private TokenBuffer document;
+    private TokenBuffer fieldValue;
+    private String fieldName;
+    private int depth;
+    private boolean complete;
+
+    public StructuredOutputDecoder(ObjectMapper objectMapper, PartialResultListener listener) {
+        this.objectMapper = objectMapper;
+        this.listener = listener;
+        reset();
+    }
+
+    @Override
+    public void onContentDelta(String delta) {
+        if (complete) {
+            return;
+        }
+        try {
+            byte[] bytes = delta.getBytes(StandardCharsets.UTF_8);
+            ((ByteArrayFeeder) parser.getNonBlockingInputFeeder()).feedInput(bytes, 0, bytes.length);
+            JsonToken token;
+            while (!complete && (token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+                document.copyCurrentEvent(parser);
+                handleToken(token);
+            }
+        } catch (IOException e) {
+            // Leave malformed output to the final decode, which reports it
+            complete = true;
+            document = null;
+        }
+    }
+
+    @Override
+    public void onComplete(JsonNode response) {
+        JsonNode toolCalls = response.path("choices").path(0).path("message").path("tool_calls");
+        if (toolCalls.isArray() && toolCalls.size() > 0) {
+            // Content of a tool call turn is not the structured answer
+            reset();
+        }
+    }
+
+    /**
+     * Returns whether a complete JSON document has been streamed in.
+     */
+    public boolean isComplete() {
+        return complete && document != null;
+    }
+
+    /**
+     * Binds the streamed document to the given type.
+     *
+     * @throws IllegalStateException if no complete document has been streamed in
+     */
+    public <T> T decode(Class<T> type) throws IOException {
+        if (!isComplete()) {
+            throw new IllegalStateException("No complete document has been streamed");
+        }
+        try (JsonParser tokens = document.asParser(objectMapper)) {
+            return objectMapper.readerFor(type).readValue(tokens);
+        }
+    }
+
+    private void handleToken(JsonToken token) throws IOException {
+        switch (token) {
+            case START_OBJECT:
+            case START_ARRAY:
+                depth++;
+                if (depth > 1) {
+                    captureFieldToken();
+                }
+                break;
+            case END_OBJECT:
+            case END_ARRAY:
+                if (depth > 1) {
+                    captureFieldToken();
+                }
+                depth--;
+                if (depth == 1) {
+                    emitField();
+                } else if (depth == 0) {
+                    complete = true;
+                }
+                break;
+            case FIELD_NAME:
+                if (depth == 1) {
+                    fieldName = parser.getCurrentName();
+                    fieldValue = new TokenBuffer(objectMapper, false);
+                } else {
+                    captureFieldToken();
+                }
+                break;
+            default:
+                captureFieldToken();
+                if (depth == 1) {
+                    emitField();
+                } else if (depth == 0) {
+                    complete = true;
+                }
+        }
+    }
+
+    private void captureFieldToken() throws IOException {
+        if (fieldValue != null) {
+            fieldValue.copyCurrentEvent(parser);
+        }
+    }
+
+    private void emitField() throws IOException {
+        if (fieldValue == null) {
+            return;
+        }
+        try (JsonParser tokens = fieldValue.asParser(objectMapper)) {
+            JsonNode value = objectMapper.readTree(tokens);
+            listener.onField(fieldName, value);
+        }
+        fieldValue = null;
+        fieldName = null;
+    }
+
+    private void reset() {
+        try {
+            parser = objectMapper.getFactory().createNonBlockingByteArrayParser();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        document = new TokenBuffer(objectMapper, false);
+        fieldValue = null;
+        fieldName = null;
+        depth = 0;
+        complete = false;
+    }
+}
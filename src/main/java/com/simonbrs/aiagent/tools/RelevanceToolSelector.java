@@ -0,0 +1,159 @@
+package com.simonbrs.aiagent.tools;
+
+import java.util.*;
+
+/**
+ * Selects the top-k tools whose names and descriptions best match the user message.
+ * Tools are scored with BM25 over a local index of their name and description terms.
+ * If no tool matches any term of the message, as for "What is 2+2?", the first top-k candidates
+ * in name order are selected, so the request still gets tools without sending a large registry.
+ * Tools given as always selected are added to the selection whenever they are candidates.
+ * The index is rebuilt only when the set of candidate tools changes, so callers
+ * should pass the same unmodified map for as long as their tools do not change.
+ */
+public class RelevanceToolSelector implements ToolSelector {
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private final int topK;
+    private final Set<String> alwaysSelected;
+    private volatile Index index;
+
+    /**
+     * Creates a selector exposing at most {@code topK} matching tools per request.
+     *
+     * @param topK The maximum number of tools to select
+     * @throws IllegalArgumentException if topK is not positive
+     */
+    public RelevanceToolSelector(int topK) {
+        this(topK, Set.of());
+    }
+
+    /**
+     * Creates a selector exposing at most {@code topK} matching tools per request, in addition to
+     * the given tools, which are selected whenever they are candidates.
+     *
+     * @param topK The maximum number of matching tools to select
+     * @param alwaysSelected The names of the tools to select regardless of the message
+     * @throws IllegalArgumentException if topK is not positive
+     */
+    public RelevanceToolSelector(int topK, Collection<String> alwaysSelected) {
+        if (topK <= 0) {
+            throw new IllegalArgumentException("topK must be positive");
+        }
+        this.topK = topK;
+        this.alwaysSelected = new LinkedHashSet<>(alwaysSelected);
+    }
+
+    @Override
+    public Set<String> select(String userMessage, Map<String, String> candidates) {
+        Index current = index;
+        if (current == null || (current.source != candidates && !current.source.equals(candidates))) {
+            current = new Index(candidates);
+            index = current;
+        }
+
+        Map<String, Double> scores = new HashMap<>();
+        for (String term : new HashSet<>(tokenize(userMessage))) {
+            Double idf = current.idf.get(term);
+            if (idf == null) {
+                continue;
+            }
+            for (Map.Entry<String, Map<String, Integer>> entry : current.termFrequencies.entrySet()) {
+                Integer tf = entry.getValue().get(term);
+                if (tf != null) {
+                    double length = current.lengths.get(entry.getKey());
+                    double score = idf * tf * (K1 + 1) / (tf + K1 * (1 - B + B * length / current.averageLength));
+                    scores.merge(entry.getKey(), score, Double::sum);
+                }
+            }
+        }
+
+        Set<String> selected = new LinkedHashSet<>();
+        if (scores.isEmpty()) {
+            for (String name : new TreeSet<>(candidates.keySet())) {
+                if (selected.size() == topK) {
+                    break;
+                }
+                selected.add(name);
+            }
+        } else {
+            List<Map.Entry<String, Double>> ranked = new ArrayList<>(scores.entrySet());
+            ranked.sort(Map.Entry.<String, Double>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()));
+            for (int i = 0; i < ranked.size() && i < topK; i++) {
+                selected.add(ranked.get(i).getKey());
+            }
+        }
+        for (String name : alwaysSelected) {
+            if (candidates.containsKey(name)) {
+                selected.add(name);
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Splits text into lowercase terms, breaking camelCase identifiers and
+     * stripping common English suffixes so that "added" matches "add".
+     */
+    static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null) {
+            return terms;
+        }
+        String separated = text.replaceAll("([a-z0-9])([A-Z])", "$1 $2");
+        for (String word : separated.toLowerCase(Locale.ROOT).split("[^a-z0-9]+")) {
+            if (word.length() > 1) {
+                terms.add(stem(word));
+            }
+        }
+        return terms;
+    }
+
+    private static String stem(String word) {
+        if (word.length() > 4 && word.endsWith("ing")) {
+            return word.substring(0, word.length() - 3);
+        }
+        if (word.length() > 3 && word.endsWith("ed")) {
+            return word.substring(0, word.length() - 2);
+        }
+        if (word.length() > 3 && word.endsWith("s") && !word.endsWith("ss")) {
+            return word.substring(0, word.length() - 1);
+        }
+        return word;
+    }
+
+    private static class Index {
+        private final Map<String, String> source;
+        private final Map<String, Map<String, Integer>> termFrequencies = new HashMap<>();
+        private final Map<String, Integer> lengths = new HashMap<>();
+        private final Map<String, Double> idf = new HashMap<>();
+        private final double averageLength;
+
+        Index(Map<String, String> candidates) {
+            this.source = candidates;
+            Map<String, Integer> documentFrequencies = new HashMap<>();
+            long totalLength = 0;
+            for (Map.Entry<String, String> candidate : source.entrySet()) {
+                List<String> terms = tokenize(candidate.getKey());
+                terms.addAll(tokenize(candidate.getValue()));
+                Map<String, Integer> frequencies = new HashMap<>();
+                for (String term : terms) {
+                    frequencies.merge(term, 1, Integer::sum);
+                }
+                for (String term : frequencies.keySet()) {
+                    documentFrequencies.merge(term, 1, Integer::sum);
+                }
+                termFrequencies.put(candidate.getKey(), frequencies);
+                lengths.put(candidate.getKey(), terms.size());
+                totalLength += terms.size();
+            }
+            int documents = source.size();
+            for (Map.Entry<String, Integer> entry : documentFrequencies.entrySet()) {
+                int df = entry.getValue();
+                idf.put(entry.getKey(), Math.log(1 + (documents - df + 0.5) / (df + 0.5)));
+            }
+            this.averageLength = documents == 0 ? 1 : Math.max(1, (double) totalLength / documents);
+        }
+    }
+}
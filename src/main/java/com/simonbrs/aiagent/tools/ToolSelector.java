@@ -0,0 +1,19 @@
+package com.simonbrs.aiagent.tools;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Chooses which registered tools are sent to the model for a request.
+ */
+@FunctionalInterface
+public interface ToolSelector {
+    /**
+     * Selects the tools to expose for the given user message.
+     *
+     * @param userMessage The message the user sent
+     * @param candidates The available tools, mapping tool names to their descriptions
+     * @return The names of the tools to expose; an empty set sends the request without tools
+     */
+    Set<String> select(String userMessage, Map<String, String> candidates);
+}
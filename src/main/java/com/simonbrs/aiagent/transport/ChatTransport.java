@@ -0,0 +1,62 @@
+package com.simonbrs.aiagent.transport;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+
+/**
+ * Sends chat completion requests to the API. The agent uses an {@link HttpChatTransport} by
+ * default; a {@link RecordingTransport} and a {@link ReplayTransport} allow runs to be captured
+ * and reproduced offline.
+ * <p>
+ * Cancelling a returned future must cancel the underlying exchange. Transports that derive the
+ * returned future from another one, or pass requests on to another transport, forward the
+ * cancellation with {@link #forwardCancellation(CompletableFuture, CompletableFuture)}.
+ * <p>
+ * Implementations must not keep a reference to the body array after the returned future
+ * completes normally or exceptionally, since the caller reuses it for later requests. After a
+ * cancellation the caller does not reuse the array, as the exchange may still be reading it.
+ */
+public interface ChatTransport {
+    /**
+     * Sends a request and returns the whole response.
+     *
+     * @param body The buffer holding the JSON request body
+     * @param length The number of valid bytes in the buffer
+     * @return A future completing with the response
+     */
+    CompletableFuture<TransportResponse> send(byte[] body, int length);
+
+    /**
+     * Sends a streamed request, passing the lines of the response to the subscriber as they arrive.
+     *
+     * @param body The buffer holding the JSON request body
+     * @param length The number of valid bytes in the buffer
+     * @param lines The subscriber receiving the response line by line
+     * @return A future completing with the HTTP status code once the response is complete
+     */
+    CompletableFuture<Integer> stream(byte[] body, int length, Flow.Subscriber<String> lines);
+
+    /**
+     * Prepares the transport for its first request, for example by opening a connection.
+     */
+    default CompletableFuture<Void> connect() {
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Cancels an exchange when the future derived from it is cancelled, since cancelling a
+     * dependent future does not cancel the future it depends on.
+     *
+     * @param result The future returned to the caller
+     * @param exchange The future of the underlying exchange
+     * @return The result future
+     */
+    static <T> CompletableFuture<T> forwardCancellation(CompletableFuture<T> result, CompletableFuture<?> exchange) {
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) {
+                exchange.cancel(true);
+            }
+        });
+        return result;
+    }
+}
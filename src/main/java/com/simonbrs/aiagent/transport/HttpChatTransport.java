@@ -0,0 +1,71 @@
+package com.simonbrs.aiagent.transport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+
+/**
+ * Sends requests to the OpenAI API over HTTP.
+ */
+public class HttpChatTransport implements ChatTransport {
+    private static final Logger logger = LoggerFactory.getLogger(HttpChatTransport.class);
+
+    private final HttpClient httpClient;
+    private final URI completionsUri;
+    private final URI modelsUri;
+    private final String apiKey;
+
+    /**
+     * @param httpClient The client used for all requests
+     * @param completionsUri The chat completions endpoint
+     * @param modelsUri The models endpoint, requested by {@link #connect()} to open a connection
+     * @param apiKey The API key sent as bearer token
+     */
+    public HttpChatTransport(HttpClient httpClient, URI completionsUri, URI modelsUri, String apiKey) {
+        this.httpClient = httpClient;
+        this.completionsUri = completionsUri;
+        this.modelsUri = modelsUri;
+        this.apiKey = apiKey;
+    }
+
+    @Override
+    public CompletableFuture<TransportResponse> send(byte[] body, int length) {
+        CompletableFuture<HttpResponse<byte[]>> exchange = httpClient.sendAsync(createRequest(body, length),
+            HttpResponse.BodyHandlers.ofByteArray());
+        return ChatTransport.forwardCancellation(
+            exchange.thenApply(response -> new TransportResponse(response.statusCode(), response.body())), exchange);
+    }
+
+    @Override
+    public CompletableFuture<Integer> stream(byte[] body, int length, Flow.Subscriber<String> lines) {
+        CompletableFuture<HttpResponse<Void>> exchange = httpClient.sendAsync(createRequest(body, length),
+            HttpResponse.BodyHandlers.fromLineSubscriber(lines, subscriber -> null, "\n"));
+        return ChatTransport.forwardCancellation(exchange.thenApply(HttpResponse::statusCode), exchange);
+    }
+
+    @Override
+    public CompletableFuture<Void> connect() {
+        HttpRequest request = HttpRequest.newBuilder()
+            .uri(modelsUri)
+            .header("Authorization", "Bearer " + apiKey)
+            .GET()
+            .build();
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+            .thenAccept(response -> logger.debug("Warm-up connection status: {}", response.statusCode()));
+    }
+
+    private HttpRequest createRequest(byte[] body, int length) {
+        return HttpRequest.newBuilder()
+            .uri(completionsUri)
+            .header("Content-Type", "application/json")
+            .header("Authorization", "Bearer " + apiKey)
+            .POST(HttpRequest.BodyPublishers.ofByteArray(body, 0, length))
+            .build();
+    }
+}
@@ -0,0 +1,106 @@
+package com.simonbrs.aiagent.transport;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Passes requests to another transport and records every request with its response, status
+ * code and latency to a compressed file, which a {@link ReplayTransport} can serve back.
+ * Responses are written as they complete, so the file is usable even if the recording is not
+ * closed, but it should be closed to write the end of the compressed stream.
+ */
+public class RecordingTransport implements ChatTransport, Closeable {
+    static final int MAGIC = 0x43525231; // "CRR1"
+
+    private final ChatTransport delegate;
+    private final DataOutputStream out;
+
+    /**
+     * @param delegate The transport performing the requests
+     * @param file The file to record to, replaced if it exists
+     * @throws IOException if the file cannot be created
+     */
+    public RecordingTransport(ChatTransport delegate, Path file) throws IOException {
+        this.delegate = delegate;
+        this.out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(file), true)));
+        out.writeInt(MAGIC);
+    }
+
+    @Override
+    public CompletableFuture<TransportResponse> send(byte[] body, int length) {
+        String key = RequestFingerprint.of(body, length);
+        long started = System.nanoTime();
+        CompletableFuture<TransportResponse> exchange = delegate.send(body, length);
+        return ChatTransport.forwardCancellation(exchange.thenApply(response -> {
+            write(key, System.nanoTime() - started, response.getStatusCode(), false, response.getBody());
+            return response;
+        }), exchange);
+    }
+
+    @Override
+    public CompletableFuture<Integer> stream(byte[] body, int length, Flow.Subscriber<String> lines) {
+        String key = RequestFingerprint.of(body, length);
+        long started = System.nanoTime();
+        StringBuilder recorded = new StringBuilder();
+        Flow.Subscriber<String> recording = new Flow.Subscriber<>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                lines.onSubscribe(subscription);
+            }
+
+            @Override
+            public void onNext(String line) {
+                recorded.append(line).append('\n');
+                lines.onNext(line);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                lines.onError(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                lines.onComplete();
+            }
+        };
+        CompletableFuture<Integer> exchange = delegate.stream(body, length, recording);
+        return ChatTransport.forwardCancellation(exchange.thenApply(status -> {
+            write(key, System.nanoTime() - started, status, true, recorded.toString().getBytes(StandardCharsets.UTF_8));
+            return status;
+        }), exchange);
+    }
+
+    @Override
+    public CompletableFuture<Void> connect() {
+        return delegate.connect();
+    }
+
+    private synchronized void write(String key, long latencyNanos, int status, boolean streamed, byte[] response) {
+        try {
+            out.writeUTF(key);
+            out.writeLong(latencyNanos);
+            out.writeInt(status);
+            out.writeBoolean(streamed);
+            out.writeInt(response.length);
+            out.write(response);
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to record response", e);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        out.close();
+    }
+}
@@ -0,0 +1,176 @@
+package com.simonbrs.aiagent.transport;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Serves responses recorded by a {@link RecordingTransport} without contacting the API.
+ * Requests are matched by their canonical body; identical requests recorded several times are
+ * answered with the recorded responses in order, repeating the last one. A request without a
+ * recording fails with an {@link IllegalStateException}.
+ */
+public class ReplayTransport implements ChatTransport {
+    /**
+     * How long replayed responses take.
+     */
+    public enum Latency {
+        /** Each response takes as long as it did when recorded. */
+        ORIGINAL,
+        /** Responses complete immediately. */
+        NONE
+    }
+
+    private final Map<String, List<Recorded>> recordings = new HashMap<>();
+    private final Map<String, AtomicInteger> positions = new HashMap<>();
+    private final Latency latency;
+
+    /**
+     * @param file A file written by a {@link RecordingTransport}
+     * @param latency Whether to reproduce the recorded latency
+     * @throws IOException if the file cannot be read or is not a recording
+     */
+    public ReplayTransport(Path file, Latency latency) throws IOException {
+        this.latency = latency;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file))))) {
+            if (in.readInt() != RecordingTransport.MAGIC) {
+                throw new IOException(file + " is not a recording");
+            }
+            while (true) {
+                String key;
+                try {
+                    key = in.readUTF();
+                } catch (EOFException e) {
+                    break;
+                }
+                long latencyNanos = in.readLong();
+                int status = in.readInt();
+                in.readBoolean(); // streamed; already part of the request key
+                byte[] response = new byte[in.readInt()];
+                in.readFully(response);
+                recordings.computeIfAbsent(key, k -> new ArrayList<>()).add(new Recorded(latencyNanos, status, response));
+                positions.putIfAbsent(key, new AtomicInteger());
+            }
+        }
+    }
+
+    /**
+     * Returns the number of recorded responses.
+     */
+    public int size() {
+        return recordings.values().stream().mapToInt(List::size).sum();
+    }
+
+    @Override
+    public CompletableFuture<TransportResponse> send(byte[] body, int length) {
+        Recorded recorded;
+        try {
+            recorded = next(RequestFingerprint.of(body, length));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return CompletableFuture.supplyAsync(() -> new TransportResponse(recorded.status, recorded.response),
+            executor(recorded));
+    }
+
+    @Override
+    public CompletableFuture<Integer> stream(byte[] body, int length, Flow.Subscriber<String> lines) {
+        Recorded recorded;
+        try {
+            recorded = next(RequestFingerprint.of(body, length));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            String[] responseLines = new String(recorded.response, StandardCharsets.UTF_8).split("\n", -1);
+            new LineSubscription(lines, responseLines, responseLines.length - 1).start();
+            return recorded.status;
+        }, executor(recorded));
+    }
+
+    private Recorded next(String key) {
+        List<Recorded> responses = recordings.get(key);
+        if (responses == null) {
+            throw new IllegalStateException("No recorded response for request " + key);
+        }
+        int position = positions.get(key).getAndIncrement();
+        return responses.get(Math.min(position, responses.size() - 1));
+    }
+
+    private Executor executor(Recorded recorded) {
+        return latency == Latency.ORIGINAL
+            ? CompletableFuture.delayedExecutor(recorded.latencyNanos, TimeUnit.NANOSECONDS)
+            : Runnable::run;
+    }
+
+    private static final class Recorded {
+        final long latencyNanos;
+        final int status;
+        final byte[] response;
+
+        Recorded(long latencyNanos, int status, byte[] response) {
+            this.latencyNanos = latencyNanos;
+            this.status = status;
+            this.response = response;
+        }
+    }
+
+    // Delivers recorded lines on demand; recorded streams end with a newline, so the last split is dropped
+    private static final class LineSubscription implements Flow.Subscription {
+        private final Flow.Subscriber<String> subscriber;
+        private final String[] lines;
+        private final int count;
+        private int next;
+        private long demand;
+        private boolean delivering;
+        private boolean done;
+
+        LineSubscription(Flow.Subscriber<String> subscriber, String[] lines, int count) {
+            this.subscriber = subscriber;
+            this.lines = lines;
+            this.count = count;
+        }
+
+        void start() {
+            subscriber.onSubscribe(this);
+            request(0);
+        }
+
+        @Override
+        public void request(long n) {
+            demand = n == Long.MAX_VALUE || demand + n < 0 ? Long.MAX_VALUE : demand + n;
+            if (delivering) {
+                return;
+            }
+            delivering = true;
+            while (!done && next < count && demand > 0) {
+                demand--;
+                subscriber.onNext(lines[next++]);
+            }
+            if (!done && next == count) {
+                done = true;
+                subscriber.onComplete();
+            }
+            delivering = false;
+        }
+
+        @Override
+        public void cancel() {
+            done = true;
+        }
+    }
+}
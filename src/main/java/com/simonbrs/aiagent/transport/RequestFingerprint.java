@@ -0,0 +1,61 @@
+package com.simonbrs.aiagent.transport;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Computes the key under which a request is recorded: the SHA-256 hash of its JSON body with
+ * object fields sorted, so that requests differing only in field order or whitespace match.
+ */
+final class RequestFingerprint {
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private RequestFingerprint() {
+    }
+
+    static String of(byte[] body, int length) {
+        try {
+            JsonNode canonical = canonicalize(objectMapper.readTree(body, 0, length));
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(
+                objectMapper.writeValueAsString(canonical).getBytes(StandardCharsets.UTF_8)));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Request body is not valid JSON", e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static JsonNode canonicalize(JsonNode node) {
+        if (node.isObject()) {
+            List<String> names = new ArrayList<>();
+            node.fieldNames().forEachRemaining(names::add);
+            Collections.sort(names);
+            ObjectNode sorted = objectMapper.createObjectNode();
+            for (String name : names) {
+                sorted.set(name, canonicalize(node.get(name)));
+            }
+            return sorted;
+        }
+        if (node.isArray()) {
+            ArrayNode array = objectMapper.createArrayNode();
+            for (JsonNode element : node) {
+                array.add(canonicalize(element));
+            }
+            return array;
+        }
+        return node;
+    }
+}
@@ -0,0 +1,22 @@
+package com.simonbrs.aiagent.transport;
+
+/**
+ * The status code and body of a non-streamed response.
+ */
+public final class TransportResponse {
+    private final int statusCode;
+    private final byte[] body;
+
+    public TransportResponse(int statusCode, byte[] body) {
+        this.statusCode = statusCode;
+        this.body = body;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public byte[] getBody() {
+        return body;
+    }
+}
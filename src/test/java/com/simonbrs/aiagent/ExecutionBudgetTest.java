@@ -0,0 +1,201 @@
+package com.simonbrs.aiagent;
+
+import com.simonbrs.aiagent.ExecutionBudget.BudgetExceededException;
+import com.simonbrs.aiagent.transport.ChatTransport;
+import com.simonbrs.aiagent.transport.TransportResponse;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExecutionBudgetTest {
+    // Answers every request with the given number of calls to the ping tool
+    private static class LoopingTransport implements ChatTransport {
+        final AtomicInteger requests = new AtomicInteger();
+        private final String response;
+
+        LoopingTransport(int toolCalls, int tokens) {
+            StringBuilder calls = new StringBuilder();
+            for (int i = 0; i < toolCalls; i++) {
+                calls.append(i == 0 ? "" : ",").append("{\"id\":\"call_").append(i)
+                    .append("\",\"type\":\"function\",\"function\":{\"name\":\"ping\",\"arguments\":\"{}\"}}");
+            }
+            this.response = "{\"choices\":[{\"message\":{\"role\":\"assistant\",\"content\":\"Working\",\"tool_calls\":["
+                + calls + "]}}],\"usage\":{\"total_tokens\":" + tokens + "}}";
+        }
+
+        @Override
+        public CompletableFuture<TransportResponse> send(byte[] body, int length) {
+            requests.incrementAndGet();
+            return CompletableFuture.completedFuture(new TransportResponse(200, response.getBytes(StandardCharsets.UTF_8)));
+        }
+
+        @Override
+        public CompletableFuture<Integer> stream(byte[] body, int length, Flow.Subscriber<String> lines) {
+            return CompletableFuture.failedFuture(new UnsupportedOperationException());
+        }
+    }
+
+    // Never answers, and remembers the pending exchange
+    private static class HangingTransport implements ChatTransport {
+        final CompletableFuture<TransportResponse> exchange = new CompletableFuture<>();
+
+        @Override
+        public CompletableFuture<TransportResponse> send(byte[] body, int length) {
+            return exchange;
+        }
+
+        @Override
+        public CompletableFuture<Integer> stream(byte[] body, int length, Flow.Subscriber<String> lines) {
+            return CompletableFuture.failedFuture(new UnsupportedOperationException());
+        }
+    }
+
+    // Streams one response with the given number of calls to the ping tool
+    private static class StreamingTransport implements ChatTransport {
+        private final int toolCalls;
+
+        StreamingTransport(int toolCalls) {
+            this.toolCalls = toolCalls;
+        }
+
+        @Override
+        public CompletableFuture<TransportResponse> send(byte[] body, int length) {
+            return CompletableFuture.failedFuture(new UnsupportedOperationException());
+        }
+
+        @Override
+        public CompletableFuture<Integer> stream(byte[] body, int length, Flow.Subscriber<String> lines) {
+            lines.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            for (int i = 0; i < toolCalls; i++) {
+                lines.onNext("data: {\"choices\":[{\"delta\":{\"tool_calls\":[{\"index\":" + i + ",\"id\":\"call_" + i
+                    + "\",\"type\":\"function\",\"function\":{\"name\":\"ping\",\"arguments\":\"{}\"}}]}}]}");
+            }
+            lines.onNext("data: [DONE]");
+            lines.onComplete();
+            return CompletableFuture.completedFuture(200);
+        }
+    }
+
+    private static OpenAIAgent createAgent(ChatTransport transport, AgentFunction ping) {
+        OpenAIAgent agent = new OpenAIAgent("test-key", "gpt-4o-mini");
+        agent.registerFunction("ping", ping);
+        agent.setTransport(transport);
+        return agent;
+    }
+
+    private static Throwable failure(CompletableFuture<String> response) {
+        ExecutionException e = assertThrows(ExecutionException.class, () -> response.get(5, TimeUnit.SECONDS));
+        Throwable cause = e.getCause();
+        return cause.getCause() != null ? cause.getCause() : cause;
+    }
+
+    @Test
+    void testIterationLimitEndsLoop() throws Exception {
+        LoopingTransport transport = new LoopingTransport(1, 10);
+        OpenAIAgent agent = createAgent(transport, parameters -> "pong");
+
+        String response = agent.sendMessage("Ping", Map.of(), ExecutionBudget.DEFAULT.withMaxIterations(2))
+            .get(5, TimeUnit.SECONDS);
+
+        // The loop stops after the second response and returns the content received so far
+        assertEquals(2, transport.requests.get());
+        assertEquals("Working\nWorking", response);
+    }
+
+    @Test
+    void testToolCallLimit() {
+        LoopingTransport transport = new LoopingTransport(3, 10);
+        AtomicInteger calls = new AtomicInteger();
+        OpenAIAgent agent = createAgent(transport, parameters -> calls.incrementAndGet());
+
+        Throwable cause = failure(agent.sendMessage("Ping", Map.of(), ExecutionBudget.DEFAULT.withMaxToolCalls(2)));
+
+        assertInstanceOf(BudgetExceededException.class, cause);
+        assertEquals(0, calls.get());
+        assertEquals(1, transport.requests.get());
+    }
+
+    @Test
+    void testTokenLimit() {
+        LoopingTransport transport = new LoopingTransport(1, 300);
+        OpenAIAgent agent = createAgent(transport, parameters -> "pong");
+
+        Throwable cause = failure(agent.sendMessage("Ping", Map.of(), ExecutionBudget.DEFAULT.withMaxTotalTokens(500)));
+
+        // The second response brings the total to 600 tokens
+        assertInstanceOf(BudgetExceededException.class, cause);
+        assertEquals(2, transport.requests.get());
+    }
+
+    @Test
+    void testSpeculativeToolsStayWithinToolCallLimit() {
+        AtomicInteger calls = new AtomicInteger();
+        AtomicInteger executed = new AtomicInteger();
+        OpenAIAgent agent = createAgent(new StreamingTransport(3), parameters -> calls.incrementAndGet());
+        agent.markIdempotent("ping");
+        agent.setSpeculativeToolExecution(true);
+        agent.setToolExecutor(task -> {
+            executed.incrementAndGet();
+            task.run();
+        });
+
+        Throwable cause = failure(agent.sendMessage("Ping", Map.of(), ExecutionBudget.DEFAULT.withMaxToolCalls(2)));
+
+        // Only the calls within the budget started early, and on the agent's executor
+        assertInstanceOf(BudgetExceededException.class, cause);
+        assertEquals(2, calls.get());
+        assertEquals(2, executed.get());
+    }
+
+    @Test
+    void testTimeoutCancelsRequest() {
+        HangingTransport transport = new HangingTransport();
+        OpenAIAgent agent = createAgent(transport, parameters -> "pong");
+
+        Throwable cause = failure(agent.sendMessage("Ping", Map.of(),
+            ExecutionBudget.DEFAULT.withTimeout(Duration.ofMillis(100))));
+
+        assertInstanceOf(TimeoutException.class, cause);
+        assertTrue(transport.exchange.isCancelled());
+    }
+
+    @Test
+    void testCancelStopsLoop() throws Exception {
+        LoopingTransport transport = new LoopingTransport(1, 10);
+        CompletableFuture<Object> toolResult = new CompletableFuture<>();
+        CompletableFuture<Void> toolStarted = new CompletableFuture<>();
+        OpenAIAgent agent = createAgent(transport, (AsyncAgentFunction) parameters -> {
+            toolStarted.complete(null);
+            return toolResult;
+        });
+
+        CompletableFuture<String> response = agent.sendMessage("Ping");
+        toolStarted.get(5, TimeUnit.SECONDS);
+        response.cancel(true);
+
+        // The agent tracks the tool's future on its own thread just after starting it
+        for (int attempt = 0; attempt < 250 && !toolResult.isDone(); attempt++) {
+            Thread.sleep(20);
+        }
+        assertTrue(toolResult.isCancelled());
+        assertEquals(1, transport.requests.get());
+    }
+}
@@ -0,0 +1,74 @@
+package com.simonbrs.aiagent;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestCoalescerTest {
+
+    @Test
+    void testIdenticalRequestsShareOneCall() throws Exception {
+        RequestCoalescer coalescer = new RequestCoalescer();
+        AtomicInteger calls = new AtomicInteger();
+        CompletableFuture<String> upstream = new CompletableFuture<>();
+
+        CompletableFuture<String> first = coalescer.execute("body", () -> {
+            calls.incrementAndGet();
+            return upstream;
+        });
+        CompletableFuture<String> second = coalescer.execute("body", () -> {
+            calls.incrementAndGet();
+            return CompletableFuture.completedFuture("other");
+        });
+        upstream.complete("response");
+
+        assertEquals("response", first.get());
+        assertEquals("response", second.get());
+        assertEquals(1, calls.get());
+        assertEquals(1, coalescer.getCoalescedCount());
+    }
+
+    @Test
+    void testCompletedRequestIsNotReused() throws Exception {
+        RequestCoalescer coalescer = new RequestCoalescer();
+        assertEquals("a", coalescer.execute("body", () -> CompletableFuture.completedFuture("a")).get());
+        assertEquals("b", coalescer.execute("body", () -> CompletableFuture.completedFuture("b")).get());
+        assertEquals(0, coalescer.getCoalescedCount());
+    }
+
+    @Test
+    void testUpstreamCancelledOnlyWhenAllCallersCancel() {
+        RequestCoalescer coalescer = new RequestCoalescer();
+        CompletableFuture<String> upstream = new CompletableFuture<>();
+        CompletableFuture<String> first = coalescer.execute("body", () -> upstream);
+        CompletableFuture<String> second = coalescer.execute("body", () -> upstream);
+
+        first.cancel(true);
+        assertFalse(upstream.isCancelled());
+        second.cancel(true);
+        assertTrue(upstream.isCancelled());
+    }
+
+    @Test
+    void testCallerLeavingWhileRequestStartsCancelsIt() {
+        RequestCoalescer coalescer = new RequestCoalescer();
+        CompletableFuture<String> upstream = new CompletableFuture<>();
+        CompletableFuture<?>[] joined = new CompletableFuture<?>[1];
+
+        CompletableFuture<String> leader = coalescer.execute("body", () -> {
+            // Another caller joins and leaves before the leader's supplier has returned
+            joined[0] = coalescer.execute("body", () -> CompletableFuture.completedFuture("other"));
+            joined[0].cancel(true);
+            return upstream;
+        });
+
+        assertTrue(joined[0].isCancelled());
+        assertFalse(upstream.isCancelled());
+        leader.cancel(true);
+        assertTrue(upstream.isCancelled());
+        assertEquals(1, coalescer.getCoalescedCount());
+    }
+}
@@ -0,0 +1,42 @@
+package com.simonbrs.aiagent;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestExecutionTest {
+
+    @Test
+    void testFutureTrackedWhileCancellingIsCancelled() throws Exception {
+        for (int attempt = 0; attempt < 500; attempt++) {
+            RequestExecution execution = new RequestExecution(ExecutionBudget.DEFAULT, null, null, null);
+            List<CompletableFuture<String>> tracked = new ArrayList<>();
+            CountDownLatch start = new CountDownLatch(1);
+            Thread tracker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < 20; i++) {
+                    tracked.add(execution.track(new CompletableFuture<>()));
+                }
+            });
+            tracker.start();
+            start.countDown();
+            execution.cancel();
+            tracker.join(TimeUnit.SECONDS.toMillis(5));
+
+            // Whichever order they ran in, nothing may stay running after the request was cancelled
+            for (CompletableFuture<String> future : tracked) {
+                assertTrue(future.isCancelled());
+            }
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.simonbrs.aiagent;
+
+import com.simonbrs.aiagent.ToolDescriptors.MethodTool;
+import com.simonbrs.aiagent.annotation.Tool;
+import com.simonbrs.aiagent.annotation.ToolDefinition;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ToolDescriptorsTest {
+
+    public static class Calculator {
+        public int add(int a, int b) {
+            return a + b;
+        }
+
+        public CompletableFuture<Integer> negate(int value) {
+            return CompletableFuture.completedFuture(-value);
+        }
+
+        private int helper() {
+            return 0;
+        }
+    }
+
+    public static class AnnotatedTools {
+        @Tool(name = "lookup", description = "Looks up a key", idempotent = true)
+        public String find(String key) {
+            return key;
+        }
+
+        public String notATool() {
+            return "";
+        }
+    }
+
+    @Test
+    void testDescriptorsAreComputedOncePerClass() {
+        ToolDescriptors first = ToolDescriptors.of(Calculator.class);
+        ToolDescriptors second = ToolDescriptors.of(Calculator.class);
+
+        assertSame(first, second);
+        assertNull(first.getProvider());
+        assertEquals(2, first.getMethods().size());
+        assertSame(first.getMethods().get(0).schema, second.getMethods().get(0).schema);
+        assertSame(first.getMethods().get(0).binder, second.getMethods().get(0).binder);
+    }
+
+    @Test
+    void testMethodDescriptors() throws Exception {
+        MethodTool negate = find(ToolDescriptors.of(Calculator.class).getMethods(), "negate");
+
+        assertTrue(negate.async);
+        assertFalse(negate.idempotent);
+        assertNull(negate.description);
+        assertTrue(negate.defaultDescription.startsWith("Returns Integer. Takes int "));
+        assertEquals(1, negate.schema.get("properties").size());
+    }
+
+    @Test
+    void testGeneratedSchemasAreParsedOnce() {
+        ToolDescriptors descriptors = ToolDescriptors.of(AnnotatedTools.class);
+        ToolDefinition first = descriptors.getProvider().getTools(new AnnotatedTools()).get(0);
+        ToolDefinition second = descriptors.getProvider().getTools(new AnnotatedTools()).get(0);
+
+        assertTrue(descriptors.getMethods().isEmpty());
+        assertEquals("lookup", first.getName());
+        assertSame(descriptors.getProvidedSchema(first), descriptors.getProvidedSchema(second));
+    }
+
+    @Test
+    void testSameClassRegisteredWithSeveralAgents() {
+        OpenAIAgent first = new OpenAIAgent("test-key", "gpt-4o-mini");
+        OpenAIAgent second = new OpenAIAgent("test-key", "gpt-4o-mini");
+
+        first.registerMethods(new Calculator());
+        second.registerMethods(new Calculator(), "math");
+
+        MethodTool add = find(ToolDescriptors.of(Calculator.class).getMethods(), "add");
+        ToolRegistry.RegisteredTool firstAdd = first.getToolRegistry().get("add");
+        ToolRegistry.RegisteredTool secondAdd = second.getToolRegistry().get("add");
+        assertNotNull(firstAdd);
+        assertNotNull(secondAdd);
+        assertNotNull(first.getToolRegistry().get("negate"));
+        assertNotNull(second.getToolRegistry().get("negate"));
+        assertEquals("math", secondAdd.group);
+        // Both agents use the cached schema instead of generating their own
+        assertSame(add.schema, firstAdd.schema);
+        assertSame(add.schema, secondAdd.schema);
+        assertSame(add.validator, firstAdd.validator);
+        assertSame(add.validator, secondAdd.validator);
+        assertNotSame(firstAdd.function, secondAdd.function);
+    }
+
+    @Test
+    void testGeneratedValidatorsAreCompiledOnce() {
+        OpenAIAgent first = new OpenAIAgent("test-key", "gpt-4o-mini");
+        OpenAIAgent second = new OpenAIAgent("test-key", "gpt-4o-mini");
+
+        first.registerMethods(new AnnotatedTools());
+        second.registerMethods(new AnnotatedTools());
+
+        ToolRegistry.RegisteredTool firstLookup = first.getToolRegistry().get("lookup");
+        assertNotNull(firstLookup.validator);
+        assertSame(firstLookup.validator, second.getToolRegistry().get("lookup").validator);
+    }
+
+    private static MethodTool find(List<MethodTool> methods, String name) {
+        return methods.stream().filter(method -> method.name.equals(name)).findFirst().orElseThrow();
+    }
+}
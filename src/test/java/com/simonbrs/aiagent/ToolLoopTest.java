@@ -0,0 +1,153 @@
+package com.simonbrs.aiagent;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.simonbrs.aiagent.results.ResultLimiter;
+import com.simonbrs.aiagent.results.ResultPolicy;
+import com.simonbrs.aiagent.tools.RelevanceToolSelector;
+import com.simonbrs.aiagent.transport.ChatTransport;
+import com.simonbrs.aiagent.transport.TransportResponse;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ToolLoopTest {
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    // Every lookup waits until both lookups of the turn have started, so they must run concurrently
+    public static class Lookups {
+        final CountDownLatch started = new CountDownLatch(2);
+
+        public CompletableFuture<String> lookup(String key) {
+            started.countDown();
+            // The first key takes longest, so its result arrives last
+            long delay = "first".equals(key) ? 100 : 0;
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    if (!started.await(5, TimeUnit.SECONDS)) {
+                        throw new IllegalStateException("Lookups did not run concurrently");
+                    }
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                if ("missing".equals(key)) {
+                    throw new IllegalStateException("No value for missing");
+                }
+                return "value of " + key;
+            }, CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS));
+        }
+    }
+
+    // Calls lookup for each key in one turn, then answers once the tool results are in the history
+    private static class ScriptedTransport implements ChatTransport {
+        final List<JsonNode> requests = new ArrayList<>();
+        private final String toolCalls;
+
+        ScriptedTransport(String... keys) {
+            StringBuilder calls = new StringBuilder();
+            for (int i = 0; i < keys.length; i++) {
+                calls.append(i == 0 ? "" : ",").append("{\"id\":\"call_").append(i + 1)
+                    .append("\",\"type\":\"function\",\"function\":{\"name\":\"lookup\",\"arguments\":\"{\\\"arg0\\\":\\\"")
+                    .append(keys[i]).append("\\\"}\"}}");
+            }
+            this.toolCalls = calls.toString();
+        }
+
+        @Override
+        public synchronized CompletableFuture<TransportResponse> send(byte[] body, int length) {
+            JsonNode request;
+            try {
+                request = objectMapper.readTree(body, 0, length);
+            } catch (IOException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+            requests.add(request);
+            String response = requests.size() > 1
+                ? "{\"choices\":[{\"message\":{\"role\":\"assistant\",\"content\":\"Done\"}}]}"
+                : "{\"choices\":[{\"message\":{\"role\":\"assistant\",\"content\":null,\"tool_calls\":[" + toolCalls + "]}}]}";
+            return CompletableFuture.completedFuture(new TransportResponse(200, response.getBytes(StandardCharsets.UTF_8)));
+        }
+
+        @Override
+        public CompletableFuture<Integer> stream(byte[] body, int length, Flow.Subscriber<String> lines) {
+            return CompletableFuture.failedFuture(new UnsupportedOperationException());
+        }
+
+        synchronized List<JsonNode> toolMessages() {
+            List<JsonNode> messages = new ArrayList<>();
+            for (JsonNode message : requests.get(requests.size() - 1).get("messages")) {
+                if ("tool".equals(message.path("role").asText())) {
+                    messages.add(message);
+                }
+            }
+            return messages;
+        }
+    }
+
+    private static OpenAIAgent createAgent(ChatTransport transport) {
+        OpenAIAgent agent = new OpenAIAgent("test-key", "gpt-4o-mini");
+        agent.registerMethods(new Lookups());
+        agent.setTransport(transport);
+        return agent;
+    }
+
+    @Test
+    void testAsyncToolCallsRunConcurrentlyAndAnswerInOrder() throws Exception {
+        ScriptedTransport transport = new ScriptedTransport("first", "second");
+
+        assertEquals("Done", createAgent(transport).sendMessage("Look up both").get(5, TimeUnit.SECONDS));
+
+        List<JsonNode> toolMessages = transport.toolMessages();
+        assertEquals(2, toolMessages.size());
+        assertEquals("call_1", toolMessages.get(0).get("tool_call_id").asText());
+        assertEquals("value of first", toolMessages.get(0).get("content").asText());
+        assertEquals("call_2", toolMessages.get(1).get("tool_call_id").asText());
+        assertEquals("value of second", toolMessages.get(1).get("content").asText());
+    }
+
+    @Test
+    void testFailingAsyncToolIsAnsweredWithItsError() throws Exception {
+        ScriptedTransport transport = new ScriptedTransport("first", "missing");
+
+        assertEquals("Done", createAgent(transport).sendMessage("Look up both").get(5, TimeUnit.SECONDS));
+
+        List<JsonNode> toolMessages = transport.toolMessages();
+        assertEquals(2, toolMessages.size());
+        assertEquals("value of first", toolMessages.get(0).get("content").asText());
+        assertEquals("call_2", toolMessages.get(1).get("tool_call_id").asText());
+        assertTrue(toolMessages.get(1).get("content").asText().contains("No value for missing"),
+            toolMessages.get(1).toString());
+    }
+
+    @Test
+    void testOffloadedResultReaderIsExposedWithGroupsAndSelector() throws Exception {
+        ScriptedTransport transport = new ScriptedTransport("first");
+        OpenAIAgent agent = new OpenAIAgent("test-key", "gpt-4o-mini");
+        agent.registerFunction("lookup", parameters -> "a result much longer than ten characters", null, "data", null);
+        agent.registerFunction("unrelated", parameters -> "", null, "other", null);
+        agent.setToolResultPolicy("lookup", new ResultPolicy(10, 0, true));
+        agent.setToolSelector(new RelevanceToolSelector(1));
+        agent.setTransport(transport);
+
+        assertEquals("Done", agent.sendMessage("Please lookup the first key", Map.of(), ExecutionBudget.DEFAULT,
+            List.of("data")).get(5, TimeUnit.SECONDS));
+
+        assertTrue(transport.toolMessages().get(0).get("content").asText().contains("read_tool_result"));
+        for (JsonNode request : transport.requests) {
+            Set<String> names = new java.util.HashSet<>();
+            request.get("tools").forEach(tool -> names.add(tool.path("function").path("name").asText()));
+            assertEquals(Set.of("lookup", ResultLimiter.READ_TOOL), names);
+        }
+    }
+}
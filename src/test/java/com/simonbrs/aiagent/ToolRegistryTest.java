@@ -0,0 +1,65 @@
+package com.simonbrs.aiagent;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.simonbrs.aiagent.ToolRegistry.RegisteredTool;
+import com.simonbrs.aiagent.schema.SchemaValidator;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ToolRegistryTest {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private RegisteredTool tool(String name, ObjectNode schema) {
+        return new RegisteredTool(name, parameters -> name, schema, null, null, "Execute " + name,
+            objectMapper.createObjectNode().put("name", name), schema == null ? null : SchemaValidator.compile(schema));
+    }
+
+    @Test
+    void testSnapshotsAreImmutable() {
+        ToolRegistry first = ToolRegistry.EMPTY.with(tool("add", null));
+        ToolRegistry second = first.with(tool("subtract", objectMapper.createObjectNode()));
+
+        assertEquals(1, first.getFunctions().size());
+        assertEquals(2, second.getFunctions().size());
+        assertTrue(ToolRegistry.EMPTY.getTools().isEmpty());
+        assertThrows(UnsupportedOperationException.class, () -> second.getDescriptions().put("x", "y"));
+    }
+
+    @Test
+    void testOnlyExplicitSchemasAreExposed() {
+        ToolRegistry registry = ToolRegistry.EMPTY
+            .with(tool("add", null))
+            .with(tool("subtract", objectMapper.createObjectNode()));
+
+        assertEquals(1, registry.getSchemas().size());
+        assertTrue(registry.getSchemas().containsKey("subtract"));
+        assertEquals("Execute add", registry.getDescriptions().get("add"));
+    }
+
+    @Test
+    void testReplacingAToolDropsTheCachedPayload() {
+        ToolRegistry registry = ToolRegistry.EMPTY.with(tool("add", null));
+        registry.setAllToolsPayload(new ToolRegistry.ToolPayload("prompt", null));
+
+        ToolRegistry replaced = registry.with(tool("add", objectMapper.createObjectNode()));
+        assertNotNull(registry.getAllToolsPayload());
+        assertNull(replaced.getAllToolsPayload());
+        assertEquals(1, replaced.getTools().size());
+    }
+
+    @Test
+    void testBatchReplacesAndAddsInOneSnapshot() {
+        ToolRegistry registry = ToolRegistry.EMPTY.with(tool("add", null));
+        RegisteredTool replacement = tool("add", objectMapper.createObjectNode());
+
+        ToolRegistry batch = registry.withAll(List.of(replacement, tool("subtract", null), tool("multiply", null)));
+
+        assertEquals(List.of("add", "subtract", "multiply"), List.copyOf(batch.getTools().keySet()));
+        assertSame(replacement, batch.get("add"));
+        assertEquals(1, registry.getTools().size());
+    }
+}
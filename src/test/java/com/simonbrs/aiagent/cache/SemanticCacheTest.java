@@ -0,0 +1,82 @@
+package com.simonbrs.aiagent.cache;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SemanticCacheTest {
+    // Embeds a text by counting a few keywords, enough to tell paraphrases from other questions
+    private static final String[] KEYWORDS = {"capital", "france", "spain", "weather", "population"};
+    private static final EmbeddingFunction EMBEDDING = text -> {
+        float[] vector = new float[KEYWORDS.length];
+        String lower = text.toLowerCase();
+        for (int i = 0; i < KEYWORDS.length; i++) {
+            vector[i] = lower.contains(KEYWORDS[i]) ? 1 : 0;
+        }
+        return vector;
+    };
+
+    @Test
+    void testReturnsAnswerForParaphrase() {
+        SemanticCache cache = new SemanticCache(EMBEDDING, KEYWORDS.length, 10, 0.95);
+        String prompt = "What is the capital of France?";
+        cache.put(cache.embed(prompt), prompt, "Paris");
+
+        assertEquals("Paris", cache.lookup("Which city is the capital of France"));
+        assertNull(cache.lookup("What is the capital of Spain?"));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(0.5, cache.getHitRate());
+    }
+
+    @Test
+    void testEvictsLeastRecentlyUsed() {
+        SemanticCache cache = new SemanticCache(EMBEDDING, KEYWORDS.length, 2, 0.95);
+        cache.put(cache.embed("capital of France"), "capital of France", "Paris");
+        cache.put(cache.embed("capital of Spain"), "capital of Spain", "Madrid");
+        cache.lookup("capital of France");
+        cache.put(cache.embed("weather"), "weather", "Sunny");
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictions());
+        assertEquals("Paris", cache.lookup("capital of France"));
+        assertNull(cache.lookup("capital of Spain"));
+    }
+
+    @Test
+    void testPersistsToMappedFile(@TempDir Path directory) throws Exception {
+        Path file = directory.resolve("cache.bin");
+        try (SemanticCache cache = SemanticCache.open(file, EMBEDDING, KEYWORDS.length, 10, 0.95)) {
+            cache.put(cache.embed("capital of France"), "capital of France", "Paris");
+        }
+
+        try (SemanticCache reopened = SemanticCache.open(file, EMBEDDING, KEYWORDS.length, 10, 0.95)) {
+            assertEquals(1, reopened.size());
+            assertEquals("Paris", reopened.lookup("France's capital"));
+        }
+    }
+
+    @Test
+    void testDropsEntriesChangedSinceLastFlush(@TempDir Path directory) throws Exception {
+        Path file = directory.resolve("cache.bin");
+        try (SemanticCache cache = SemanticCache.open(file, EMBEDDING, KEYWORDS.length, 2, 0.95)) {
+            cache.put(cache.embed("capital of France"), "capital of France", "Paris");
+            cache.put(cache.embed("weather"), "weather", "Sunny");
+        }
+
+        // Evicts France and adds Spain without flushing, as if the process crashed afterwards
+        SemanticCache crashed = SemanticCache.open(file, EMBEDDING, KEYWORDS.length, 2, 0.95);
+        crashed.lookup("weather");
+        crashed.put(crashed.embed("capital of Spain"), "capital of Spain", "Madrid");
+
+        try (SemanticCache reopened = SemanticCache.open(file, EMBEDDING, KEYWORDS.length, 2, 0.95)) {
+            assertEquals(1, reopened.size());
+            assertNull(reopened.lookup("capital of Spain"));
+            assertNull(reopened.lookup("capital of France"));
+            assertEquals("Sunny", reopened.lookup("weather"));
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.simonbrs.aiagent.conversation;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConversationHistoryTest {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private ConversationHistory createHistory(int turns) throws IOException {
+        ConversationHistory history = new ConversationHistory();
+        for (int i = 0; i < turns; i++) {
+            history.addUserMessage("What is " + i + " plus 2.5?");
+            JsonNode toolCalls = objectMapper.readTree("[{\"id\":\"call_" + i + "\",\"type\":\"function\","
+                + "\"function\":{\"name\":\"add\",\"arguments\":\"{\\\"a\\\":" + i + ",\\\"b\\\":2.5}\"}}]");
+            history.addAssistantMessage(null, toolCalls);
+            history.addToolResponse("call_" + i, String.valueOf(i + 2.5));
+            history.addAssistantMessage("The answer is " + (i + 2.5) + " ✓", null);
+        }
+        return history;
+    }
+
+    private ConversationHistory roundTrip(ConversationHistory history, boolean compress) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        history.export(out, compress);
+        ConversationHistory restored = new ConversationHistory();
+        restored.addUserMessage("replaced");
+        restored.importFrom(new ByteArrayInputStream(out.toByteArray()));
+        return restored;
+    }
+
+    @Test
+    void testExportAndImport() throws IOException {
+        ConversationHistory history = createHistory(3);
+
+        for (boolean compress : new boolean[] {false, true}) {
+            ConversationHistory restored = roundTrip(history, compress);
+
+            assertEquals(history.getMessages(), restored.getMessages());
+            Map<String, Object> assistant = restored.getMessages().get(1);
+            assertInstanceOf(JsonNode.class, assistant.get("tool_calls"));
+            assertTrue(assistant.containsKey("content"));
+            assertNull(assistant.get("content"));
+        }
+    }
+
+    @Test
+    void testFormatIsSmallerThanJson() throws IOException {
+        ConversationHistory history = createHistory(50);
+        int json = objectMapper.writeValueAsBytes(history.getMessages()).length;
+
+        ByteArrayOutputStream binary = new ByteArrayOutputStream();
+        history.export(binary, false);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        history.export(compressed, true);
+
+        assertTrue(binary.size() < json, binary.size() + " >= " + json);
+        assertTrue(compressed.size() < binary.size(), compressed.size() + " >= " + binary.size());
+    }
+
+    @Test
+    void testUncompressedImportStopsAtEndOfHistory() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        createHistory(1).export(out, false);
+        out.write("trailer".getBytes(StandardCharsets.UTF_8));
+        ByteArrayInputStream in = new ByteArrayInputStream(out.toByteArray());
+
+        new ConversationHistory().importFrom(in);
+
+        assertEquals("trailer", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testCorruptLengthFailsWithoutAllocating() {
+        // Header, one message with one field, whose name claims Integer.MAX_VALUE bytes
+        byte[] corrupt = {0x43, 0x48, 0x53, 0x01, 0, 1, 1, 0,
+            (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07, 'r', 'o', 'l', 'e'};
+
+        assertThrows(IOException.class, () -> new ConversationHistory().importFrom(new ByteArrayInputStream(corrupt)));
+    }
+
+    @Test
+    void testInvalidStreamLeavesHistoryUnchanged() throws IOException {
+        ConversationHistory history = createHistory(1);
+        byte[] invalid = "not a history".getBytes(StandardCharsets.UTF_8);
+
+        assertThrows(IOException.class, () -> history.importFrom(new ByteArrayInputStream(invalid)));
+        assertEquals(4, history.getMessages().size());
+    }
+}
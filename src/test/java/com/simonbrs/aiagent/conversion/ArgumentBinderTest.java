@@ -0,0 +1,103 @@
+package com.simonbrs.aiagent.conversion;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.simonbrs.aiagent.annotation.Param;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Method;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ArgumentBinderTest {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public static class Tools {
+        public double sum(double[] values, int scale) {
+            return 0;
+        }
+
+        public String describe(@Param("name") String name, @Param("verbose") boolean verbose, @Param("tags") List<String> tags) {
+            return name;
+        }
+
+        public long id(long value, Integer[] boxed) {
+            return value;
+        }
+
+        public int count(boolean[] flags, long[] ids, short[] codes) {
+            return flags.length;
+        }
+    }
+
+    private ArgumentBinder binder(String name) {
+        for (Method method : Tools.class.getDeclaredMethods()) {
+            if (method.getName().equals(name)) {
+                return new ArgumentBinder(method, objectMapper);
+            }
+        }
+        throw new IllegalArgumentException(name);
+    }
+
+    @Test
+    void testBindsPrimitiveArraysDirectly() throws Exception {
+        Object[] args = binder("sum").bind("{\"arg0\": [1, 2.5, \"3\"], \"arg1\": 4}");
+        assertArrayEquals(new double[] {1, 2.5, 3}, (double[]) args[0]);
+        assertEquals(4, args[1]);
+    }
+
+    @Test
+    void testBindsNamedParametersInAnyOrder() throws Exception {
+        Object[] args = binder("describe").bind("{\"tags\": [\"a\", \"b\"], \"extra\": {\"x\": [1]}, \"verbose\": \"yes\", \"name\": \"tool\"}");
+        assertEquals("tool", args[0]);
+        assertEquals(true, args[1]);
+        assertEquals(List.of("a", "b"), args[2]);
+    }
+
+    @Test
+    void testReadsLongsExactly() throws Exception {
+        Object[] args = binder("id").bind("{\"arg0\": 9007199254740993, \"arg1\": [1, null, 3]}");
+        assertEquals(9007199254740993L, args[0]);
+        assertArrayEquals(new Integer[] {1, null, 3}, (Integer[]) args[1]);
+    }
+
+    @Test
+    void testBindsEveryPrimitiveArrayType() throws Exception {
+        Object[] args = binder("count").bind("{\"arg0\": [true, \"no\", 1], \"arg1\": [9007199254740993], \"arg2\": []}");
+        assertArrayEquals(new boolean[] {true, false, true}, (boolean[]) args[0]);
+        assertArrayEquals(new long[] {9007199254740993L}, (long[]) args[1]);
+        assertArrayEquals(new short[0], (short[]) args[2]);
+    }
+
+    @Test
+    void testUnrecognisedBooleanIsRejected() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+            () -> binder("describe").bind("{\"name\": \"tool\", \"verbose\": \"maybe\", \"tags\": []}"));
+        assertTrue(e.getMessage().startsWith("Failed to convert parameter verbose to type boolean"));
+    }
+
+    @Test
+    void testFractionalAndOutOfRangeIntegersAreRejected() {
+        for (String scale : new String[] {"3.7", "1e12", "\"-3000000000\""}) {
+            IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> binder("sum").bind("{\"arg0\": [1], \"arg1\": " + scale + "}"));
+            assertTrue(e.getMessage().startsWith("Failed to convert parameter arg1 to type int"), e.getMessage());
+        }
+        assertThrows(IllegalArgumentException.class, () -> binder("count").bind(
+            "{\"arg0\": [], \"arg1\": [1.5], \"arg2\": []}"));
+    }
+
+    @Test
+    void testMissingParameter() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+            () -> binder("sum").bind("{\"arg0\": [1]}"));
+        assertEquals("Missing required parameter: arg1", e.getMessage());
+    }
+
+    @Test
+    void testInvalidValue() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+            () -> binder("sum").bind("{\"arg0\": [1], \"arg1\": \"many\"}"));
+        assertTrue(e.getMessage().startsWith("Failed to convert parameter arg1 to type int"));
+    }
+}
@@ -0,0 +1,67 @@
+package com.simonbrs.aiagent.diagnostics;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PayloadRecorderTest {
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void testKeepsOnlyTheMostRecentExchanges() {
+        PayloadRecorder recorder = new PayloadRecorder(2, 1, false);
+        for (int i = 0; i < 3; i++) {
+            recorder.record(bytes("{\"n\":" + i + "}"), 7, 200, () -> bytes("{}"), null, Duration.ZERO);
+        }
+
+        List<PayloadRecorder.Exchange> exchanges = recorder.getExchanges();
+        assertEquals(2, exchanges.size());
+        assertEquals("{\"n\":1}", exchanges.get(0).getRequest());
+        assertEquals("{\"n\":2}", exchanges.get(1).getRequest());
+    }
+
+    @Test
+    void testSamplesSuccessesButKeepsFailures() {
+        PayloadRecorder recorder = new PayloadRecorder(10, 3, true);
+        AtomicInteger responsesRead = new AtomicInteger();
+        for (int i = 0; i < 6; i++) {
+            recorder.record(bytes("{}"), 2, 200, () -> {
+                responsesRead.incrementAndGet();
+                return bytes("{}");
+            }, null, Duration.ZERO);
+        }
+        recorder.record(bytes("{}"), 2, 0, null, new IOException("reset"), Duration.ofMillis(5));
+
+        List<PayloadRecorder.Exchange> exchanges = recorder.getExchanges();
+        assertEquals(3, exchanges.size());
+        assertEquals(2, responsesRead.get());
+        assertEquals("java.io.IOException: reset", exchanges.get(2).getError());
+        assertNull(exchanges.get(2).getResponse());
+    }
+
+    @Test
+    void testCopiesRequestAndFormatsLazily() {
+        PayloadRecorder recorder = new PayloadRecorder(4, 1, false);
+        byte[] buffer = bytes("{\"model\":\"gpt\"}xxxx");
+        recorder.record(buffer, 15, 500, () -> bytes("{\"error\":\"boom\"}"), null, Duration.ofMillis(12));
+        buffer[2] = 'X';
+
+        assertEquals("{\"model\":\"gpt\"}", recorder.getExchanges().get(0).getRequest());
+        String dump = recorder.dump();
+        assertTrue(dump.contains("status 500 in 12 ms"));
+        assertTrue(dump.contains("\"model\" : \"gpt\""));
+        assertTrue(dump.contains("\"error\" : \"boom\""));
+
+        recorder.clear();
+        assertTrue(recorder.getExchanges().isEmpty());
+    }
+}
@@ -0,0 +1,118 @@
+package com.simonbrs.aiagent.evaluation;
+
+import com.simonbrs.aiagent.OpenAIAgent;
+import com.simonbrs.aiagent.transport.ChatTransport;
+import com.simonbrs.aiagent.transport.TransportResponse;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EvaluationRunnerTest {
+    private static final String TOOL_CALL_RESPONSE = "{\"choices\":[{\"message\":{\"role\":\"assistant\",\"content\":null,"
+        + "\"tool_calls\":[{\"id\":\"call_1\",\"type\":\"function\",\"function\":{\"name\":\"add\","
+        + "\"arguments\":\"{\\\"arg0\\\":2,\\\"arg1\\\":3}\"}}]}}],\"usage\":{\"total_tokens\":10}}";
+    private static final String ANSWER_RESPONSE = "{\"choices\":[{\"message\":{\"role\":\"assistant\","
+        + "\"content\":\"The sum is 5\"}}],\"usage\":{\"total_tokens\":12}}";
+
+    public static class Calculator {
+        public double add(double a, double b) {
+            return a + b;
+        }
+    }
+
+    // Answers with a tool call first and with the final answer once the tool result is in the history
+    private static class ScriptedTransport implements ChatTransport {
+        final AtomicInteger requests = new AtomicInteger();
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+
+        @Override
+        public CompletableFuture<TransportResponse> send(byte[] body, int length) {
+            requests.incrementAndGet();
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            String request = new String(body, 0, length, StandardCharsets.UTF_8);
+            String response = request.contains("\"tool_call_id\"") ? ANSWER_RESPONSE : TOOL_CALL_RESPONSE;
+            return CompletableFuture.supplyAsync(() -> {
+                running.decrementAndGet();
+                return new TransportResponse(200, response.getBytes(StandardCharsets.UTF_8));
+            }, CompletableFuture.delayedExecutor(20, TimeUnit.MILLISECONDS));
+        }
+
+        @Override
+        public CompletableFuture<Integer> stream(byte[] body, int length, Flow.Subscriber<String> lines) {
+            return CompletableFuture.failedFuture(new UnsupportedOperationException());
+        }
+    }
+
+    private static OpenAIAgent createAgent() {
+        OpenAIAgent agent = new OpenAIAgent("test-key", "gpt-4o-mini");
+        agent.registerMethods(new Calculator());
+        return agent;
+    }
+
+    @Test
+    void testReportsAccuracyTokensAndToolCalls() throws Exception {
+        ScriptedTransport transport = new ScriptedTransport();
+        EvaluationRunner runner = new EvaluationRunner(EvaluationRunnerTest::createAgent, transport, 4, 0);
+        List<Scenario> scenarios = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            scenarios.add(new Scenario("sum " + i, "What is 2 + 3?").withExpectedAnswer("sum is 5")
+                .withExpectedTools("add"));
+        }
+        scenarios.add(new Scenario("wrong", "What is 2 + 3?").withExpectedAnswer("six"));
+
+        EvaluationReport report = runner.run(scenarios).get(10, TimeUnit.SECONDS);
+
+        assertEquals(11, report.getResults().size());
+        assertEquals(10.0 / 11, report.getAccuracy(), 1e-9);
+        assertFalse(report.getResults().get(10).isPassed());
+        assertNull(report.getResults().get(10).getError());
+        ScenarioResult first = report.getResults().get(0);
+        assertEquals(List.of("add"), first.getToolCalls());
+        assertEquals(22, first.getTotalTokens());
+        assertEquals(2, first.getRequests());
+        assertEquals(11 * 22, report.getTotalTokens());
+        assertEquals(11, report.getTotalToolCalls());
+        assertTrue(report.getLatencyPercentile(50).compareTo(Duration.ofMillis(40)) >= 0);
+        assertTrue(transport.maxRunning.get() <= 4);
+        assertTrue(report.toString().contains("accuracy 90.9%"));
+    }
+
+    @Test
+    void testRateLimitSpacesRequests() throws Exception {
+        ScriptedTransport transport = new ScriptedTransport();
+        EvaluationRunner runner = new EvaluationRunner(EvaluationRunnerTest::createAgent, transport, 8, 50);
+        List<Scenario> scenarios = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            scenarios.add(new Scenario("sum " + i, "What is 2 + 3?"));
+        }
+
+        EvaluationReport report = runner.run(scenarios).get(10, TimeUnit.SECONDS);
+
+        // Ten requests at 50 per second take at least 180 ms
+        assertEquals(10, transport.requests.get());
+        assertTrue(report.getDuration().compareTo(Duration.ofMillis(180)) >= 0, report.getDuration().toString());
+        assertEquals(1.0, report.getAccuracy());
+    }
+
+    @Test
+    void testFailingAgentIsReported() throws Exception {
+        EvaluationRunner runner = new EvaluationRunner(() -> {
+            throw new IllegalStateException("No agent");
+        }, new ScriptedTransport(), 2, 0);
+
+        EvaluationReport report = runner.run(List.of(new Scenario("broken", "Hi"))).get(5, TimeUnit.SECONDS);
+
+        assertFalse(report.getResults().get(0).isPassed());
+        assertInstanceOf(IllegalStateException.class, report.getResults().get(0).getError());
+    }
+}
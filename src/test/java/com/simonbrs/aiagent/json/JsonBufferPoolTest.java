@@ -0,0 +1,118 @@
+package com.simonbrs.aiagent.json;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class JsonBufferPoolTest {
+    private static final int ITERATIONS = 2_000;
+
+    @Test
+    void testBufferIsReused() throws Exception {
+        JsonBufferPool pool = new JsonBufferPool(2, 1024 * 1024);
+        JsonBufferPool.PooledBuffer buffer = pool.acquire();
+        buffer.write("hello".getBytes(StandardCharsets.UTF_8));
+        assertEquals(5, buffer.size());
+        pool.release(buffer);
+
+        JsonBufferPool.PooledBuffer reused = pool.acquire();
+        assertSame(buffer, reused);
+        assertEquals(0, reused.size());
+    }
+
+    @Test
+    void testOversizedBufferIsDropped() throws Exception {
+        JsonBufferPool pool = new JsonBufferPool(2, 16 * 1024);
+        JsonBufferPool.PooledBuffer buffer = pool.acquire();
+        buffer.write(new byte[64 * 1024]);
+        pool.release(buffer);
+        assertNotSame(buffer, pool.acquire());
+    }
+
+    // Allocation depends on the JVM and its collector, so this only runs when asked for with -Dbenchmarks=true
+    @Test
+    @EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+    void testPooledEncodingAllocatesLess() throws Exception {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+
+        ObjectMapper mapper = new ObjectMapper();
+        ObjectNode body = createRequestBody(mapper);
+        ObjectWriter writer = mapper.writer();
+        JsonBufferPool pool = new JsonBufferPool(4, 1024 * 1024);
+
+        // Warm up both paths so class loading and JIT do not count
+        for (int i = 0; i < ITERATIONS; i++) {
+            encodeAsString(writer, body);
+            encodePooled(writer, pool, body);
+        }
+
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < ITERATIONS; i++) {
+            encodeAsString(writer, body);
+        }
+        long stringBytes = threads.getThreadAllocatedBytes(threadId) - before;
+
+        before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < ITERATIONS; i++) {
+            encodePooled(writer, pool, body);
+        }
+        long pooledBytes = threads.getThreadAllocatedBytes(threadId) - before;
+
+        assertTrue(pooledBytes < stringBytes,
+            "Expected pooled encoding to allocate less, got " + pooledBytes + " vs " + stringBytes);
+    }
+
+    private static HttpRequest encodeAsString(ObjectWriter writer, ObjectNode body) throws Exception {
+        String json = writer.writeValueAsString(body);
+        return HttpRequest.newBuilder(URI.create("https://localhost/"))
+            .POST(HttpRequest.BodyPublishers.ofString(json))
+            .build();
+    }
+
+    private static HttpRequest encodePooled(ObjectWriter writer, JsonBufferPool pool, ObjectNode body) throws Exception {
+        JsonBufferPool.PooledBuffer buffer = pool.acquire();
+        try {
+            writer.writeValue(buffer, body);
+            return HttpRequest.newBuilder(URI.create("https://localhost/"))
+                .POST(HttpRequest.BodyPublishers.ofByteArray(buffer.array(), 0, buffer.size()))
+                .build();
+        } finally {
+            pool.release(buffer);
+        }
+    }
+
+    private static ObjectNode createRequestBody(ObjectMapper mapper) {
+        ObjectNode body = mapper.createObjectNode();
+        body.put("model", "gpt-4o-mini");
+        ArrayNode messages = body.putArray("messages");
+        for (int i = 0; i < 20; i++) {
+            ObjectNode message = messages.addObject();
+            message.put("role", i % 2 == 0 ? "user" : "assistant");
+            message.put("content", "Message number " + i + " with some text that resembles a real conversation turn.");
+        }
+        ArrayNode tools = body.putArray("tools");
+        for (int i = 0; i < 10; i++) {
+            ObjectNode function = tools.addObject().put("type", "function").putObject("function");
+            function.put("name", "tool" + i);
+            function.put("description", "Returns a value computed by tool " + i);
+            function.putObject("parameters").put("type", "object").putObject("properties")
+                .putObject("arg0").put("type", "string");
+        }
+        return body;
+    }
+}
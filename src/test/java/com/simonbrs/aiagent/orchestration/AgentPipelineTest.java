@@ -0,0 +1,96 @@
+package com.simonbrs.aiagent.orchestration;
+
+import com.simonbrs.aiagent.Agent;
+import com.simonbrs.aiagent.AgentFunction;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AgentPipelineTest {
+
+    // Answers every message asynchronously and records the highest number of concurrent requests
+    private static class StubAgent implements Agent {
+        private final Function<String, String> answer;
+        private final AtomicInteger active = new AtomicInteger();
+        private final AtomicInteger maxActive = new AtomicInteger();
+
+        StubAgent(Function<String, String> answer) {
+            this.answer = answer;
+        }
+
+        @Override
+        public CompletableFuture<String> sendMessage(String message) {
+            maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                active.decrementAndGet();
+                return answer.apply(message);
+            });
+        }
+
+        @Override
+        public CompletableFuture<String> sendMessage(String message, Map<String, Object> context) {
+            return sendMessage(message);
+        }
+
+        @Override
+        public void registerFunction(String functionName, AgentFunction function) {
+        }
+    }
+
+    @Test
+    void testFanOutAndFanIn() throws Exception {
+        try (AgentPipeline pipeline = new AgentPipeline(4, 2, 2)) {
+            pipeline.addStep("upper", new StubAgent(String::toUpperCase), inputs -> inputs.get(AgentPipeline.INPUT));
+            pipeline.addStep("reverse", new StubAgent(m -> new StringBuilder(m).reverse().toString()),
+                inputs -> inputs.get(AgentPipeline.INPUT));
+            pipeline.addStep("join", new StubAgent(m -> m), inputs -> inputs.get("upper") + "+" + inputs.get("reverse"),
+                "upper", "reverse");
+
+            Map<String, String> outputs = pipeline.run("abc").get();
+            assertEquals("ABC", outputs.get("upper"));
+            assertEquals("cba", outputs.get("reverse"));
+            assertEquals("ABC+cba", outputs.get("join"));
+        }
+    }
+
+    @Test
+    void testStepConcurrencyIsLimited() throws Exception {
+        StubAgent agent = new StubAgent(m -> m);
+        try (AgentPipeline pipeline = new AgentPipeline(4, 4, 4)) {
+            pipeline.addStep("echo", agent, inputs -> inputs.get(AgentPipeline.INPUT));
+            CompletableFuture.allOf(pipeline.run("a"), pipeline.run("b"), pipeline.run("c")).get();
+        }
+        assertEquals(1, agent.maxActive.get());
+    }
+
+    @Test
+    void testRejectsRunsBeyondQueue() {
+        try (AgentPipeline pipeline = new AgentPipeline(2, 1, 0)) {
+            pipeline.addStep("echo", new StubAgent(m -> m), inputs -> inputs.get(AgentPipeline.INPUT));
+            CompletableFuture<Map<String, String>> first = pipeline.run("a");
+            ExecutionException e = assertThrows(ExecutionException.class, () -> pipeline.run("b").get());
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+            assertDoesNotThrow(() -> first.get());
+        }
+    }
+
+    @Test
+    void testUnknownDependencyIsRejected() {
+        try (AgentPipeline pipeline = new AgentPipeline(1, 1, 0)) {
+            assertThrows(IllegalArgumentException.class,
+                () -> pipeline.addStep("summary", new StubAgent(m -> m), inputs -> "", "research"));
+        }
+    }
+}
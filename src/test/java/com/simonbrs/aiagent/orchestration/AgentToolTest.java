@@ -0,0 +1,53 @@
+package com.simonbrs.aiagent.orchestration;
+
+import com.simonbrs.aiagent.Agent;
+import com.simonbrs.aiagent.AgentFunction;
+import com.simonbrs.aiagent.AsyncAgentFunction;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AgentToolTest {
+
+    // Never answers, and remembers the pending request
+    private static class PendingAgent implements Agent {
+        final CompletableFuture<String> request = new CompletableFuture<>();
+
+        @Override
+        public CompletableFuture<String> sendMessage(String message) {
+            return request;
+        }
+
+        @Override
+        public CompletableFuture<String> sendMessage(String message, Map<String, Object> context) {
+            return request;
+        }
+
+        @Override
+        public void registerFunction(String functionName, AgentFunction function) {
+        }
+    }
+
+    @Test
+    void testCancellingCallCancelsWorker() {
+        PendingAgent worker = new PendingAgent();
+        AsyncAgentFunction function = AgentTool.asFunction(worker);
+
+        function.executeAsync(Map.of("message", "Research this")).toCompletableFuture().cancel(true);
+
+        assertTrue(worker.request.isCancelled());
+    }
+
+    @Test
+    void testWorkerAnswerIsReturned() throws Exception {
+        PendingAgent worker = new PendingAgent();
+        CompletableFuture<Object> result = AgentTool.asFunction(worker)
+            .executeAsync(Map.of("message", "Research this")).toCompletableFuture();
+
+        worker.request.complete("Findings");
+        assertEquals("Findings", result.get());
+    }
+}
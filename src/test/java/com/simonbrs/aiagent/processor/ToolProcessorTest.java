@@ -0,0 +1,139 @@
+package com.simonbrs.aiagent.processor;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.simonbrs.aiagent.AsyncAgentFunction;
+import com.simonbrs.aiagent.annotation.Param;
+import com.simonbrs.aiagent.annotation.Tool;
+import com.simonbrs.aiagent.annotation.ToolDefinition;
+import com.simonbrs.aiagent.annotation.ToolProvider;
+import com.simonbrs.aiagent.schema.FunctionSchemaGenerator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.tools.JavaCompiler;
+import java.io.File;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ToolProcessorTest {
+
+    public static class Calculator {
+        private double memory;
+
+        @Tool(description = "Adds two numbers", idempotent = true)
+        public double add(@Param(value = "a", description = "The first number") double a, double b) {
+            return a + b;
+        }
+
+        @Tool(name = "store")
+        public void setMemory(double value) {
+            memory = value;
+        }
+
+        @Tool
+        public CompletableFuture<Double> recall() {
+            return CompletableFuture.completedFuture(memory);
+        }
+
+        public String helper() {
+            return "not a tool";
+        }
+    }
+
+    @Test
+    void testGeneratesProviderForAnnotatedMethods() throws Exception {
+        Calculator calculator = new Calculator();
+        List<ToolDefinition> tools = new ToolProcessorTest_Calculator_Tools().getTools(calculator);
+
+        assertEquals(3, tools.size());
+        ToolDefinition add = tools.get(0);
+        assertEquals("add", add.getName());
+        assertEquals("Adds two numbers", add.getDescription());
+        assertTrue(add.isIdempotent());
+        assertFalse(tools.get(1).isIdempotent());
+
+        JsonNode schema = new ObjectMapper().readTree(add.getSchema());
+        assertEquals("The first number", schema.path("properties").path("a").path("description").asText());
+        assertEquals("number", schema.path("properties").path("b").path("type").asText());
+        assertEquals(2, schema.path("required").size());
+
+        assertEquals(5.0, add.getFunction().execute(Map.of("a", 2, "b", 3.0)));
+    }
+
+    @Test
+    void testGeneratesVoidAndAsyncInvokers() throws Exception {
+        Calculator calculator = new Calculator();
+        List<ToolDefinition> tools = new ToolProcessorTest_Calculator_Tools().getTools(calculator);
+
+        ToolDefinition store = tools.get(1);
+        assertEquals("store", store.getName());
+        assertEquals("Returns void. Takes double value.", store.getDescription());
+        assertNull(store.getFunction().execute(Map.of("value", 42)));
+
+        ToolDefinition recall = tools.get(2);
+        assertTrue(recall.getFunction() instanceof AsyncAgentFunction);
+        assertEquals("Returns Double. ", recall.getDescription());
+        assertEquals(42.0, ((AsyncAgentFunction) recall.getFunction()).executeAsync(Map.of()).toCompletableFuture().get());
+    }
+
+    @Test
+    void testMissingArgumentIsRejected() {
+        ToolDefinition add = new ToolProcessorTest_Calculator_Tools().getTools(new Calculator()).get(0);
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+            () -> add.getFunction().execute(Map.of("a", 1)));
+        assertEquals("Missing required parameter: b", e.getMessage());
+    }
+
+    @Test
+    void testReflectiveSchemaMatchesGeneratedWithParameterNames(@TempDir Path directory) throws Exception {
+        Path source = directory.resolve("src/com/example/weather/Forecast.java");
+        Files.createDirectories(source.getParent());
+        Files.writeString(source, String.join("\n",
+            "package com.example.weather;",
+            "import com.simonbrs.aiagent.annotation.Tool;",
+            "public class Forecast {",
+            "    @Tool",
+            "    public String forecast(String city, int days) { return city + days; }",
+            "}"));
+        Path classes = Files.createDirectories(directory.resolve("classes"));
+
+        JavaCompiler compiler = javax.tools.ToolProvider.getSystemJavaCompiler();
+        int status = compiler.run(null, null, null, "-parameters",
+            "-processor", ToolProcessor.class.getName(),
+            "-A" + ToolProcessor.DIRECTORY_OPTION + "=com.example/weather",
+            "-classpath", System.getProperty("java.class.path") + File.pathSeparator
+                + Path.of(ToolProcessor.class.getProtectionDomain().getCodeSource().getLocation().toURI()),
+            "-d", classes.toString(), source.toString());
+        assertEquals(0, status);
+        assertTrue(Files.exists(classes.resolve("META-INF/native-image/com.example/weather/reflect-config.json")));
+
+        try (URLClassLoader loader = new URLClassLoader(new URL[] {classes.toUri().toURL()}, getClass().getClassLoader())) {
+            Class<?> type = loader.loadClass("com.example.weather.Forecast");
+            Method method = type.getMethod("forecast", String.class, int.class);
+            ToolProvider<Object> provider = (ToolProvider<Object>) loader.loadClass("com.example.weather.Forecast_Tools")
+                .getDeclaredConstructor().newInstance();
+
+            ObjectMapper mapper = new ObjectMapper();
+            JsonNode generated = mapper.readTree(provider.getTools(type.getDeclaredConstructor().newInstance()).get(0).getSchema());
+            JsonNode reflective = new FunctionSchemaGenerator(mapper).generateSchema(method);
+            assertEquals(List.of("city", "days"), fieldNames(generated.path("properties")));
+            assertEquals(fieldNames(generated.path("properties")), fieldNames(reflective.path("properties")));
+            assertEquals(generated.path("required"), reflective.path("required"));
+        }
+    }
+
+    private static List<String> fieldNames(JsonNode node) {
+        List<String> names = new java.util.ArrayList<>();
+        node.fieldNames().forEachRemaining(names::add);
+        return names;
+    }
+}
@@ -0,0 +1,49 @@
+package com.simonbrs.aiagent.prompt;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SystemPromptGeneratorTest {
+
+    @Test
+    void testTemplateIsCompiledOnce() {
+        PromptTemplate template = PromptTemplate.compile("Answer in {{ language }} for {{tenant}}.");
+        assertEquals(List.of("language", "tenant"), template.getPlaceholders());
+        assertEquals("Answer in French for acme.", template.render(Map.of("language", "French", "tenant", "acme")));
+        assertEquals("Answer in  for acme.", template.render(Map.of("tenant", "acme")));
+    }
+
+    @Test
+    void testMalformedTemplate() {
+        assertThrows(IllegalArgumentException.class, () -> PromptTemplate.compile("Hello {{name"));
+        assertThrows(IllegalArgumentException.class, () -> PromptTemplate.compile("Hello {{ }}"));
+    }
+
+    @Test
+    void testRendersContextWithTemplate() {
+        SystemPromptGenerator generator = new SystemPromptGenerator();
+        generator.setContextTemplate("Tenant: {{tenant}}");
+
+        String first = generator.renderContext(Map.of("tenant", "acme", "unused", 1));
+        assertEquals("\n\nTenant: acme", first);
+        assertSame(first, generator.renderContext(Map.of("tenant", "acme")));
+        assertEquals("\n\nTenant: globex", generator.renderContext(Map.of("tenant", "globex")));
+    }
+
+    @Test
+    void testListsContextWithoutTemplate() {
+        SystemPromptGenerator generator = new SystemPromptGenerator();
+        Map<String, Object> context = new LinkedHashMap<>();
+        context.put("style", "concise");
+        context.put("language", "English");
+
+        assertEquals("\n\nContext:\n- language: English\n- style: concise\n", generator.renderContext(context));
+        assertEquals("", generator.renderContext(Map.of()));
+        assertEquals("", generator.renderContext(null));
+    }
+}
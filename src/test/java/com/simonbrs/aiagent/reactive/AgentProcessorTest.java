@@ -0,0 +1,158 @@
+package com.simonbrs.aiagent.reactive;
+
+import com.simonbrs.aiagent.Agent;
+import com.simonbrs.aiagent.AgentFunction;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AgentProcessorTest {
+
+    private static class EchoAgent implements Agent {
+        private final List<String> received = new CopyOnWriteArrayList<>();
+        private volatile CompletableFuture<String> next;
+
+        @Override
+        public CompletableFuture<String> sendMessage(String message) {
+            received.add(message);
+            CompletableFuture<String> pending = next;
+            return pending != null ? pending : CompletableFuture.completedFuture("echo: " + message);
+        }
+
+        @Override
+        public CompletableFuture<String> sendMessage(String message, Map<String, Object> context) {
+            return sendMessage(message);
+        }
+
+        @Override
+        public void registerFunction(String functionName, AgentFunction function) {
+        }
+    }
+
+    private static class TestSubscriber implements Flow.Subscriber<String> {
+        private final List<String> responses = new CopyOnWriteArrayList<>();
+        private final AtomicReference<Throwable> error = new AtomicReference<>();
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile Flow.Subscription subscription;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(String item) {
+            responses.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error.set(throwable);
+            done.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            done.countDown();
+        }
+    }
+
+    @Test
+    void testMessagesAreOnlyRequestedOnDemand() throws Exception {
+        EchoAgent agent = new EchoAgent();
+        AgentProcessor processor = new AgentProcessor(agent);
+        TestSubscriber subscriber = new TestSubscriber();
+        processor.subscribe(subscriber);
+
+        try (SubmissionPublisher<String> publisher = new SubmissionPublisher<>(Runnable::run, 8)) {
+            publisher.subscribe(processor);
+            for (int i = 0; i < 5; i++) {
+                publisher.submit("message " + i);
+            }
+            assertTrue(agent.received.isEmpty());
+
+            subscriber.subscription.request(2);
+            assertEquals(List.of("echo: message 0", "echo: message 1"), subscriber.responses);
+            assertEquals(2, agent.received.size());
+
+            subscriber.subscription.request(10);
+        }
+
+        assertTrue(subscriber.done.await(5, TimeUnit.SECONDS));
+        assertNull(subscriber.error.get());
+        assertEquals(5, subscriber.responses.size());
+        assertEquals("echo: message 4", subscriber.responses.get(4));
+    }
+
+    @Test
+    void testOneMessageInFlightPerSession() {
+        EchoAgent agent = new EchoAgent();
+        CompletableFuture<String> slow = new CompletableFuture<>();
+        agent.next = slow;
+        AgentProcessor processor = new AgentProcessor(agent);
+        TestSubscriber subscriber = new TestSubscriber();
+        processor.subscribe(subscriber);
+
+        try (SubmissionPublisher<String> publisher = new SubmissionPublisher<>(Runnable::run, 8)) {
+            publisher.subscribe(processor);
+            publisher.submit("first");
+            publisher.submit("second");
+            subscriber.subscription.request(Long.MAX_VALUE);
+            assertEquals(List.of("first"), agent.received);
+
+            agent.next = null;
+            slow.complete("done");
+            assertEquals(List.of("first", "second"), agent.received);
+            assertEquals(List.of("done", "echo: second"), subscriber.responses);
+        }
+    }
+
+    @Test
+    void testFailedRequestEndsTheSession() throws Exception {
+        EchoAgent agent = new EchoAgent();
+        agent.next = CompletableFuture.failedFuture(new IllegalStateException("API down"));
+        AgentProcessor processor = new AgentProcessor(agent);
+        TestSubscriber subscriber = new TestSubscriber();
+        processor.subscribe(subscriber);
+
+        try (SubmissionPublisher<String> publisher = new SubmissionPublisher<>(Runnable::run, 8)) {
+            publisher.subscribe(processor);
+            publisher.submit("hello");
+            subscriber.subscription.request(1);
+        }
+
+        assertTrue(subscriber.done.await(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, subscriber.error.get());
+        assertTrue(subscriber.responses.isEmpty());
+    }
+
+    @Test
+    void testCancelCancelsRequestInFlight() {
+        EchoAgent agent = new EchoAgent();
+        CompletableFuture<String> slow = new CompletableFuture<>();
+        agent.next = slow;
+        AgentProcessor processor = new AgentProcessor(agent);
+        TestSubscriber subscriber = new TestSubscriber();
+        processor.subscribe(subscriber);
+
+        try (SubmissionPublisher<String> publisher = new SubmissionPublisher<>(Runnable::run, 8)) {
+            publisher.subscribe(processor);
+            publisher.submit("hello");
+            subscriber.subscription.request(1);
+            subscriber.subscription.cancel();
+        }
+
+        assertTrue(slow.isCancelled());
+        assertTrue(subscriber.responses.isEmpty());
+    }
+}
@@ -0,0 +1,57 @@
+package com.simonbrs.aiagent.resilience;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AsyncLimiterTest {
+
+    @Test
+    void testCancelledQueuedTaskIsSkipped() throws Exception {
+        AsyncLimiter limiter = new AsyncLimiter(1, 2, Runnable::run);
+        CompletableFuture<String> running = new CompletableFuture<>();
+        AtomicInteger started = new AtomicInteger();
+
+        limiter.submit(() -> running);
+        CompletableFuture<String> cancelled = limiter.submit(() -> {
+            started.incrementAndGet();
+            return CompletableFuture.completedFuture("cancelled");
+        });
+        CompletableFuture<String> queued = limiter.submit(() -> CompletableFuture.completedFuture("queued"));
+
+        cancelled.cancel(true);
+        running.complete("done");
+
+        assertEquals("queued", queued.get());
+        assertEquals(0, started.get());
+    }
+
+    @Test
+    void testRejectedHandOffFreesSlot() throws Exception {
+        AtomicBoolean reject = new AtomicBoolean(true);
+        AsyncLimiter limiter = new AsyncLimiter(1, 1, task -> {
+            if (reject.get()) {
+                throw new RejectedExecutionException("Executor shut down");
+            }
+            task.run();
+        });
+        CompletableFuture<String> running = new CompletableFuture<>();
+
+        limiter.submit(() -> running);
+        CompletableFuture<String> queued = limiter.submit(() -> CompletableFuture.completedFuture("queued"));
+        running.complete("done");
+
+        ExecutionException e = assertThrows(ExecutionException.class, queued::get);
+        assertInstanceOf(RejectedExecutionException.class, e.getCause());
+
+        // The slot the rejected task would have taken is available again
+        reject.set(false);
+        assertEquals("next", limiter.submit(() -> CompletableFuture.completedFuture("next")).get());
+    }
+}
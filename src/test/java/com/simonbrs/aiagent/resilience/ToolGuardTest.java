@@ -0,0 +1,130 @@
+package com.simonbrs.aiagent.resilience;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ToolGuardTest {
+
+    @Test
+    void testBulkheadRejectsBeyondQueue() throws Exception {
+        ToolGuard guard = new ToolGuard("slow", ToolPolicy.DEFAULT.withBulkhead(1, 1), Runnable::run);
+        CompletableFuture<String> running = new CompletableFuture<>();
+        AtomicInteger started = new AtomicInteger();
+
+        CompletableFuture<String> first = guard.execute(() -> {
+            started.incrementAndGet();
+            return running;
+        }, false);
+        CompletableFuture<String> queued = guard.execute(() -> {
+            started.incrementAndGet();
+            return CompletableFuture.completedFuture("queued");
+        }, false);
+        CompletableFuture<String> rejected = guard.execute(() -> CompletableFuture.completedFuture("rejected"), false);
+
+        ExecutionException e = assertThrows(ExecutionException.class, rejected::get);
+        assertInstanceOf(ToolUnavailableException.class, e.getCause());
+        assertEquals(1, started.get());
+
+        running.complete("first");
+        assertEquals("first", first.get());
+        assertEquals("queued", queued.get());
+        assertEquals(2, started.get());
+    }
+
+    @Test
+    void testBlockingCallTimesOut() {
+        ToolGuard guard = new ToolGuard("hanging", ToolPolicy.DEFAULT.withTimeout(Duration.ofMillis(50)));
+        CompletableFuture<String> result = guard.execute(() -> {
+            try {
+                Thread.sleep(2_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return CompletableFuture.completedFuture("late");
+        }, true);
+
+        ExecutionException e = assertThrows(ExecutionException.class, result::get);
+        assertInstanceOf(TimeoutException.class, e.getCause());
+        assertEquals("Tool hanging timed out after 50 ms", e.getCause().getMessage());
+    }
+
+    @Test
+    void testTimedOutCallIsInterruptedAndFreesBulkhead() throws Exception {
+        ToolGuard guard = new ToolGuard("hanging",
+            ToolPolicy.DEFAULT.withTimeout(Duration.ofMillis(50)).withBulkhead(1, 0));
+        CountDownLatch interrupted = new CountDownLatch(1);
+        CompletableFuture<String> hanging = guard.execute(() -> {
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return CompletableFuture.completedFuture("late");
+        }, true);
+
+        ExecutionException e = assertThrows(ExecutionException.class, hanging::get);
+        assertInstanceOf(TimeoutException.class, e.getCause());
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        assertEquals("next", guard.execute(() -> CompletableFuture.completedFuture("next"), true).get());
+    }
+
+    @Test
+    void testCancellingCallCancelsTool() throws Exception {
+        ToolGuard guard = new ToolGuard("slow", ToolPolicy.DEFAULT.withBulkhead(1, 0), Runnable::run);
+        CompletableFuture<String> running = new CompletableFuture<>();
+
+        guard.execute(() -> running, false).cancel(true);
+
+        assertTrue(running.isCancelled());
+        assertEquals("next", guard.execute(() -> CompletableFuture.completedFuture("next"), false).get());
+    }
+
+    @Test
+    void testInvalidArgumentsAndCancellationDoNotOpenCircuit() {
+        ToolGuard guard = new ToolGuard("healthy", ToolPolicy.DEFAULT.withCircuitBreaker(2, Duration.ofSeconds(10)));
+        for (int i = 0; i < 3; i++) {
+            CompletableFuture<String> invalid = guard.execute(
+                () -> CompletableFuture.failedFuture(new IllegalArgumentException("Missing required parameter: a")), false);
+            ExecutionException e = assertThrows(ExecutionException.class, invalid::get);
+            assertInstanceOf(IllegalArgumentException.class, e.getCause());
+            guard.execute(CompletableFuture::new, false).cancel(true);
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, guard.getCircuitState());
+    }
+
+    @Test
+    void testCircuitOpensAfterConsecutiveFailures() throws Exception {
+        ToolGuard guard = new ToolGuard("flaky", ToolPolicy.DEFAULT.withCircuitBreaker(2, Duration.ofMillis(100)));
+        AtomicInteger calls = new AtomicInteger();
+
+        for (int i = 0; i < 2; i++) {
+            CompletableFuture<String> failed = guard.execute(() -> {
+                calls.incrementAndGet();
+                return CompletableFuture.failedFuture(new IllegalStateException("down"));
+            }, false);
+            assertThrows(ExecutionException.class, failed::get);
+        }
+        assertEquals(CircuitBreaker.State.OPEN, guard.getCircuitState());
+
+        CompletableFuture<String> shortCircuited = guard.execute(() -> {
+            calls.incrementAndGet();
+            return CompletableFuture.completedFuture("ok");
+        }, false);
+        ExecutionException e = assertThrows(ExecutionException.class, shortCircuited::get);
+        assertInstanceOf(ToolUnavailableException.class, e.getCause());
+        assertEquals(2, calls.get());
+
+        Thread.sleep(150);
+        assertEquals("ok", guard.execute(() -> CompletableFuture.completedFuture("ok"), false).get());
+        assertEquals(CircuitBreaker.State.CLOSED, guard.getCircuitState());
+    }
+}
@@ -0,0 +1,61 @@
+package com.simonbrs.aiagent.results;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResultLimiterTest {
+    private final ResultStore store = new ResultStore(2, 10);
+    private final ResultLimiter limiter = new ResultLimiter(store);
+
+    @Test
+    void testSmallResultsAreUnchanged() {
+        assertEquals("42", limiter.apply(42, new ResultPolicy(10, 5, false)));
+        assertEquals("[1, 2]", limiter.apply(List.of(1, 2), new ResultPolicy(10, 5, false)));
+    }
+
+    @Test
+    void testTruncatesWithMarker() {
+        String result = limiter.apply("abcdefghijklmnop", new ResultPolicy(4, 0, false));
+        assertEquals("abcd\n[Result truncated: 12 of 16 characters omitted]", result);
+    }
+
+    @Test
+    void testCompactsListsAndArrays() {
+        List<Integer> numbers = IntStream.range(0, 100).boxed().collect(Collectors.toList());
+        assertEquals("[0, 1, 2] [showing 3 of 100 items]", limiter.apply(numbers, new ResultPolicy(0, 3, false)));
+        assertEquals("[7, 8] [showing 2 of 3 items]", limiter.apply(new int[] {7, 8, 9}, new ResultPolicy(0, 2, false)));
+    }
+
+    @Test
+    void testOffloadsAndPages() {
+        String document = "0123456789abcdefghijklmnopqrstuvwxyz";
+        String result = limiter.apply(document, new ResultPolicy(5, 0, true));
+        assertTrue(result.startsWith("01234\n[Result truncated: showing characters 0-5 of 36."));
+        assertTrue(result.contains("\"result-1\""));
+
+        String page = store.read("result-1", 5);
+        assertTrue(page.startsWith("56789abcde\n[Characters 5-15 of 36."));
+        assertEquals("uvwxyz", store.read("result-1", 30));
+        assertThrows(IllegalArgumentException.class, () -> store.read("result-1", 40));
+    }
+
+    @Test
+    void testOldResultsExpire() {
+        ResultPolicy policy = new ResultPolicy(1, 0, true);
+        limiter.apply("first", policy);
+        limiter.apply("second", policy);
+        limiter.apply("third", policy);
+        assertThrows(IllegalArgumentException.class, () -> store.read("result-1", 0));
+        assertEquals("third", store.read("result-3", 0));
+    }
+
+    @Test
+    void testOffloadingNeedsCharacterLimit() {
+        assertThrows(IllegalArgumentException.class, () -> new ResultPolicy(0, 10, true));
+    }
+}
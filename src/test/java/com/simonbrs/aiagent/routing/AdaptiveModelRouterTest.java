@@ -0,0 +1,110 @@
+package com.simonbrs.aiagent.routing;
+
+import com.simonbrs.aiagent.OpenAIAgent;
+import com.simonbrs.aiagent.transport.ChatTransport;
+import com.simonbrs.aiagent.transport.TransportResponse;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveModelRouterTest {
+
+    @Test
+    void testToolFollowUpsGoToFastModel() {
+        AdaptiveModelRouter router = new AdaptiveModelRouter("large", "small");
+        assertEquals("large", router.route(new RouteContext(100, false, false, 0)));
+        assertEquals("small", router.route(new RouteContext(100, true, false, 1)));
+        assertEquals("large", router.route(new RouteContext(10_000, true, false, 1)));
+        assertEquals("large", router.route(new RouteContext(100, true, true, 1)));
+    }
+
+    @Test
+    void testUnhealthyFastModelIsAvoided() {
+        AdaptiveModelRouter router = new AdaptiveModelRouter("large", "small");
+        for (int i = 0; i < 10; i++) {
+            router.onResult("small", Duration.ofMillis(100), false);
+        }
+        assertEquals("large", router.route(new RouteContext(100, true, false, 1)));
+        assertEquals("large", router.fallback("small", new RouteContext(100, true, false, 1)));
+        assertNull(router.fallback("large", new RouteContext(100, true, false, 1)));
+    }
+
+    @Test
+    void testSlowPrimaryModelShiftsSmallRequests() {
+        AdaptiveModelRouter router = new AdaptiveModelRouter("large", "small");
+        router.setLatencyThreshold(Duration.ofSeconds(2));
+        for (int i = 0; i < 20; i++) {
+            router.onResult("large", Duration.ofSeconds(i < 15 ? 1 : 5), true);
+        }
+        assertEquals(Duration.ofSeconds(5), router.getStats("large").getLatencyPercentile(95));
+        assertEquals(Duration.ofSeconds(1), router.getStats("large").getLatencyPercentile(50));
+        assertEquals("small", router.route(new RouteContext(100, false, false, 0)));
+    }
+
+    @Test
+    void testSlowPrimaryModelIsProbedUntilItRecovers() {
+        AdaptiveModelRouter router = new AdaptiveModelRouter("large", "small");
+        router.setLatencyThreshold(Duration.ofSeconds(2));
+        for (int i = 0; i < 20; i++) {
+            router.onResult("large", Duration.ofSeconds(5), true);
+        }
+
+        int probes = 0;
+        for (int i = 0; i < 2000 && probes < 100; i++) {
+            String model = router.route(new RouteContext(100, false, false, 0));
+            if (model.equals("large")) {
+                probes++;
+                router.onResult("large", Duration.ofSeconds(1), true);
+            }
+        }
+
+        // Once the probes have replaced the slow samples, small requests return to the primary model
+        assertEquals(100, probes);
+        assertEquals(Duration.ofSeconds(1), router.getStats("large").getLatencyPercentile(95));
+        assertEquals("large", router.route(new RouteContext(100, false, false, 0)));
+    }
+
+    @Test
+    void testAgentRetriesFailedTurnOnPrimaryModel() throws Exception {
+        List<String> models = new ArrayList<>();
+        ChatTransport transport = new ChatTransport() {
+            @Override
+            public CompletableFuture<TransportResponse> send(byte[] body, int length) {
+                String request = new String(body, 0, length, StandardCharsets.UTF_8);
+                String model = request.contains("\"model\":\"small\"") ? "small" : "large";
+                models.add(model);
+                String response;
+                if (!request.contains("\"tool_call_id\"")) {
+                    response = "{\"choices\":[{\"message\":{\"role\":\"assistant\",\"content\":null,\"tool_calls\":"
+                        + "[{\"id\":\"c1\",\"type\":\"function\",\"function\":{\"name\":\"ping\",\"arguments\":\"{}\"}}]}}]}";
+                } else if (model.equals("small")) {
+                    return CompletableFuture.completedFuture(new TransportResponse(503, "{}".getBytes(StandardCharsets.UTF_8)));
+                } else {
+                    response = "{\"choices\":[{\"message\":{\"role\":\"assistant\",\"content\":\"pong\"}}]}";
+                }
+                return CompletableFuture.completedFuture(new TransportResponse(200, response.getBytes(StandardCharsets.UTF_8)));
+            }
+
+            @Override
+            public CompletableFuture<Integer> stream(byte[] body, int length, Flow.Subscriber<String> lines) {
+                return CompletableFuture.failedFuture(new UnsupportedOperationException());
+            }
+        };
+
+        OpenAIAgent agent = new OpenAIAgent("test-key", "large");
+        agent.registerFunction("ping", parameters -> "pong");
+        agent.setTransport(transport);
+        agent.setModelRouter(new AdaptiveModelRouter("large", "small"));
+
+        assertEquals("pong", agent.sendMessage("ping").get(5, TimeUnit.SECONDS));
+        assertEquals(List.of("large", "small", "large"), models);
+    }
+}
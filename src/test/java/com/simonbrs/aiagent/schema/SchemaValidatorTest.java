@@ -0,0 +1,105 @@
+package com.simonbrs.aiagent.schema;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.simonbrs.aiagent.OpenAIAgent;
+import com.simonbrs.aiagent.transport.ChatTransport;
+import com.simonbrs.aiagent.transport.TransportResponse;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SchemaValidatorTest {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public enum Unit {
+        CELSIUS, FAHRENHEIT
+    }
+
+    public static class Tools {
+        public static final AtomicInteger calls = new AtomicInteger();
+
+        public double convert(double value, Unit unit, boolean round, List<Integer> precision) {
+            calls.incrementAndGet();
+            return value;
+        }
+    }
+
+    private SchemaValidator validator() throws Exception {
+        return SchemaValidator.compile(new FunctionSchemaGenerator(objectMapper)
+            .generateSchema(Tools.class.getMethod("convert", double.class, Unit.class, boolean.class, List.class)));
+    }
+
+    @Test
+    void testValidArguments() throws Exception {
+        SchemaValidator validator = validator();
+
+        assertEquals(List.of(), validator.validate(
+            "{\"arg0\": 21.5, \"arg1\": \"CELSIUS\", \"arg2\": true, \"arg3\": [1, 2]}", objectMapper));
+        // Numbers and booleans given as strings are converted, so they are accepted
+        assertEquals(List.of(), validator.validate(
+            "{\"arg0\": \"21.5\", \"arg1\": \"FAHRENHEIT\", \"arg2\": \"yes\", \"arg3\": []}", objectMapper));
+    }
+
+    @Test
+    void testReportsEveryProblemWithItsPath() throws Exception {
+        List<String> problems = validator().validate(
+            "{\"arg0\": \"warm\", \"arg1\": \"KELVIN\", \"arg3\": [1, {}], \"unit\": \"C\"}", objectMapper);
+
+        assertEquals(5, problems.size(), problems.toString());
+        assertTrue(problems.contains("$: missing required property 'arg2'"));
+        assertTrue(problems.contains("$.arg0: expected number but got string \"warm\""));
+        assertTrue(problems.stream().anyMatch(problem -> problem.startsWith("$.arg1: string \"KELVIN\" is not one of")));
+        assertTrue(problems.contains("$.arg3[1]: expected number but got object"));
+        assertTrue(problems.stream().anyMatch(problem -> problem.startsWith("$: unknown property 'unit'")));
+    }
+
+    @Test
+    void testMalformedJson() throws Exception {
+        List<String> problems = validator().validate("{\"arg0\": ", objectMapper);
+
+        assertEquals(1, problems.size());
+        assertTrue(problems.get(0).startsWith("arguments are not valid JSON"));
+    }
+
+    @Test
+    void testInvalidArgumentsAreSentBackToTheModel() throws Exception {
+        List<String> requests = new CopyOnWriteArrayList<>();
+        ChatTransport transport = new ChatTransport() {
+            @Override
+            public CompletableFuture<TransportResponse> send(byte[] body, int length) {
+                String request = new String(body, 0, length, StandardCharsets.UTF_8);
+                requests.add(request);
+                String response = request.contains("\"tool_call_id\"")
+                    ? "{\"choices\":[{\"message\":{\"role\":\"assistant\",\"content\":\"Sorry\"}}]}"
+                    : "{\"choices\":[{\"message\":{\"role\":\"assistant\",\"content\":null,\"tool_calls\":[{\"id\":\"call_1\","
+                        + "\"type\":\"function\",\"function\":{\"name\":\"convert\",\"arguments\":\"{\\\"arg0\\\":\\\"warm\\\"}\"}}]}}]}";
+                return CompletableFuture.completedFuture(new TransportResponse(200, response.getBytes(StandardCharsets.UTF_8)));
+            }
+
+            @Override
+            public CompletableFuture<Integer> stream(byte[] body, int length, Flow.Subscriber<String> lines) {
+                return CompletableFuture.failedFuture(new UnsupportedOperationException());
+            }
+        };
+        OpenAIAgent agent = new OpenAIAgent("test-key", "gpt-4o-mini");
+        agent.registerMethods(new Tools());
+        agent.setTransport(transport);
+        Tools.calls.set(0);
+
+        assertEquals("Sorry", agent.sendMessage("Convert it").get(5, TimeUnit.SECONDS));
+
+        assertEquals(0, Tools.calls.get());
+        assertEquals(2, requests.size());
+        assertTrue(requests.get(1).contains("Invalid arguments for convert"));
+        assertTrue(requests.get(1).contains("expected number but got string"));
+        assertTrue(requests.get(1).contains("missing required property 'arg1'"));
+    }
+}
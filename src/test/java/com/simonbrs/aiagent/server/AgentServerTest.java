@@ -0,0 +1,221 @@
+package com.simonbrs.aiagent.server;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.simonbrs.aiagent.OpenAIAgent;
+import com.simonbrs.aiagent.transport.ChatTransport;
+import com.simonbrs.aiagent.transport.TransportResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AgentServerTest {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpClient client = HttpClient.newHttpClient();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private AgentServer server;
+
+    // Answers with the number of messages in the request, so the session history can be observed;
+    // requests whose last message is "Wait" are held until the gate opens
+    private class CountingTransport implements ChatTransport {
+        final AtomicInteger requests = new AtomicInteger();
+        volatile CompletableFuture<Void> gate = CompletableFuture.completedFuture(null);
+
+        @Override
+        public CompletableFuture<TransportResponse> send(byte[] body, int length) {
+            requests.incrementAndGet();
+            JsonNode messages = readMessages(body, length);
+            String answer = "{\"choices\":[{\"message\":{\"role\":\"assistant\",\"content\":\"messages: "
+                + messages.size() + "\"}}]}";
+            CompletableFuture<Void> wait = "Wait".equals(messages.get(messages.size() - 1).path("content").asText())
+                ? gate : CompletableFuture.completedFuture(null);
+            return wait.thenApply(ignored -> new TransportResponse(200, answer.getBytes(StandardCharsets.UTF_8)));
+        }
+
+        @Override
+        public CompletableFuture<Integer> stream(byte[] body, int length, Flow.Subscriber<String> lines) {
+            lines.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            lines.onNext("data: {\"choices\":[{\"delta\":{\"role\":\"assistant\",\"content\":\"Hel\"}}]}");
+            lines.onNext("");
+            lines.onNext("data: {\"choices\":[{\"delta\":{\"content\":\"lo\"},\"finish_reason\":\"stop\"}]}");
+            lines.onNext("data: [DONE]");
+            lines.onComplete();
+            return CompletableFuture.completedFuture(200);
+        }
+
+        private JsonNode readMessages(byte[] body, int length) {
+            try {
+                return objectMapper.readTree(body, 0, length).get("messages");
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private CountingTransport start(int maxConcurrent, int maxQueued) throws IOException {
+        CountingTransport transport = new CountingTransport();
+        server = new AgentServer(new InetSocketAddress("127.0.0.1", 0), executor, maxConcurrent, maxQueued);
+        server.addModel("assistant", () -> {
+            OpenAIAgent agent = new OpenAIAgent("test-key", "gpt-4o-mini");
+            agent.setTransport(transport);
+            return agent;
+        });
+        server.start();
+        return transport;
+    }
+
+    private HttpRequest.Builder request(String body) {
+        return HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + server.getAddress().getPort()
+                + "/v1/chat/completions"))
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString(body));
+    }
+
+    private static String completion(String message, boolean stream) {
+        return "{\"model\":\"assistant\",\"stream\":" + stream + ",\"messages\":[{\"role\":\"system\",\"content\":\"x\"},"
+            + "{\"role\":\"user\",\"content\":\"" + message + "\"}]}";
+    }
+
+    @AfterEach
+    void stop() {
+        if (server != null) {
+            server.close();
+        }
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testCompletionWithSessionAffinity() throws Exception {
+        start(4, 4);
+
+        for (int turn = 0; turn < 2; turn++) {
+            HttpResponse<String> response = client.send(request(completion("Hi", false))
+                .header(AgentServer.SESSION_HEADER, "abc").build(), HttpResponse.BodyHandlers.ofString());
+            assertEquals(200, response.statusCode());
+            JsonNode body = objectMapper.readTree(response.body());
+            assertEquals("chat.completion", body.get("object").asText());
+            assertEquals("assistant", body.get("model").asText());
+            // The agent's system prompt, the client's system message and one user message, then the
+            // previous turn as well; the session's history is only seeded by its first request
+            assertEquals("messages: " + (3 + turn * 2),
+                body.get("choices").get(0).get("message").get("content").asText());
+        }
+        assertEquals(1, server.getSessionCount());
+
+        HttpResponse<String> stateless = client.send(request(completion("Hi", false)).build(),
+            HttpResponse.BodyHandlers.ofString());
+        assertTrue(stateless.body().contains("messages: 3"));
+    }
+
+    @Test
+    void testRequestWithoutSessionCarriesHistory() throws Exception {
+        start(4, 4);
+        String body = "{\"model\":\"assistant\",\"messages\":[{\"role\":\"system\",\"content\":\"x\"},"
+            + "{\"role\":\"user\",\"content\":\"Hi\"},{\"role\":\"assistant\",\"content\":\"Hello\"},"
+            + "{\"role\":\"user\",\"content\":[{\"type\":\"text\",\"text\":\"How are you?\"}]}]}";
+
+        HttpResponse<String> response = client.send(request(body).build(), HttpResponse.BodyHandlers.ofString());
+
+        // The agent's system prompt followed by all four messages of the request
+        assertEquals(200, response.statusCode());
+        assertTrue(response.body().contains("messages: 5"), response.body());
+        assertEquals(0, server.getSessionCount());
+    }
+
+    @Test
+    void testWaitingSessionRequestDoesNotHoldSlot() throws Exception {
+        CountingTransport transport = start(2, 1);
+        CompletableFuture<Void> gate = new CompletableFuture<>();
+        transport.gate = gate;
+
+        CompletableFuture<HttpResponse<String>> running = client.sendAsync(request(completion("Wait", false))
+            .header(AgentServer.SESSION_HEADER, "busy").build(), HttpResponse.BodyHandlers.ofString());
+        for (int attempt = 0; attempt < 250 && transport.requests.get() == 0; attempt++) {
+            Thread.sleep(20);
+        }
+        CompletableFuture<HttpResponse<String>> waiting = client.sendAsync(request(completion("Hi", false))
+            .header(AgentServer.SESSION_HEADER, "busy").build(), HttpResponse.BodyHandlers.ofString());
+        Thread.sleep(100);
+
+        // The second request of the busy session waits for its turn without taking the free slot
+        HttpResponse<String> other = client.send(request(completion("Hi", false)).timeout(Duration.ofSeconds(5)).build(),
+            HttpResponse.BodyHandlers.ofString());
+        gate.complete(null);
+
+        assertEquals(200, other.statusCode());
+        assertEquals(200, running.get(5, TimeUnit.SECONDS).statusCode());
+        assertEquals(200, waiting.get(5, TimeUnit.SECONDS).statusCode());
+    }
+
+    @Test
+    void testStreamedCompletion() throws Exception {
+        start(4, 4);
+
+        HttpResponse<String> response = client.send(request(completion("Hi", true)).build(),
+            HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(200, response.statusCode());
+        assertEquals("text/event-stream", response.headers().firstValue("Content-Type").orElse(""));
+        String[] events = response.body().split("\n\n");
+        assertEquals(4, events.length);
+        assertTrue(events[0].contains("\"content\":\"Hel\""));
+        assertTrue(events[1].contains("\"content\":\"lo\""));
+        assertTrue(events[2].contains("\"finish_reason\":\"stop\""));
+        assertEquals("data: [DONE]", events[3]);
+    }
+
+    @Test
+    void testRequestsBeyondQueueAreRejected() throws Exception {
+        CountingTransport transport = start(1, 0);
+        CompletableFuture<Void> gate = new CompletableFuture<>();
+        transport.gate = gate;
+
+        CompletableFuture<HttpResponse<String>> first = client.sendAsync(request(completion("Wait", false)).build(),
+            HttpResponse.BodyHandlers.ofString());
+        for (int attempt = 0; attempt < 250 && transport.requests.get() == 0; attempt++) {
+            Thread.sleep(20);
+        }
+        HttpResponse<String> rejected = client.send(request(completion("Hi", false)).build(),
+            HttpResponse.BodyHandlers.ofString());
+        gate.complete(null);
+
+        assertEquals(429, rejected.statusCode());
+        assertEquals("1", rejected.headers().firstValue("Retry-After").orElse(""));
+        assertEquals(200, first.get(5, TimeUnit.SECONDS).statusCode());
+    }
+
+    @Test
+    void testUnknownModel() throws Exception {
+        start(1, 1);
+
+        HttpResponse<String> response = client.send(request("{\"model\":\"other\",\"messages\":[]}").build(),
+            HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(404, response.statusCode());
+        assertTrue(objectMapper.readTree(response.body()).get("error").has("message"));
+    }
+}
@@ -0,0 +1,44 @@
+package com.simonbrs.aiagent.streaming;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChatCompletionStreamAssemblerTest {
+
+    @Test
+    void testToolCallsCompleteAsSoonAsTheirArgumentsAre() {
+        List<String> events = new ArrayList<>();
+        ChatCompletionStreamAssembler assembler = new ChatCompletionStreamAssembler(new ObjectMapper(), new StreamListener() {
+            @Override
+            public void onToolCallComplete(JsonNode toolCall) {
+                events.add(toolCall.path("function").path("name").asText() + toolCall.path("function").path("arguments").asText());
+            }
+
+            @Override
+            public void onComplete(JsonNode response) {
+                events.add("complete");
+            }
+        });
+
+        assembler.onNext("data: {\"choices\":[{\"delta\":{\"tool_calls\":[{\"index\":0,\"id\":\"a\",\"function\":{\"name\":\"add\",\"arguments\":\"{\\\"arg0\\\":\"}}]}}]}");
+        assembler.onNext("data: {\"choices\":[{\"delta\":{\"tool_calls\":[{\"index\":0,\"function\":{\"arguments\":\"1}\"}}]}}]}");
+        assertTrue(events.isEmpty());
+
+        assembler.onNext("data: {\"choices\":[{\"delta\":{\"tool_calls\":[{\"index\":1,\"id\":\"b\",\"function\":{\"name\":\"sub\",\"arguments\":\"{}\"}}]}}]}");
+        assertEquals(List.of("add{\"arg0\":1}"), events);
+
+        assembler.onNext("data: {\"choices\":[{\"delta\":{},\"finish_reason\":\"tool_calls\"}]}");
+        assertEquals(List.of("add{\"arg0\":1}", "sub{}"), events);
+
+        assembler.onNext("data: [DONE]");
+        assembler.onComplete();
+        assertEquals(List.of("add{\"arg0\":1}", "sub{}", "complete"), events);
+        assertEquals(2, assembler.getResponse().path("choices").path(0).path("message").path("tool_calls").size());
+    }
+}
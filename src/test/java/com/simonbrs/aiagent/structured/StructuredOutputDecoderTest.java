@@ -0,0 +1,69 @@
+package com.simonbrs.aiagent.structured;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.simonbrs.aiagent.schema.FunctionSchemaGenerator;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StructuredOutputDecoderTest {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    record City(String name, int population) {
+    }
+
+    record Answer(String country, City capital, List<String> languages) {
+    }
+
+    @Test
+    void testReportsFieldsAsTheyComplete() throws Exception {
+        Map<String, JsonNode> fields = new LinkedHashMap<>();
+        StructuredOutputDecoder decoder = new StructuredOutputDecoder(objectMapper, fields::put);
+
+        decoder.onContentDelta("{\"country\":\"Fra");
+        assertTrue(fields.isEmpty());
+        decoder.onContentDelta("nce\",\"capital\":{\"name\":\"Paris\",");
+        assertEquals(List.of("country"), List.copyOf(fields.keySet()));
+        decoder.onContentDelta("\"population\":2100000},\"languages\":[\"French\"");
+        assertEquals("Paris", fields.get("capital").path("name").asText());
+        assertFalse(decoder.isComplete());
+        decoder.onContentDelta("]}");
+
+        assertTrue(decoder.isComplete());
+        assertEquals(3, fields.size());
+        Answer answer = decoder.decode(Answer.class);
+        assertEquals(new Answer("France", new City("Paris", 2100000), List.of("French")), answer);
+    }
+
+    @Test
+    void testToolCallTurnResetsDecoder() {
+        StructuredOutputDecoder decoder = new StructuredOutputDecoder(objectMapper, (name, value) -> { });
+        decoder.onContentDelta("{\"country\":\"Fr");
+
+        ObjectNode response = objectMapper.createObjectNode();
+        response.putArray("choices").addObject().putObject("message").putArray("tool_calls").addObject();
+        decoder.onComplete(response);
+
+        decoder.onContentDelta("{\"country\":\"France\",\"capital\":null,\"languages\":[]}");
+        assertTrue(decoder.isComplete());
+    }
+
+    @Test
+    void testGeneratesStrictSchemaForRecords() {
+        ObjectNode schema = new FunctionSchemaGenerator(objectMapper).generateSchema(Answer.class);
+
+        assertEquals("object", schema.path("type").asText());
+        assertFalse(schema.path("additionalProperties").asBoolean());
+        assertEquals(3, schema.path("required").size());
+        JsonNode capital = schema.path("properties").path("capital");
+        assertEquals("object", capital.path("type").asText());
+        assertEquals("number", capital.path("properties").path("population").path("type").asText());
+        assertEquals("string", schema.path("properties").path("languages").path("items").path("type").asText());
+    }
+}
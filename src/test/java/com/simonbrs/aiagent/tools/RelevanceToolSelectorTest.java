@@ -0,0 +1,55 @@
+package com.simonbrs.aiagent.tools;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RelevanceToolSelectorTest {
+    private static final Map<String, String> TOOLS = Map.of(
+        "add", "Returns double. Takes double arg0 and double arg1.",
+        "getMemory", "Returns double.",
+        "setMemory", "Returns void. Takes double arg0.",
+        "celsiusToFahrenheit", "Returns double. Takes double arg0.",
+        "generatePrimes", "Returns String. Takes int arg0."
+    );
+
+    @Test
+    void testSelectsMatchingTools() {
+        RelevanceToolSelector selector = new RelevanceToolSelector(2);
+        Set<String> selected = selector.select("Add ten to the number stored in memory", TOOLS);
+        assertEquals(2, selected.size());
+        assertTrue(selected.contains("add"));
+    }
+
+    @Test
+    void testLimitsToTopK() {
+        RelevanceToolSelector selector = new RelevanceToolSelector(1);
+        assertEquals(Set.of("celsiusToFahrenheit"), selector.select("Convert 20 celsius to fahrenheit", TOOLS));
+    }
+
+    @Test
+    void testNoMatchSelectsFirstTools() {
+        RelevanceToolSelector selector = new RelevanceToolSelector(3);
+        List<String> first = List.of("add", "celsiusToFahrenheit", "generatePrimes");
+        assertEquals(first, List.copyOf(selector.select("Tell me a joke", TOOLS)));
+        // Single characters are not indexed, so nothing matches
+        assertEquals(first, List.copyOf(selector.select("What is 2+2?", TOOLS)));
+    }
+
+    @Test
+    void testAlwaysSelectedToolsAreAdded() {
+        RelevanceToolSelector selector = new RelevanceToolSelector(1, List.of("setMemory", "unregistered"));
+        assertEquals(Set.of("celsiusToFahrenheit", "setMemory"), selector.select("Convert 20 celsius to fahrenheit", TOOLS));
+        assertEquals(Set.of("add", "setMemory"), selector.select("Tell me a joke", TOOLS));
+    }
+
+    @Test
+    void testTokenizeSplitsCamelCaseAndStems() {
+        assertEquals(List.of("celsiu", "to", "fahrenheit"), RelevanceToolSelector.tokenize("celsiusToFahrenheit"));
+        assertEquals(List.of("add", "number"), RelevanceToolSelector.tokenize("added numbers"));
+    }
+}
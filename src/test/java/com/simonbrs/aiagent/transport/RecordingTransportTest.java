@@ -0,0 +1,118 @@
+package com.simonbrs.aiagent.transport;
+
+import com.simonbrs.aiagent.OpenAIAgent;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecordingTransportTest {
+    private static final String TOOL_CALL_RESPONSE = "{\"choices\":[{\"message\":{\"role\":\"assistant\",\"content\":null,"
+        + "\"tool_calls\":[{\"id\":\"call_1\",\"type\":\"function\",\"function\":{\"name\":\"add\","
+        + "\"arguments\":\"{\\\"arg0\\\":2,\\\"arg1\\\":3}\"}}]}}],\"usage\":{\"total_tokens\":10}}";
+    private static final String ANSWER_RESPONSE = "{\"choices\":[{\"message\":{\"role\":\"assistant\","
+        + "\"content\":\"The sum is 5\"}}],\"usage\":{\"total_tokens\":12}}";
+
+    public static class Calculator {
+        public double add(double a, double b) {
+            return a + b;
+        }
+    }
+
+    // Answers with a tool call first and with the final answer once the tool result is in the history
+    private static class ScriptedTransport implements ChatTransport {
+        final AtomicInteger requests = new AtomicInteger();
+
+        @Override
+        public CompletableFuture<TransportResponse> send(byte[] body, int length) {
+            requests.incrementAndGet();
+            String request = new String(body, 0, length, StandardCharsets.UTF_8);
+            String response = request.contains("\"tool_call_id\"") ? ANSWER_RESPONSE : TOOL_CALL_RESPONSE;
+            return CompletableFuture.completedFuture(new TransportResponse(200, response.getBytes(StandardCharsets.UTF_8)));
+        }
+
+        @Override
+        public CompletableFuture<Integer> stream(byte[] body, int length, Flow.Subscriber<String> lines) {
+            return CompletableFuture.failedFuture(new UnsupportedOperationException());
+        }
+    }
+
+    private static OpenAIAgent createAgent(ChatTransport transport) {
+        OpenAIAgent agent = new OpenAIAgent("test-key", "gpt-4o-mini");
+        agent.registerMethods(new Calculator());
+        agent.setTransport(transport);
+        return agent;
+    }
+
+    @Test
+    void testReplaysRecordedToolLoop(@TempDir Path directory) throws Exception {
+        Path file = directory.resolve("run.rec");
+        ScriptedTransport live = new ScriptedTransport();
+        try (RecordingTransport recording = new RecordingTransport(live, file)) {
+            assertEquals("The sum is 5", createAgent(recording).sendMessage("What is 2 + 3?").get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(2, live.requests.get());
+
+        ReplayTransport replay = new ReplayTransport(file, ReplayTransport.Latency.NONE);
+        assertEquals(2, replay.size());
+        assertEquals("The sum is 5", createAgent(replay).sendMessage("What is 2 + 3?").get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testUnrecordedRequestFails(@TempDir Path directory) throws Exception {
+        Path file = directory.resolve("run.rec");
+        try (RecordingTransport recording = new RecordingTransport(new ScriptedTransport(), file)) {
+            createAgent(recording).sendMessage("What is 2 + 3?").get(5, TimeUnit.SECONDS);
+        }
+
+        ReplayTransport replay = new ReplayTransport(file, ReplayTransport.Latency.NONE);
+        ExecutionException e = assertThrows(ExecutionException.class,
+            () -> createAgent(replay).sendMessage("What is 4 + 5?").get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, e.getCause().getCause());
+    }
+
+    @Test
+    void testCancellingRequestCancelsExchange(@TempDir Path directory) throws Exception {
+        CompletableFuture<TransportResponse> exchange = new CompletableFuture<>();
+        CompletableFuture<Void> sent = new CompletableFuture<>();
+        ChatTransport hanging = new ChatTransport() {
+            @Override
+            public CompletableFuture<TransportResponse> send(byte[] body, int length) {
+                sent.complete(null);
+                return exchange;
+            }
+
+            @Override
+            public CompletableFuture<Integer> stream(byte[] body, int length, Flow.Subscriber<String> lines) {
+                return CompletableFuture.failedFuture(new UnsupportedOperationException());
+            }
+        };
+        try (RecordingTransport recording = new RecordingTransport(hanging, directory.resolve("run.rec"))) {
+            CompletableFuture<String> response = createAgent(recording).sendMessage("What is 2 + 3?");
+            sent.get(5, TimeUnit.SECONDS);
+
+            response.cancel(true);
+
+            // The agent tracks the exchange on its own thread just after sending it
+            for (int attempt = 0; attempt < 250 && !exchange.isDone(); attempt++) {
+                Thread.sleep(20);
+            }
+            assertTrue(exchange.isCancelled());
+        }
+    }
+
+    @Test
+    void testMatchesRequestsIgnoringFieldOrder() {
+        byte[] first = "{\"model\":\"a\",\"messages\":[{\"role\":\"user\",\"content\":\"hi\"}]}".getBytes(StandardCharsets.UTF_8);
+        byte[] second = "{ \"messages\": [{\"content\":\"hi\", \"role\":\"user\"}], \"model\": \"a\" }".getBytes(StandardCharsets.UTF_8);
+        assertEquals(RequestFingerprint.of(first, first.length), RequestFingerprint.of(second, second.length));
+    }
+}